@@ -0,0 +1,36 @@
+package dynRDFa.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Driver class of the benchmarks. Runs {@link PipelineBenchmark} with the gc profiler, so that
+ * next to the throughput of every stage its allocation rate (gc.alloc.rate.norm: bytes per
+ * operation) is reported. It is the main class of bench/target/benchmarks.jar, and must be started
+ * with the dynRDFa project as the working directory (java -jar bench/target/benchmarks.jar).
+ * @author magda
+ */
+public class BenchmarkMain {
+
+	/**
+	 * Main method.
+	 * @param args the usual JMH command line options, e.g. "-p choice=0,1,2" benchmarks three web pages,
+	 * "-p dataset=other.nt -p lang=N-TRIPLE" another dataset, and a regular expression selects the stages.
+	 * @throws RunnerException
+	 * @throws CommandLineOptionException
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		Options options = new OptionsBuilder()
+				.parent(cmdOptions)
+				.include(PipelineBenchmark.class.getName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,201 @@
+package dynRDFa.bench;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.ResultSetFactory;
+import com.hp.hpl.jena.query.ResultSetRewindable;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import dynRDFa.ExportableModel;
+import dynRDFa.ModelIndex;
+import dynRDFa.ModelMaker;
+import dynRDFa.QueryRegistry;
+import dynRDFa.Treeple;
+import dynRDFa.VelociDataModel;
+
+/**
+ * JMH benchmarks of the stages of the page generation pipeline. Every stage is measured on its own,
+ * against a fixed local dataset: a constructed model stored in a file (by default conf/outputFile.txt,
+ * the N3 output of the CONSTRUCT query), so neither mySQL nor D2RQ take part in the measurements.
+ * The benchmarks have to run with the dynRDFa project as the working directory, since the select
+ * queries and the template are read from conf/ (see bench/pom.xml). Run them through {@link BenchmarkMain}, which adds
+ * the gc profiler, so that every stage reports its allocation rate next to its throughput.
+ * @author magda
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	/**
+	 * The constructed model and the structures of one web page, built once per trial.
+	 */
+	@State(Scope.Benchmark)
+	public static class PageState {
+		//the file that holds the constructed model.
+		@Param({"conf/outputFile.txt"})
+		public String dataset;
+		//the serialization of the dataset file.
+		@Param({"N3"})
+		public String lang;
+		//the web page (valid: 0 to 5).
+		@Param({"0"})
+		public int choice;
+
+		ModelMaker modelMaker;
+		Model resultsModel;
+		//the result of the select query of the page, rewound before every use.
+		ResultSetRewindable resultSet;
+		//the structured treeples of the page.
+		ArrayList<Treeple> treeples;
+		ExportableModel exportableModel;
+		VelociDataModel vdm;
+		File outputDir;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException{
+			resultsModel = ModelFactory.createDefaultModel();
+			InputStream in = new BufferedInputStream(new FileInputStream(dataset));
+			try{
+				resultsModel.read(in, null, lang);
+			}finally{
+				in.close();
+			}
+			modelMaker = new ModelMaker();
+			modelMaker.setResultsModel(resultsModel);
+			//the run-wide index is built once, as in a real run.
+			modelMaker.getIndex();
+			Query query = QueryRegistry.getInstance().getQuery(ModelMaker.selectFile(choice), "main-select");
+			QueryExecution qExec = QueryExecutionFactory.create(query, resultsModel);
+			try{
+				resultSet = ResultSetFactory.copyResults(qExec.execSelect());
+			}finally{
+				qExec.close();
+			}
+			exportableModel = modelMaker.exportPage(choice);
+			treeples = exportableModel.getTreeples();
+			outputDir = File.createTempFile("dynRDFa-bench", "");
+			if(!outputDir.delete() || !outputDir.mkdir()){
+				throw new IOException("Cannot create directory "+outputDir);
+			}
+			vdm = new VelociDataModel(VelociDataModel.TEMPLATE_FILE, outputDir.getPath(), false);
+			vdm.vdmInitializer();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown(){
+			File[] files = outputDir.listFiles();
+			if(files != null){
+				for(int i=0;i<files.length;i++){
+					files[i].delete();
+				}
+			}
+			outputDir.delete();
+		}
+	}
+
+	/**
+	 * Fresh, not yet structured treeples of the page, rebuilt from the index before every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class UnstructuredState {
+		ArrayList<Treeple> treeples;
+
+		@Setup(Level.Invocation)
+		public void setUp(PageState page){
+			ModelIndex index = page.modelMaker.getIndex();
+			Map<Resource,Treeple> authors = index.getAuthors();
+			treeples = new ArrayList<Treeple>(page.treeples.size());
+			for(int i=0;i<page.treeples.size();i++){
+				Treeple temp = new Treeple();
+				temp.insertSubject(page.treeples.get(i).getSubject());
+				List<Statement> stmts = index.statementsOf(temp.getSubject());
+				for(int j=0;j<stmts.size();j++){
+					temp.insertPredicateObjects(stmts.get(j).getPredicate(), stmts.get(j).getObject());
+				}
+				temp.setObjectLookup(authors);
+				treeples.add(temp);
+			}
+		}
+	}
+
+	/**
+	 * A ModelMaker whose list of treeples is empty and a rewound result of the select query, before
+	 * every invocation, so that createTreeples measures building the treeples and nothing else.
+	 */
+	@State(Scope.Thread)
+	public static class SelectState {
+		@Setup(Level.Invocation)
+		public void setUp(PageState page){
+			page.modelMaker.clearTreeples();
+			page.resultSet.reset();
+		}
+	}
+
+	@Benchmark
+	public ArrayList<Treeple> createTreeples(PageState page,SelectState select){
+		page.modelMaker.createTreeples(page.resultSet);
+		return page.modelMaker.getTreeples();
+	}
+
+	@Benchmark
+	public ArrayList<Treeple> setTreepleStructures(PageState page,UnstructuredState unstructured){
+		for(int i=0;i<unstructured.treeples.size();i++){
+			unstructured.treeples.get(i).setTreepleStructures(page.resultsModel);
+		}
+		return unstructured.treeples;
+	}
+
+	@Benchmark
+	public void treepleToString(PageState page,Blackhole bh){
+		for(int i=0;i<page.treeples.size();i++){
+			bh.consume(page.treeples.get(i).toString());
+		}
+	}
+
+	@Benchmark
+	public ArrayList<String> getMappings(PageState page){
+		return ModelMaker.getMappings(page.treeples);
+	}
+
+	@Benchmark
+	public Map<Integer,Integer> publicationsPerYear(PageState page){
+		return ModelMaker.publicationsPerYear(page.treeples);
+	}
+
+	@Benchmark
+	public void builder(PageState page){
+		page.vdm.builder(page.exportableModel);
+	}
+}
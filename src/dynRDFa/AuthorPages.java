@@ -0,0 +1,91 @@
+package dynRDFa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The AuthorPages class writes one html document per author (author-N.html, N being the AuthorID of
+ * the author's URI), holding the RDFa block of the author (foaf:Person) and the publications of the
+ * author in descending year order. The exportableModels of the pages come from the inverted index of
+ * {@link ModelMaker#exportAuthors()}, so the treeples of the publications are built once and shared
+ * by the pages of all their authors. The pages are rendered in parallel.
+ * @author magda
+ */
+public class AuthorPages {
+	//the template of the author pages.
+	public static final String TEMPLATE_FILE = "conf/author.vm";
+	//renders the author pages, with the author template.
+	private VelociDataModel authorVdm;
+	//the pool that renders the author pages.
+	private ExecutorService pool;
+
+	/**
+	 * Class constructor.
+	 * @param authorVdm renders the author pages, with the author template (e.g. conf/author.vm).
+	 * @param workers number of author pages rendered at the same time.
+	 */
+	public AuthorPages(VelociDataModel authorVdm,int workers){
+		this.authorVdm = authorVdm;
+		this.pool = Executors.newFixedThreadPool(Math.max(1, workers));
+	}
+
+	/**
+	 * Renders the pages of all the authors of the constructed model. A page that fails does not stop
+	 * the others, its name is printed.
+	 * @param modelMaker the ModelMaker that holds the constructed model.
+	 * @return the number of author pages written.
+	 */
+	public int build(ModelMaker modelMaker){
+		final List<ExportableModel> pages = modelMaker.exportAuthors();
+		List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+		for(int i=0;i<pages.size();i++){
+			final ExportableModel page = pages.get(i);
+			tasks.add(pool.submit(new Callable<Boolean>() {
+				public Boolean call(){
+					return authorVdm.builder(page, authorFile(page));
+				}
+			}));
+		}
+		int written = 0;
+		for(int i=0;i<tasks.size();i++){
+			try{
+				if(tasks.get(i).get()){
+					written++;
+				}
+				else{
+					System.out.println(authorFile(pages.get(i))+" was not written");
+				}
+			}catch(ExecutionException e){
+				System.out.println("Rendering of "+authorFile(pages.get(i))+" failed: "+e.getCause());
+				e.getCause().printStackTrace();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return written;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * @param page the exportableModel of an author page.
+	 * @return the name of its html document, e.g. author-12.html for .../authors/12
+	 */
+	public static String authorFile(ExportableModel page){
+		String uri = page.getAuthor().getSubject().toString();
+		String id = uri.substring(Math.max(uri.lastIndexOf('/'), uri.lastIndexOf('#'))+1);
+		//the id ends up in a file name.
+		return "author-"+id.replaceAll("[^A-Za-z0-9_.-]", "_")+".html";
+	}
+
+	/**
+	 * Stops the pool that renders the author pages.
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+}
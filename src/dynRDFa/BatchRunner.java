@@ -0,0 +1,197 @@
+package dynRDFa;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The BatchRunner class builds the web pages of several sites (research groups, see {@link SiteConfig})
+ * in one process, so that Jena, D2RQ and Velocity are loaded and warmed up once. The sites share:
+ * <ul>
+ * <li>one VelocityEngine, so a template used by several sites is parsed once,</li>
+ * <li>the {@link QueryRegistry}, so a query file used by several sites is parsed once,</li>
+ * <li>one bounded pool of workers: every site is a task of the pool, which builds the model of the site
+ * and renders its pages, and at most as many sites as there are workers are in memory at a time.</li>
+ * </ul>
+ * A site that fails (e.g. its database cannot be reached) is reported as failed, the other sites of the
+ * batch are built all the same, and so is a site with a page that was not written. For every site the
+ * report gives the time, the pages and publications per second and the bytes of the pages written by the run.
+ * The static files the pages link to (lpis.css, date.js, images2006) are copied from conf/webpages into
+ * the output directory of a site that does not have them.
+ * @author magda
+ */
+public class BatchRunner {
+	//the pages of a site.
+	private static final int[] PAGES = {0, 1, 2, 3, 4, 5};
+	//the static files of conf/webpages that the pages link to.
+	private static final String[] ASSETS = {"lpis.css", "date.js", "images2006"};
+	//the pool that builds the sites.
+	private ExecutorService pool;
+	//owns the VelocityEngine that all the sites share.
+	private VelociDataModel engine;
+
+	/**
+	 * Class constructor.
+	 * @param workers number of sites built at the same time.
+	 * @param log if true velocity logs to velocity.log, otherwise its logging is switched off.
+	 */
+	public BatchRunner(int workers,boolean log){
+		this.pool = Executors.newFixedThreadPool(Math.max(1, workers));
+		this.engine = new VelociDataModel(VelociDataModel.TEMPLATE_FILE, VelociDataModel.OUTPUT_DIR, log);
+	}
+
+	/**
+	 * Builds the pages of the given sites.
+	 * @param sites the sites of the batch.
+	 * @return one report line per site, in the order of the sites.
+	 */
+	public List<String> run(List<SiteConfig> sites){
+		List<Future<String>> tasks = new ArrayList<Future<String>>();
+		for(int i=0;i<sites.size();i++){
+			final SiteConfig site = sites.get(i);
+			tasks.add(pool.submit(new Callable<String>() {
+				public String call() throws IOException{
+					return build(site);
+				}
+			}));
+		}
+		List<String> report = new ArrayList<String>();
+		for(int i=0;i<tasks.size();i++){
+			String name = sites.get(i).getName();
+			try{
+				report.add(tasks.get(i).get());
+			}catch(ExecutionException e){
+				//the failure of a site does not stop the batch.
+				report.add(String.format("%-16s FAILED: %s", name, e.getCause()));
+				e.getCause().printStackTrace();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				report.add(String.format("%-16s INTERRUPTED", name));
+				break;
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Builds the model of a site and renders its pages.
+	 * @param site the site.
+	 * @return the report line of the site.
+	 * @throws IOException when the output directory cannot be created, or a page of the site was not written.
+	 */
+	private String build(SiteConfig site) throws IOException{
+		long start = System.nanoTime();
+		ModelMaker modelMaker = new ModelMaker(site.getMappingFile(), site.getQueryDir());
+		if(site.isJdbc()){
+			modelMaker.loadJdbcModel();
+		}
+		else{
+			modelMaker.initializeD2RQModel();
+			modelMaker.constructModel();
+		}
+		if(modelMaker.getResultsModel() == null){
+			//the loaders print the cause.
+			throw new IllegalStateException("no constructed model for "+site.getMappingFile());
+		}
+		File outputDir = new File(site.getOutputDir());
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()){
+			throw new IOException("Cannot create directory "+outputDir);
+		}
+		copyAssets(outputDir);
+		ModelIndex index = modelMaker.getIndex();
+		int publications = index.getSubjects().size()-index.getAuthors().size();
+		VelociDataModel vdm = new VelociDataModel(engine, site.getTemplateFile(), site.getOutputDir());
+		vdm.vdmInitializer();
+		//the pages of a site are rendered by the worker of the site.
+		int[] failed = new PageGenerator(modelMaker, vdm, 1).generate(PAGES);
+		modelMaker.releaseModel();
+		if(failed.length > 0){
+			//the cause of every page is printed by the generator.
+			throw new IOException("pages "+Arrays.toString(failed)+" of "+site.getName()+" were not written");
+		}
+		//every page was written by this run, none is left from an earlier one.
+		long bytes = 0;
+		for(int i=0;i<PAGES.length;i++){
+			bytes += new File(outputDir, "type"+PAGES[i]+".html").length();
+		}
+		double seconds = Math.max(System.nanoTime()-start, 1)/1e9;
+		return String.format("%-16s %8d ms %6.1f pages/s %9.1f publications/s %10d bytes",
+				site.getName(), (long)(seconds*1000), PAGES.length/seconds, publications/seconds, bytes);
+	}
+
+	/**
+	 * Copies the static files of conf/webpages that a directory does not have, e.g. into the default
+	 * output directory conf/webpages/name. The files the directory has are kept.
+	 * @param outputDir the output directory of a site.
+	 * @throws IOException when a file cannot be copied.
+	 */
+	private static void copyAssets(File outputDir) throws IOException{
+		final Path from = new File(VelociDataModel.OUTPUT_DIR).toPath().toAbsolutePath().normalize();
+		final Path to = outputDir.toPath().toAbsolutePath().normalize();
+		if(from.equals(to)){
+			return;
+		}
+		for(int i=0;i<ASSETS.length;i++){
+			Path asset = from.resolve(ASSETS[i]);
+			if(!Files.exists(asset)){
+				continue;
+			}
+			Files.walkFileTree(asset, new SimpleFileVisitor<Path>() {
+				public FileVisitResult preVisitDirectory(Path dir,BasicFileAttributes attrs) throws IOException{
+					Files.createDirectories(to.resolve(from.relativize(dir)));
+					return FileVisitResult.CONTINUE;
+				}
+				public FileVisitResult visitFile(Path file,BasicFileAttributes attrs) throws IOException{
+					Path target = to.resolve(from.relativize(file));
+					if(!Files.exists(target)){
+						Files.copy(file, target);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops the pool of workers.
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	/**
+	 * Builds the pages of all the sites of a batch.
+	 * @param args options: --sites=file the sites of the batch (default conf/sites.properties, see
+	 * {@link SiteConfig}), --threads=n the number of sites built at the same time (default: one per
+	 * available processor), --velocity-log turns velocity's logging to velocity.log back on.
+	 * @throws IOException when the sites file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException{
+		RunOptions options = RunOptions.parse(args);
+		//suppress log4j warnings
+		org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.OFF);
+		List<SiteConfig> sites = SiteConfig.read(options.get("sites", "conf/sites.properties"));
+		BatchRunner runner = new BatchRunner(options.getInt("threads", Runtime.getRuntime().availableProcessors()),
+				options.isSet("velocity-log"));
+		try{
+			List<String> report = runner.run(sites);
+			for(int i=0;i<report.size();i++){
+				System.out.println(report.get(i));
+			}
+		}finally{
+			runner.shutdown();
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package dynRDFa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * The ChangeTracker class supports incremental generation. For every publication of the constructed
+ * model it computes a digest of the publication's statements and of the statements of its authors,
+ * and compares these digests with the ones recorded by the previous run. Publications that were added,
+ * changed or removed mark the pages of their dc:type (before and after the change) as affected, together
+ * with the page of all publications. A page is also rebuilt when its select query, the template, or its
+ * html document changed or disappeared, when the layout of the output changed (e.g. per-year shards
+ * instead of one document per page), or when it failed in the previous run. All the other pages are skipped.
+ * The digests are stored in a text file, one line per publication: subject, dc:type, digest.
+ * @author magda
+ */
+public class ChangeTracker {
+	//the dc:type predicate.
+	private static final String DC_TYPE = "http://purl.org/dc/elements/1.1/type";
+	//the file that holds the digests of the previous run.
+	private File digestFile;
+	//the directory of the select queries the pages are built from.
+	private String queryDir;
+	//current digests, hashed by publication subject.
+	private HashMap<String,String> digests;
+	//current dc:type of each publication.
+	private HashMap<String,String> types;
+	//current digests of the template and the select queries.
+	private HashMap<String,String> sources;
+
+	/**
+	 * Class constructor.
+	 * @param digestFile the file that holds the digests of the previous run, e.g. conf/snapshot/publications.digests
+	 * @param queryDir the directory of the select queries, the same as the ModelMaker's, e.g. conf/sparqls
+	 */
+	public ChangeTracker(String digestFile,String queryDir){
+		this.digestFile = new File(digestFile);
+		this.queryDir = queryDir;
+	}
+
+	/**
+	 * Computes the current digests, compares them with the ones of the previous run, and reports
+	 * which publications changed and which pages are skipped.
+	 * @param modelMaker a ModelMaker whose model has been constructed.
+	 * @param templateFile the template the pages are rendered with.
+	 * @param outputDir the directory of the html documents.
+	 * @param pages the pages that would be generated in a full run.
+	 * @param layout describes the options that change the documents written for a page, e.g.
+	 * "shard-by-year columnar"; when it differs from the previous run's, all the pages are rebuilt.
+	 * @return the pages that have to be generated.
+	 * @throws IOException when the template or a select query cannot be read.
+	 */
+	public int[] pagesToRebuild(ModelMaker modelMaker,String templateFile,String outputDir,int[] pages,String layout) throws IOException{
+		computeDigests(modelMaker.getIndex());
+		sources = new HashMap<String,String>();
+		sources.put("template", ModelSnapshot.digest(new File(templateFile)));
+		sources.put("layout", layout);
+		for(int i=0;i<pages.length;i++){
+			sources.put("select."+pages[i], ModelSnapshot.digest(new File(ModelMaker.selectFile(queryDir, pages[i]))));
+		}
+		HashMap<String,String> oldDigests = new HashMap<String,String>();
+		HashMap<String,String> oldTypes = new HashMap<String,String>();
+		HashMap<String,String> oldSources = new HashMap<String,String>();
+		if(!load(oldDigests, oldTypes, oldSources)){
+			System.out.println("No digests of a previous run, generating all pages.");
+			return pages;
+		}
+		boolean[] affected = new boolean[6];
+		int added = 0, changed = 0, removed = 0;
+		for(Map.Entry<String, String> entry : digests.entrySet()){
+			String old = oldDigests.get(entry.getKey());
+			if(old == null){
+				added++;
+			}
+			else if(!old.equals(entry.getValue())){
+				changed++;
+				mark(affected, oldTypes.get(entry.getKey()));
+			}
+			else{
+				continue;
+			}
+			mark(affected, types.get(entry.getKey()));
+		}
+		for(Map.Entry<String, String> entry : oldDigests.entrySet()){
+			if(!digests.containsKey(entry.getKey())){
+				removed++;
+				mark(affected, oldTypes.get(entry.getKey()));
+			}
+		}
+		System.out.println("Publications added: "+added+", changed: "+changed+", removed: "+removed);
+		boolean templateChanged = !sources.get("template").equals(oldSources.get("template"))
+				|| !sources.get("layout").equals(oldSources.get("layout"));
+		ArrayList<Integer> rebuild = new ArrayList<Integer>();
+		for(int i=0;i<pages.length;i++){
+			int page = pages[i];
+			String file = outputDir+"/type"+page+".html";
+			if(affected[page] || templateChanged || !new File(file).isFile()
+					|| !sources.get("select."+page).equals(oldSources.get("select."+page))){
+				rebuild.add(page);
+			}
+			else{
+				System.out.println("Skipped "+file+" (unchanged)");
+			}
+		}
+		int[] result = new int[rebuild.size()];
+		for(int i=0;i<result.length;i++){
+			result[i] = rebuild.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Records the digests of this run, to be compared with on the next one.
+	 * Should be called after the pages have been generated. The select query of a page that failed
+	 * is recorded as failed, so that the next run rebuilds the page whatever its publications.
+	 * @param failed the pages that failed in this run, see {@link PageGenerator#generate(int[])}.
+	 * @throws IOException when the file cannot be written.
+	 */
+	public void save(int[] failed) throws IOException{
+		for(int i=0;i<failed.length;i++){
+			sources.put("select."+failed[i], "failed");
+		}
+		File dir = digestFile.getAbsoluteFile().getParentFile();
+		if(dir != null && !dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Cannot create directory "+dir);
+		}
+		File tmp = new File(digestFile.getPath()+".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+		try{
+			for(Map.Entry<String, String> entry : sources.entrySet()){
+				out.write("#"+entry.getKey()+"\t"+entry.getValue()+"\n");
+			}
+			for(Map.Entry<String, String> entry : digests.entrySet()){
+				out.write(entry.getKey()+"\t"+types.get(entry.getKey())+"\t"+entry.getValue()+"\n");
+			}
+		}finally{
+			out.close();
+		}
+		if(digestFile.exists() && !digestFile.delete()){
+			throw new IOException("Cannot replace "+digestFile);
+		}
+		if(!tmp.renameTo(digestFile)){
+			throw new IOException("Cannot rename "+tmp+" to "+digestFile);
+		}
+	}
+
+	/**
+	 * Computes the digest of every publication (a subject that has a dc:type).
+	 * @param index the index of the constructed model.
+	 */
+	private void computeDigests(ModelIndex index){
+		digests = new HashMap<String,String>();
+		types = new HashMap<String,String>();
+		for(Resource subject : index.getSubjects()){
+			List<Statement> stmts = index.statementsOf(subject);
+			String type = null;
+			//sorted, so that the digest does not depend on the order of the statements.
+			TreeSet<String> lines = new TreeSet<String>();
+			for(int i=0;i<stmts.size();i++){
+				Statement stmt = stmts.get(i);
+				RDFNode object = stmt.getObject();
+				if(stmt.getPredicate().getURI().equals(DC_TYPE) && object.isLiteral()){
+					type = object.asLiteral().getLexicalForm();
+				}
+				lines.add(stmt.getPredicate().getURI()+" "+object);
+				//the statements of the authors are part of the publication's digest.
+				if(!object.isLiteral()){
+					List<Statement> objStmts = index.statementsOf(object.asResource());
+					for(int j=0;j<objStmts.size();j++){
+						lines.add(object+" "+objStmts.get(j).getPredicate().getURI()+" "+objStmts.get(j).getObject());
+					}
+				}
+			}
+			if(type == null){
+				continue;
+			}
+			MessageDigest md = ModelSnapshot.newDigest();
+			try{
+				for(String line : lines){
+					md.update(line.getBytes("UTF-8"));
+					md.update((byte)'\n');
+				}
+			}catch(IOException e){
+				//UTF-8 is always supported.
+				throw new IllegalStateException(e);
+			}
+			digests.put(subject.toString(), ModelSnapshot.toHex(md.digest()));
+			types.put(subject.toString(), type);
+		}
+	}
+
+	/**
+	 * Reads the digests of the previous run.
+	 * @return false if there are none.
+	 */
+	private boolean load(Map<String,String> oldDigests,Map<String,String> oldTypes,Map<String,String> oldSources){
+		if(!digestFile.isFile()){
+			return false;
+		}
+		try{
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(digestFile), "UTF-8"));
+			try{
+				String line;
+				while((line = in.readLine()) != null){
+					String[] fields = line.split("\t");
+					if(line.startsWith("#") && fields.length == 2){
+						oldSources.put(fields[0].substring(1), fields[1]);
+					}
+					else if(fields.length == 3){
+						oldTypes.put(fields[0], fields[1]);
+						oldDigests.put(fields[0], fields[2]);
+					}
+				}
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the page of a publication type, and the page of all publications, as affected.
+	 * @param affected the affected pages.
+	 * @param type the dc:type of a publication, may be null.
+	 */
+	private static void mark(boolean[] affected,String type){
+		affected[0] = true;
+		if(type != null){
+			int page = ModelMaker.pageForType(type);
+			if(page > 0){
+				affected[page] = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package dynRDFa;
+
+import java.util.Arrays;
+
+/**
+ * The CitationCounts class holds the number of references to every cited publication, keyed by the
+ * PublicationID. It replaces the COUNT subquery of the CONSTRUCT query: the counts are read in one
+ * aggregated pass over the references table (see {@link JdbcModelLoader#loadCitationCounts()}) and
+ * merged into the constructed model afterwards (see {@link ModelMaker#mergeCitations(CitationCounts)}).
+ * The counts are kept in an open addressing hash table of ints, without an Integer per publication.
+ * @author magda
+ */
+public class CitationCounts {
+	//marks an empty slot; the PublicationIDs are positive.
+	private static final int EMPTY = Integer.MIN_VALUE;
+	//PublicationIDs and their counts, in the same slots.
+	private int[] keys;
+	private int[] counts;
+	//number of publications with a count.
+	private int size;
+
+	/**
+	 * Class constructor: an empty table.
+	 */
+	public CitationCounts(){
+		keys = new int[64];
+		counts = new int[64];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Adds references to a publication.
+	 * @param publicationId the PublicationID the references point to.
+	 * @param references the number of references to add.
+	 */
+	public void add(int publicationId,int references){
+		int slot = slot(keys, publicationId);
+		if(keys[slot] == EMPTY){
+			keys[slot] = publicationId;
+			size++;
+			if(size*4 > keys.length*3){
+				grow();
+				slot = slot(keys, publicationId);
+			}
+		}
+		counts[slot] += references;
+	}
+
+	/**
+	 * @param publicationId a PublicationID.
+	 * @return the number of references to the publication, 0 if it is not cited.
+	 */
+	public int get(int publicationId){
+		int slot = slot(keys, publicationId);
+		return keys[slot] == EMPTY ? 0 : counts[slot];
+	}
+
+	/**
+	 * @return the number of cited publications.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return the PublicationIDs of the cited publications, in no particular order.
+	 */
+	public int[] publicationIds(){
+		int[] ids = new int[size];
+		int n = 0;
+		for(int i=0;i<keys.length;i++){
+			if(keys[i] != EMPTY){
+				ids[n++] = keys[i];
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * @return the slot of a key: the slot that holds it, or the empty slot where it belongs.
+	 */
+	private static int slot(int[] keys,int key){
+		int mask = keys.length-1;
+		//spreads consecutive IDs over the table.
+		int hash = key*0x9E3779B9;
+		int slot = (hash ^ hash >>> 16) & mask;
+		while(keys[slot] != EMPTY && keys[slot] != key){
+			slot = (slot+1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the table.
+	 */
+	private void grow(){
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new int[oldKeys.length*2];
+		counts = new int[oldKeys.length*2];
+		Arrays.fill(keys, EMPTY);
+		for(int i=0;i<oldKeys.length;i++){
+			if(oldKeys[i] != EMPTY){
+				int slot = slot(keys, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+}
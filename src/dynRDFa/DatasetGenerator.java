@@ -0,0 +1,496 @@
+package dynRDFa;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * The DatasetGenerator class produces synthetic bibliographic datasets, so that ModelMaker and the
+ * template can be tried at sizes larger than the lab's database. The number of publications, the
+ * number of authors per paper, the mix of publication types, the spread of the years and the number
+ * of citations are configurable; the defaults follow the lab's dataset. A dataset is emitted either
+ * in the constructed vocabulary (dc/dct/bibo/foaf/cito, as conf/outputFile.txt), ready to be used in
+ * place of the CONSTRUCT result, or as SQL rows of the five mapped tables (authors, keywords,
+ * publications, references, rights), ready to be loaded in mySQL and read through D2RQ.
+ * Both forms describe the same dataset: every publication is derived from the seed and its number
+ * only, so the same settings always produce the same data.
+ * @author magda
+ */
+public class DatasetGenerator {
+	private static final String DC = "http://purl.org/dc/elements/1.1/";
+	private static final String DCT = "http://purl.org/dc/terms/";
+	private static final String BIBO = "http://purl.org/ontology/bibo/";
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+	private static final String CITO = "http://purl.org/net/cito/";
+	//the author IDs are shifted by this number in the constructed model (see construct.txt).
+	private static final int AUTHOR_ID_OFFSET = 80000;
+	//number of rows per INSERT statement.
+	private static final int ROWS_PER_INSERT = 500;
+	//words the titles, names and venues are made of.
+	private static final String[] WORDS = {"Semantic", "Web", "Agents", "Ontology", "Reasoning", "Rule", "Engine",
+		"Learning", "Multi-Label", "Classification", "Mining", "Data", "Knowledge", "Distributed", "Ambient",
+		"Intelligence", "Service", "Middleware", "Logic", "Defeasible", "Planning", "Retrieval", "Evaluation",
+		"Framework", "Approach", "System", "Model", "Stream", "Linked", "Query"};
+	private static final String[] SYLLABLES = {"ka", "to", "po", "ni", "la", "me", "ri", "so", "the", "va",
+		"dis", "kos", "lou", "mar", "ne", "pa", "gi", "an", "ou", "re"};
+	private static final String[] PUBLISHERS = {"Springer-Verlag", "Elsevier", "IEEE", "ACM", "IOS Press",
+		"Idea Group Reference", "N/A"};
+	private static final String[] PLACES = {"Thessaloniki, Greece", "Innsbruck, Austria", "Lyon, France",
+		"Boston, USA", "Barcelona, Spain", "N/A"};
+
+	//number of publications.
+	private int publications = 373;
+	//number of authors the papers are written by.
+	private int authors = 242;
+	//average number of authors per paper.
+	private int authorsPerPaper = 3;
+	//publication types (MediaType), mapped to their weights in the mix.
+	private LinkedHashMap<String,Integer> typeMix;
+	//the years of the publications.
+	private int firstYear = 1986;
+	private int lastYear = 2014;
+	//percentage of publications that are cited at least once.
+	private int citedPercent = 57;
+	//maximum number of citations of a publication.
+	private int maxCitations = 20;
+	//seed of the random generators.
+	private long seed = 2014;
+	//the base of the subject URIs in the constructed model.
+	private String base;
+
+	/**
+	 * Class constructor: the default settings produce a dataset of the size and shape of the lab's.
+	 */
+	public DatasetGenerator(){
+		typeMix = new LinkedHashMap<String,Integer>();
+		typeMix.put("Journal", 98);
+		typeMix.put("Conference Proceedings", 165);
+		typeMix.put("Workshop Proceedings", 55);
+		typeMix.put("Symposium Proceedings", 7);
+		typeMix.put("Book Chapter", 28);
+		typeMix.put("Book", 14);
+		typeMix.put("Technical Report", 5);
+		base = new File(ModelMaker.MAPPING_FILE).getAbsoluteFile().toURI()+"#";
+	}
+
+	/**
+	 * Setter
+	 * @param publications the number of publications. The number of authors is scaled along with it.
+	 */
+	public void setPublications(int publications){
+		publications = Math.max(1, publications);
+		this.authors = Math.max(1, (int)((long)authors*publications/this.publications));
+		this.publications = publications;
+	}
+
+	/**
+	 * Setter
+	 * @param authors the number of authors the papers are written by.
+	 */
+	public void setAuthors(int authors){
+		this.authors = Math.max(1, authors);
+	}
+
+	/**
+	 * Setter
+	 * @param authorsPerPaper the average number of authors per paper.
+	 */
+	public void setAuthorsPerPaper(int authorsPerPaper){
+		this.authorsPerPaper = Math.max(1, authorsPerPaper);
+	}
+
+	/**
+	 * Setter
+	 * @param typeMix the publication types mapped to their weights, e.g. Journal:98,Book:14
+	 */
+	public void setTypeMix(String typeMix){
+		LinkedHashMap<String,Integer> mix = new LinkedHashMap<String,Integer>();
+		String[] entries = typeMix.split(",");
+		for(int i=0;i<entries.length;i++){
+			int colon = entries[i].lastIndexOf(':');
+			if(colon < 0){
+				throw new IllegalArgumentException("Expected type:weight, found "+entries[i]);
+			}
+			mix.put(entries[i].substring(0, colon).trim(), Integer.parseInt(entries[i].substring(colon+1).trim()));
+		}
+		this.typeMix = mix;
+	}
+
+	/**
+	 * Setter
+	 * @param firstYear the year of the oldest publications.
+	 * @param lastYear the year of the latest publications, most publications are recent.
+	 */
+	public void setYears(int firstYear,int lastYear){
+		this.firstYear = Math.min(firstYear, lastYear);
+		this.lastYear = Math.max(firstYear, lastYear);
+	}
+
+	/**
+	 * Setter
+	 * @param citedPercent the percentage of publications that are cited at least once.
+	 * @param maxCitations the maximum number of citations of a publication.
+	 */
+	public void setCitations(int citedPercent,int maxCitations){
+		this.citedPercent = citedPercent;
+		this.maxCitations = Math.max(1, maxCitations);
+	}
+
+	/**
+	 * Setter
+	 * @param seed the seed of the random generators.
+	 */
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * Setter
+	 * @param base the base of the subject URIs in the constructed model, e.g. file:///.../pubsmap.ttl#
+	 */
+	public void setBase(String base){
+		this.base = base;
+	}
+
+	/**
+	 * Produces the dataset in the constructed vocabulary, as the CONSTRUCT query would: the optional
+	 * fields (publisher, editor, volume, pages, location) and the citation count only appear for
+	 * publications that are cited at least once, and only authors of a publication appear.
+	 * @return a model that can be used in place of the constructed model.
+	 */
+	public Model generateModel(){
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefix("dc", DC);
+		model.setNsPrefix("dct", DCT);
+		model.setNsPrefix("bibo", BIBO);
+		model.setNsPrefix("foaf", FOAF);
+		model.setNsPrefix("cito", CITO);
+		model.setNsPrefix("xsd", XSDDatatype.XSD+"#");
+		Property identifier = model.createProperty(DC+"identifier");
+		Property title = model.createProperty(DC+"title");
+		Property date = model.createProperty(DC+"date");
+		Property type = model.createProperty(DC+"type");
+		Property presentedAt = model.createProperty(BIBO+"presentedAt");
+		Property publisher = model.createProperty(DCT+"publisher");
+		Property editor = model.createProperty(BIBO+"editor");
+		Property volume = model.createProperty(BIBO+"volume");
+		Property pages = model.createProperty(BIBO+"pages");
+		Property location = model.createProperty(DCT+"location");
+		Property count = model.createProperty(CITO+"globalCountValue");
+		Property creator = model.createProperty(DCT+"creator");
+		Property familyName = model.createProperty(FOAF+"familyName");
+		Property givenName = model.createProperty(FOAF+"givenName");
+		boolean[] added = new boolean[authors+1];
+		for(int i=1;i<=publications;i++){
+			Publication pub = publication(i);
+			Resource subject = model.createResource(base+"publications/"+pub.id);
+			model.add(subject, identifier, model.createTypedLiteral(Integer.toString(pub.id), XSDDatatype.XSDint));
+			model.add(subject, title, model.createLiteral(pub.title));
+			model.add(subject, type, model.createLiteral(pub.type));
+			model.add(subject, presentedAt, model.createLiteral(pub.mediaTitle));
+			model.add(subject, date, model.createTypedLiteral(Integer.toString(pub.year), XSDDatatype.XSDint));
+			if(pub.citations > 0){
+				model.add(subject, publisher, model.createLiteral(pub.publisher));
+				model.add(subject, editor, model.createLiteral(pub.editors));
+				model.add(subject, volume, model.createLiteral(pub.volume));
+				model.add(subject, pages, model.createLiteral(pub.pages));
+				model.add(subject, location, model.createLiteral(pub.location));
+				model.add(subject, count, model.createTypedLiteral(Integer.toString(pub.citations), XSDDatatype.XSDinteger));
+			}
+			for(int j=0;j<pub.authorIds.length;j++){
+				int aid = pub.authorIds[j];
+				Resource author = model.createResource(base+"authors/"+aid);
+				model.add(subject, creator, author);
+				if(!added[aid]){
+					String[] name = authorName(aid);
+					model.add(author, identifier, model.createTypedLiteral(Integer.toString(aid+AUTHOR_ID_OFFSET), XSDDatatype.XSDinteger));
+					model.add(author, givenName, model.createLiteral(name[0]));
+					model.add(author, familyName, model.createLiteral(name[1]));
+					added[aid] = true;
+				}
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Writes the dataset in the constructed vocabulary.
+	 * @param file the output file.
+	 * @param lang the serialization, e.g. N3 or N-TRIPLE
+	 * @throws IOException when the file cannot be written.
+	 */
+	public void writeModel(String file,String lang) throws IOException{
+		Model model = generateModel();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try{
+			model.write(out, lang);
+		}finally{
+			out.close();
+			model.close();
+		}
+	}
+
+	/**
+	 * Writes the dataset as INSERT statements (mySQL syntax) for the five tables of the mapping file.
+	 * The rows are produced one publication at a time, so the dataset is never held in memory.
+	 * @param file the output file.
+	 * @throws IOException when the file cannot be written.
+	 */
+	public void writeSql(String file) throws IOException{
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try{
+			SqlTable authorsTable = new SqlTable(out, "authors", "AuthorID", "AuthorName", "AuthorMidleName",
+					"AuthorSurname", "AuthorURL", "AuthorEmail", "CSD-DEP");
+			for(int aid=1;aid<=authors;aid++){
+				String[] name = authorName(aid);
+				authorsTable.row(aid, name[0], "", name[1], "", name[1].toLowerCase()+"@example.org", aid%2);
+			}
+			authorsTable.close();
+			SqlTable pubsTable = new SqlTable(out, "publications", "PublicationID", "PublicationTitle", "MediaType",
+					"PublicationType", "MediaTitle", "MediaPublisher", "MediaEditors", "MediaVolInfo", "PublicationYear",
+					"PublicationNoOfPages", "PublicationPagesInMedium", "PublicationAbstract", "PublicationFileName",
+					"PublicationComments", "PublicationRelatedURL", "PublicationRelatedURLText", "PublicationLocation",
+					"PublicationPubURL", "DisplayOnMLKD", "DisplayOnISKP", "PublishOnWeb");
+			SqlTable rightsTable = new SqlTable(out, "rights", "PublicationID", "AuthorID", "AuthorOrder");
+			SqlTable refsTable = new SqlTable(out, "references", "RefID", "RefPaperID", "RefDetails", "RefYear");
+			SqlTable keywordsTable = new SqlTable(out, "keywords", "PublicationID", "Keyword", "KeywordOrder");
+			int refId = 0;
+			for(int i=1;i<=publications;i++){
+				Publication pub = publication(i);
+				pubsTable.row(pub.id, pub.title, pub.type, Math.max(0, ModelMaker.pageForType(pub.type)), pub.mediaTitle,
+						pub.publisher, pub.editors, pub.volume, pub.year, pub.pageCount, pub.pages, "", "", "", "", "",
+						pub.location, "", 1, 0, 1);
+				for(int j=0;j<pub.authorIds.length;j++){
+					rightsTable.row(pub.id, pub.authorIds[j], j+1);
+				}
+				for(int j=0;j<pub.citations;j++){
+					refId++;
+					refsTable.row(refId, pub.id, "Citation "+refId, Math.min(lastYear, pub.year+1+j%5));
+				}
+				for(int j=0;j<pub.keywords.length;j++){
+					keywordsTable.row(pub.id, pub.keywords[j], j+1);
+				}
+			}
+			pubsTable.close();
+			rightsTable.close();
+			refsTable.close();
+			keywordsTable.close();
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Derives a publication from the seed and its number only.
+	 * @param id the ID of the publication (1 to publications).
+	 * @return the publication.
+	 */
+	private Publication publication(int id){
+		Random random = new Random(seed*31+id);
+		Publication pub = new Publication();
+		pub.id = id;
+		pub.title = words(random, 3+random.nextInt(7));
+		pub.type = pickType(random);
+		pub.mediaTitle = "Proc. "+words(random, 4)+" ("+id%97+")";
+		//most publications are recent.
+		double r = random.nextDouble();
+		pub.year = lastYear-(int)((lastYear-firstYear+1)*r*r);
+		int authorCount = 1+random.nextInt(2*authorsPerPaper-1);
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		while(ids.size() < Math.min(authorCount, authors)){
+			int aid = 1+random.nextInt(authors);
+			if(!ids.contains(aid)){
+				ids.add(aid);
+			}
+		}
+		pub.authorIds = new int[ids.size()];
+		for(int i=0;i<pub.authorIds.length;i++){
+			pub.authorIds[i] = ids.get(i);
+		}
+		pub.citations = random.nextInt(100) < citedPercent ? 1+random.nextInt(maxCitations) : 0;
+		pub.publisher = PUBLISHERS[random.nextInt(PUBLISHERS.length)];
+		pub.editors = random.nextInt(10) < 7 ? "N/A" : capitalize(name(random, 2))+" "+capitalize(name(random, 3));
+		pub.volume = random.nextInt(2) == 0 ? "N/A" : (1+random.nextInt(60))+" ("+(1+random.nextInt(12))+")";
+		int firstPage = 1+random.nextInt(900);
+		pub.pageCount = 4+random.nextInt(20);
+		pub.pages = firstPage+"-"+(firstPage+pub.pageCount-1);
+		pub.location = PLACES[random.nextInt(PLACES.length)];
+		pub.keywords = new String[1+random.nextInt(3)];
+		for(int i=0;i<pub.keywords.length;i++){
+			pub.keywords[i] = WORDS[random.nextInt(WORDS.length)]+" "+WORDS[random.nextInt(WORDS.length)];
+		}
+		return pub;
+	}
+
+	/**
+	 * @param aid the ID of an author.
+	 * @return the given name and the family name of the author.
+	 */
+	private String[] authorName(int aid){
+		Random random = new Random(seed*17+aid);
+		return new String[]{capitalize(name(random, 1)).substring(0, 1), capitalize(name(random, 2+random.nextInt(3)))};
+	}
+
+	private String pickType(Random random){
+		int total = 0;
+		for(Integer weight : typeMix.values()){
+			total += weight;
+		}
+		int r = random.nextInt(Math.max(1, total));
+		for(Map.Entry<String, Integer> entry : typeMix.entrySet()){
+			r -= entry.getValue();
+			if(r < 0){
+				return entry.getKey();
+			}
+		}
+		return typeMix.keySet().iterator().next();
+	}
+
+	private static String words(Random random,int count){
+		StringBuilder str = new StringBuilder();
+		for(int i=0;i<count;i++){
+			if(i > 0){
+				str.append(' ');
+			}
+			str.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return str.toString();
+	}
+
+	private static String name(Random random,int syllables){
+		StringBuilder str = new StringBuilder();
+		for(int i=0;i<syllables;i++){
+			str.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return str.toString();
+	}
+
+	private static String capitalize(String s){
+		return Character.toUpperCase(s.charAt(0))+s.substring(1);
+	}
+
+	/**
+	 * The fields of a generated publication.
+	 */
+	private static class Publication {
+		int id;
+		String title;
+		String type;
+		String mediaTitle;
+		String publisher;
+		String editors;
+		String volume;
+		String pages;
+		int pageCount;
+		String location;
+		int year;
+		int citations;
+		int[] authorIds;
+		String[] keywords;
+	}
+
+	/**
+	 * Writes the rows of a table as multi-row INSERT statements.
+	 */
+	private static class SqlTable {
+		private Writer out;
+		private String insert;
+		//rows in the current statement.
+		private int rows;
+
+		SqlTable(Writer out,String table,String... columns) throws IOException{
+			this.out = out;
+			StringBuilder str = new StringBuilder("INSERT INTO `").append(table).append("` (");
+			for(int i=0;i<columns.length;i++){
+				str.append(i > 0 ? ", `" : "`").append(columns[i]).append('`');
+			}
+			insert = str.append(") VALUES\n").toString();
+		}
+
+		void row(Object... values) throws IOException{
+			out.write(rows == 0 ? insert : ",\n");
+			out.write('(');
+			for(int i=0;i<values.length;i++){
+				if(i > 0){
+					out.write(", ");
+				}
+				if(values[i] instanceof String){
+					out.write('\'');
+					out.write(((String)values[i]).replace("\\", "\\\\").replace("'", "''"));
+					out.write('\'');
+				}
+				else{
+					out.write(String.valueOf(values[i]));
+				}
+			}
+			out.write(')');
+			if(++rows == ROWS_PER_INSERT){
+				close();
+			}
+		}
+
+		void close() throws IOException{
+			if(rows > 0){
+				out.write(";\n");
+				rows = 0;
+			}
+		}
+	}
+
+	/**
+	 * Main method.
+	 * @param args options: --publications=n, --authors=n, --authors-per-paper=n, --types=Journal:98,Book:14,...,
+	 * --years=1986-2014, --cited-percent=n, --max-citations=n, --seed=n, --format=model|sql,
+	 * --lang=N3 (for --format=model), --output=file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException{
+		RunOptions options = RunOptions.parse(args);
+		DatasetGenerator generator = new DatasetGenerator();
+		generator.configure(options);
+		String output = options.get("output", null);
+		if("sql".equals(options.get("format", "model"))){
+			generator.writeSql(output == null ? "conf/dataset.sql" : output);
+		}
+		else{
+			generator.writeModel(output == null ? "conf/dataset.n3" : output, options.get("lang", "N3"));
+		}
+	}
+
+	/**
+	 * Applies the options of a run.
+	 * @param options see {@link #main(String[])}
+	 */
+	public void configure(RunOptions options){
+		setPublications(options.getInt("publications", publications));
+		if(options.isSet("authors")){
+			setAuthors(options.getInt("authors", authors));
+		}
+		setAuthorsPerPaper(options.getInt("authors-per-paper", authorsPerPaper));
+		if(options.get("types", null) != null){
+			setTypeMix(options.get("types", null));
+		}
+		String years = options.get("years", null);
+		if(years != null && years.indexOf('-') > 0){
+			setYears(Integer.parseInt(years.substring(0, years.indexOf('-')).trim()),
+					Integer.parseInt(years.substring(years.indexOf('-')+1).trim()));
+		}
+		setCitations(options.getInt("cited-percent", citedPercent), options.getInt("max-citations", maxCitations));
+		setSeed(options.getInt("seed", (int)seed));
+	}
+}
@@ -1,7 +1,9 @@
 package dynRDFa;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 
@@ -15,33 +17,279 @@ public class DynRDFa {
 	/**
 	 * Main method. Creates and initializes ModelMaker and VelociDataModel
 	 * objects in order to generate the 6 webpages.
-	 * @param args
+	 * @param args options: --snapshot[=file] reuses the constructed model of a previous run
+	 * (default file: conf/snapshot/model.nt.gz) as long as the mapping file, the CONSTRUCT query and
+	 * the database are unchanged, --refresh-snapshot[=file] rebuilds that snapshot unconditionally,
+	 * --tdb[=dir] keeps the constructed model in a memory-mapped TDB store (default directory: conf/tdb)
+	 * instead of the heap, reused across runs on the same terms as the snapshot, --refresh-tdb[=dir] rebuilds it,
+	 * --threads[=n] builds n pages at the same time (default: one per available processor),
+	 * --velocity-log turns velocity's logging to velocity.log back on,
+	 * --incremental[=file] only regenerates the pages whose publications were added, changed or removed
+	 * since the previous run (digests kept in conf/snapshot/publications.digests by default), or that
+	 * failed in it, or all of them when the layout options changed; together
+	 * with --snapshot, D2RQ is skipped as well when the database did not change,
+	 * --shard-by-year writes every page as one document per year (typeN-YYYY.html, rendered by
+	 * --shard-threads=n workers) and makes typeN.html an index with the per-year totals,
+	 * --columnar renders the pages from a columnar copy of the publications (PublicationStore) and
+	 * releases the constructed model before rendering,
+	 * --jdbc builds the constructed model with a few SQL queries on the mapped tables (JdbcModelLoader)
+	 * instead of D2RQ and the CONSTRUCT query,
+	 * --citation-pass executes the CONSTRUCT query without its COUNT subquery (construct-uncounted) and
+	 * merges the citation counts of one aggregated SQL query on the references table (CitationCounts),
+	 * --partitioned builds all the pages from one run of the select query of all the publications,
+	 * routing every publication to the page of its type,
+	 * --publish renders the pages into conf/webpages.staging and publishes only the changed ones, with
+	 * a gzipped copy, by atomic renames, along with a manifest of their hashes (see PagePublisher),
+	 * --metrics[=file] records the time and allocated bytes of every stage, the triple, publication and
+	 * author counts and the size of every page, writes them as JSON (default conf/metrics.json) and
+	 * exposes them through JMX as dynRDFa:type=RunMetrics,
+	 * --streaming builds the treeples of a page one at a time while the page is rendered, with the year
+	 * totals of the page taken from an aggregate query (year-totals), so that memory does not grow with
+	 * the size of the page (--columnar, --partitioned and --shard-by-year are then ignored),
+	 * --author-pages also writes one page per author (author-N.html, see AuthorPages) with the
+	 * publications of the author in descending year order, rendered by --author-threads=n workers,
+	 * --export[=jsonld,nt] also writes the statements of every page as JSON-LD (typeN.jsonld) and/or
+	 * N-Triples (typeN.nt), in the same pass that renders the html document (default: both); with
+	 * --shard-by-year they follow the shards (typeN-YYYY.jsonld, typeN-YYYY.nt) and the index page,
+	 * which holds no publications, gets none,
+	 * --serve[=port] serves the pages from memory over http (default port 8080, --serve-threads=n workers)
+	 * instead of writing them, and --regenerate=seconds rebuilds them periodically while serving; with
+	 * --refresh-citations the model is kept and a regeneration only recounts the references and renders
+	 * the pages again if a count changed (the model is still rebuilt when a publication is cited for the
+	 * first time and the model does not hold its OPTIONAL statements, see ModelMaker.refreshCitations).
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws IOException {
+		RunOptions options = RunOptions.parse(args);
 		//suppress log4j warnings
 		org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.OFF);
-		ModelMaker modelM = new ModelMaker();
-		//initial D2RQModel, default vocabulary
-		modelM.initializeD2RQModel();
-		//model with desired vocabulary
- 	    modelM.constructModel();
- 	    
- 	    VelociDataModel vdm = new VelociDataModel();
- 	    ArrayList<ExportableModel> ems = new ArrayList<ExportableModel>();
- 	    //create all 6 web pages 
- 	    for(int i=0;i<=5;i++){
- 	    	modelM.selectOnModel(i);
- 	    	modelM.initializeExportableModel();
- 	    	ems.add(modelM.getExportableModel());
- 	     }
+		if(options.isSet("metrics")){
+			//time and allocated bytes per stage, also available through JMX while the run lasts
+			RunMetrics.getInstance().enable();
+		}
+		ModelMaker modelM = buildModel(options);
  	    
- 	    for(int i=0;i<ems.size();i++){
- 	    	vdm.vdmInitializer();
- 	    	//build
- 	    	vdm.builder(ems.get(i));
+ 	    String outputDir = VelociDataModel.OUTPUT_DIR;
+ 	    PagePublisher publisher = null;
+ 	    if(options.isSet("publish")){
+ 	    	//render into a staging directory, only the changed pages are published
+ 	    	publisher = new PagePublisher(VelociDataModel.OUTPUT_DIR);
+ 	    	publisher.prepare();
+ 	    	outputDir = publisher.getStagingDir();
+ 	    }
+ 	    //one engine and one parsed template for all the pages
+ 	    VelociDataModel vdm = new VelociDataModel(VelociDataModel.TEMPLATE_FILE, outputDir, options.isSet("velocity-log"));
+ 	    vdm.vdmInitializer();
+ 	    if(options.isSet("serve")){
+ 	    	//the pages stay in memory and are served over http
+ 	    	serve(options, modelM, vdm);
+ 	    	return;
+ 	    }
+ 	    if(options.isSet("export")){
+ 	    	//the JSON-LD and N-Triples documents are fed by the merge of the html document
+ 	    	addSinks(options, vdm);
+ 	    }
+ 	    //create all 6 web pages, several at a time if more than one worker is requested
+ 	    int workers = options.isSet("threads") ? options.getInt("threads", Runtime.getRuntime().availableProcessors()) : 1;
+ 	    PageGenerator generator = new PageGenerator(modelM, vdm, workers);
+ 	    int[] pages = new int[]{0, 1, 2, 3, 4, 5};
+ 	    ChangeTracker tracker = null;
+ 	    if(options.isSet("incremental")){
+ 	    	//only the pages affected by added, changed or removed publications
+ 	    	tracker = new ChangeTracker(options.get("incremental", "conf/snapshot/publications.digests"), modelM.getQueryDir());
+ 	    	pages = tracker.pagesToRebuild(modelM, VelociDataModel.TEMPLATE_FILE, VelociDataModel.OUTPUT_DIR, pages, layout(options));
+ 	    }
+ 	    if(options.isSet("columnar") && !options.isSet("streaming")){
+ 	    	//render from a columnar copy of the publications, the model is released before rendering
+ 	    	generator.setStore(modelM.buildStore());
+ 	    }
+ 	    if(options.isSet("streaming")){
+ 	    	//the treeples flow from the select query into the template and are not kept
+ 	    	generator.setStreaming(true);
+ 	    }
+ 	    if(options.isSet("partitioned")){
+ 	    	//one select query for all the pages instead of one per page
+ 	    	generator.setPartitioned(true);
+ 	    }
+ 	    PageSharder sharder = null;
+ 	    if(options.isSet("shard-by-year")){
+ 	    	//one html document per year and type, plus an index page per type
+ 	    	VelociDataModel indexVdm = new VelociDataModel("conf/index.vm", outputDir, options.isSet("velocity-log"));
+ 	    	sharder = new PageSharder(vdm, indexVdm, options.getInt("shard-threads", Runtime.getRuntime().availableProcessors()));
+ 	    	generator.setSharder(sharder);
+ 	    }
+ 	    if(options.isSet("author-pages")){
+ 	    	//before the pages of the types, --columnar releases the constructed model
+ 	    	VelociDataModel authorVdm = new VelociDataModel(AuthorPages.TEMPLATE_FILE, outputDir, options.isSet("velocity-log"));
+ 	    	if(options.isSet("export")){
+ 	    		addSinks(options, authorVdm);
+ 	    	}
+ 	    	AuthorPages authorPages = new AuthorPages(authorVdm, options.getInt("author-threads", Runtime.getRuntime().availableProcessors()));
+ 	    	System.out.println(authorPages.build(modelM)+" author pages written");
+ 	    	authorPages.shutdown();
+ 	    }
+ 	    int[] failed = generator.generate(pages);
+ 	    for(int i=0;i<failed.length;i++){
+ 	    	System.out.println("Page type"+failed[i]+" was not written");
+ 	    }
+ 	    if(sharder != null){
+ 	    	sharder.shutdown();
+ 	    }
+ 	    //closes the TDB store, if any
+ 	    modelM.close();
+ 	    if(publisher != null){
+ 	    	System.out.println(publisher.publish()+" changed pages published");
+ 	    }
+ 	    if(tracker != null){
+ 	    	//the failed pages are rebuilt by the next run
+ 	    	tracker.save(failed);
+ 	    }
+ 	    if(options.isSet("metrics")){
+ 	    	RunMetrics.getInstance().writeReport(options.get("metrics", "conf/metrics.json"));
  	    }
  	    
 		}
+	
+	/**
+	 * Creates a ModelMaker and obtains the constructed model, as the options dictate.
+	 * @param options the options of the run.
+	 * @return the ModelMaker that holds the constructed model.
+	 */
+	private static ModelMaker buildModel(RunOptions options){
+		ModelMaker modelM = new ModelMaker();
+		modelM.setJdbc(options.isSet("jdbc"));
+		modelM.setCitationPass(options.isSet("citation-pass"));
+		if(options.isSet("tdb") || options.isSet("refresh-tdb")){
+			//model with desired vocabulary, kept on disk in a TDB store and reused while it is up to date
+			String tdb = options.get("refresh-tdb", options.get("tdb", "conf/tdb"));
+			modelM.tdbModel(tdb, options.isSet("refresh-tdb"));
+		}
+		else if(options.isSet("snapshot") || options.isSet("refresh-snapshot")){
+			//model with desired vocabulary, from the snapshot if it is still valid
+			//--refresh-snapshot=file names the snapshot as --snapshot=file does
+			String snapshot = options.get("refresh-snapshot", options.get("snapshot", "conf/snapshot/model.nt.gz"));
+			modelM.snapshotModel(snapshot, options.isSet("refresh-snapshot"));
+		}
+		else if(options.isSet("jdbc")){
+			//model with desired vocabulary, read from the database without D2RQ
+			modelM.loadJdbcModel();
+		}
+		else{
+			//initial D2RQModel, default vocabulary
+			modelM.initializeD2RQModel();
+			//model with desired vocabulary
+			modelM.constructModel();
+		}
+		return modelM;
+	}
+	
+	/**
+	 * @param options the options of the run.
+	 * @return the options that change the documents written for a page, as recorded by --incremental.
+	 */
+	private static String layout(RunOptions options){
+		String[] names = {"shard-by-year", "columnar", "streaming", "partitioned", "export"};
+		StringBuilder layout = new StringBuilder("pages");
+		for(int i=0;i<names.length;i++){
+			if(options.isSet(names[i])){
+				layout.append(' ').append(names[i]);
+				if(options.get(names[i], null) != null){
+					layout.append('=').append(options.get(names[i], null));
+				}
+			}
+		}
+		return layout.toString();
+	}
+	
+	/**
+	 * Adds the sinks requested with --export to a VelociDataModel.
+	 * @param options the options of the run.
+	 * @param vdm the VelociDataModel that renders the pages.
+	 */
+	private static void addSinks(RunOptions options,VelociDataModel vdm){
+		String[] formats = options.get("export", "jsonld,nt").split(",");
+		for(int i=0;i<formats.length;i++){
+			String format = formats[i].trim();
+			if(format.equals("jsonld")){
+				vdm.addSink(new JsonLdSink());
+			}
+			else if(format.equals("nt")){
+				vdm.addSink(new NTriplesSink());
+			}
+			else{
+				System.out.println("Ignoring unknown export format: "+format);
+			}
+		}
+	}
+	
+	/**
+	 * Renders the 6 web pages in memory and serves them, along with the static files of the output
+	 * directory, with a {@link PageServer}. With --regenerate=seconds the model is rebuilt and the pages
+	 * are rendered again periodically, in the background, and swapped in as a whole. With
+	 * --refresh-citations as well, the model is kept between the regenerations and only its citation
+	 * counts are brought up to date, see {@link ModelMaker#refreshCitations()}.
+	 * @param options the options of the run.
+	 * @param modelM the ModelMaker that holds the constructed model.
+	 * @param vdm the VelociDataModel that renders the pages.
+	 * @throws IOException when the server cannot be started.
+	 */
+	private static void serve(final RunOptions options,ModelMaker modelM,final VelociDataModel vdm) throws IOException{
+		final int[] pages = new int[]{0, 1, 2, 3, 4, 5};
+		final PageServer server = new PageServer(options.getInt("serve", 8080), VelociDataModel.OUTPUT_DIR,
+				options.getInt("serve-threads", Runtime.getRuntime().availableProcessors()));
+		final boolean refresh = options.isSet("refresh-citations") && options.getInt("regenerate", 0) > 0;
+		if(refresh){
+			//the counts the model holds, compared with the database at every regeneration
+			modelM.trackCitations();
+		}
+		server.publish(PageServer.render(modelM, vdm, pages));
+		if(!refresh){
+			//the pages are kept as bytes, the model (and its TDB store, if any) is no longer needed.
+			modelM.close();
+		}
+		server.start();
+		if(options.isSet("metrics")){
+			//the figures of the regenerations are added up, and can be followed through JMX.
+			RunMetrics.getInstance().writeReport(options.get("metrics", "conf/metrics.json"));
+		}
+		int period = options.getInt("regenerate", 0);
+		if(period <= 0){
+			return;
+		}
+		//the model kept between the regenerations, with --refresh-citations.
+		final ModelMaker[] kept = {modelM};
+		ScheduledExecutorService regenerator = Executors.newSingleThreadScheduledExecutor();
+		regenerator.scheduleWithFixedDelay(new Runnable() {
+			public void run(){
+				try {
+					if(refresh){
+						int changed = kept[0].refreshCitations();
+						if(changed > 0){
+							server.publish(PageServer.render(kept[0], vdm, pages));
+						}
+						if(changed < 0){
+							//the model cannot be brought up to date in place, it is built again.
+							kept[0].close();
+							kept[0] = buildModel(options);
+							kept[0].trackCitations();
+							server.publish(PageServer.render(kept[0], vdm, pages));
+						}
+						return;
+					}
+					ModelMaker modelMaker = buildModel(options);
+					try {
+						server.publish(PageServer.render(modelMaker, vdm, pages));
+					} finally {
+						modelMaker.close();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (RuntimeException e) {
+					//the pages of the previous run are still served, the next run tries again.
+					e.printStackTrace();
+				}
+			}
+		}, period, period, TimeUnit.SECONDS);
+	}
 	}
 
@@ -1,13 +1,14 @@
 package dynRDFa;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeMap;
 
 /**
  * The ExportableModel class packs together all the information that the velocity 
  * engine and template need to consume in order to generate the RDFa enriched web pages.
- * This includes an ArrayList of treeple objects (a treeple is a group of statements), the 
- * prefix mappings, the publications per year, and the type of web page that needs to 
+ * This includes an ArrayList of treeple objects (a treeple is a group of statements), or the
+ * rows of a {@link PublicationStore} that stand in for them, the prefix mappings, the publications per year, and the type of web page that needs to 
  * be generated.
  * @author magda
  */
@@ -16,12 +17,18 @@ public class ExportableModel {
 	 *corresponds to the id. Essentially, a treeple is statements grouped together, with
 	 *the addition of some useful data structures. */
 	private ArrayList<Treeple> treeples; 
+	//the publications rendered by the template: the treeples, or rows of a PublicationStore.
+	private List<? extends Publication> publications;
 	//prefix mappings that need to be declared in the html documents.
 	private  ArrayList<String> mappings ;
 	//TreeMap with key: year and value: number of publications.
 	private TreeMap<Integer,Integer> publicationsPerYear;
 	//the type of web page to be generated.
 	private int id;
+	//the author of an author's page, null for the pages of publication types.
+	private Treeple author;
+	//the treeples of a streamed page, built while the template is merged.
+	private TreepleStream stream;
 	
 	/**
 	 * Setter 
@@ -31,6 +38,7 @@ public class ExportableModel {
 	 */
 	public void setTreeples(ArrayList<Treeple> treeples){
 		this.treeples = treeples;
+		this.publications = treeples;
 	}
 
 	/**
@@ -43,6 +51,54 @@ public class ExportableModel {
 		return treeples;
 	}
 	
+	/**
+	 * Setter: the page is rendered from these publications, e.g. rows of a PublicationStore,
+	 * and holds no treeples.
+	 * @param publications the publications that resulted from the SELECT query that corresponds to the id.
+	 */
+	public void setPublications(List<? extends Publication> publications){
+		this.treeples = null;
+		this.publications = publications;
+	}
+
+	/**
+	 * Getter
+	 * @return the publications of the page: its treeples, or the rows that stand in for them.
+	 */
+	public List<? extends Publication> getPublications(){
+		return publications;
+	}
+	
+	/**
+	 * Setter: the page is rendered from the treeples of the stream, built one at a time while the
+	 * template is merged, and holds no list of publications.
+	 * @param stream the treeples of the SELECT query that corresponds to the id.
+	 */
+	public void setStream(TreepleStream stream){
+		this.treeples = null;
+		this.publications = null;
+		this.stream = stream;
+	}
+
+	/**
+	 * Getter
+	 * @return the stream of the treeples of a streamed page, or null.
+	 */
+	public TreepleStream getStream(){
+		return stream;
+	}
+
+	/**
+	 * @return the number of publications of the page, the sum of the publications per year.
+	 */
+	public int getTotal(){
+		int total = 0;
+		for(Integer count : publicationsPerYear.values()){
+			total += count;
+		}
+		return total;
+	}
+	
 	/**
 	 * Setter
 	 * @param mappings are the prefix mappings.
@@ -91,4 +147,20 @@ public class ExportableModel {
 		return id;
 	}
 
+	/**
+	 * Setter
+	 * @param author the treeple of the author whose publications the page shows.
+	 */
+	public void setAuthor(Treeple author){
+		this.author = author;
+	}
+
+	/**
+	 * Getter
+	 * @return the treeple of the author whose publications the page shows, or null.
+	 */
+	public Treeple getAuthor(){
+		return author;
+	}
+
 }
@@ -0,0 +1,595 @@
+package dynRDFa;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.riot.system.IRIResolver;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+/**
+ * The JdbcModelLoader class builds the constructed model straight from the database, as an alternative
+ * to executing the CONSTRUCT query on the D2RQModel. D2RQ translates the joins, OPTIONALs and the COUNT
+ * subquery of construct.txt into many small SQL queries; here every mapped table is read with a single
+ * streaming SQL query instead (the citations are counted by the database), and the statements of the
+ * constructed vocabulary are added directly.
+ * The columns, datatypes and URI patterns are taken from the d2rq:ClassMap and d2rq:PropertyBridge
+ * definitions of the mapping file, so that the subjects and literals are the ones D2RQ produces. Which
+ * statements are produced follows construct.txt, and has to be changed along with it:
+ * <ul>
+ * <li>a publication needs a title, a type (MediaType), a media title, a year, and at least one author
+ * with a name and a surname (through the rights table),</li>
+ * <li>the editors, publisher, volume, pages and location, and the number of citations, are only added
+ * if all of them exist and the publication is cited at least once,</li>
+ * <li>the identifier of an author is its AuthorID plus 80000, as an xsd:integer,</li>
+ * <li>the number of citations counts the distinct reference resources (RefIDs) of a publication.</li>
+ * </ul>
+ * The subjects are resolved against the mapping file the way ModelD2RQ resolves them, e.g.
+ * file:///home/pubs/conf/pubsmap.ttl#publications/373. JdbcModelLoaderTest compares the two models
+ * on an embedded database.
+ * @author magda
+ */
+public class JdbcModelLoader {
+	//namespace of the D2RQ mapping language.
+	private static final String D2RQ = "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#";
+	//namespace of the properties of the default mapping.
+	private static final String VOCAB = "http://localhost:2020/vocab/resource/";
+	private static final String DC = "http://purl.org/dc/elements/1.1/";
+	private static final String DCT = "http://purl.org/dc/terms/";
+	private static final String BIBO = "http://purl.org/ontology/bibo/";
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+	private static final String CITO = "http://purl.org/net/cito/";
+	//the author IDs are shifted by this number in the constructed model (see construct.txt).
+	private static final int AUTHOR_ID_OFFSET = 80000;
+	//number of rows the driver fetches at a time.
+	private static final int FETCH_SIZE = 5000;
+	//the charset and the hex digits of the percent-encoding.
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	//a column in a d2rq:uriPattern, e.g. @@publications.PublicationID@@
+	private static final Pattern PATTERN_COLUMN = Pattern.compile("@@([^@|]+)(\\|urlify)?@@");
+
+	//the parsed mapping file.
+	private Model mapping;
+	//the file of the CONSTRUCT query.
+	private String constructFile;
+	//the base of the subject URIs, as D2RQ resolves the relative URI patterns.
+	private String base;
+	//property of the default mapping (e.g. publications_PublicationTitle) to its table.column
+	private HashMap<String,String> columns;
+	//property of the default mapping to the datatype of its literals, absent for plain literals.
+	private HashMap<String,RDFDatatype> datatypes;
+	//table to the d2rq:uriPattern of its ClassMap.
+	private HashMap<String,String> uriPatterns;
+	//how the database quotes identifiers (e.g. `references` in mySQL).
+	private String quote;
+	//true for mySQL, which only streams the rows of a query with a fetch size of Integer.MIN_VALUE.
+	private boolean mysql;
+
+	/**
+	 * Class constructor: reads the class maps and property bridges of the mapping file.
+	 * @param mappingFile the D2RQ mapping file.
+	 * @throws IOException when the mapping file cannot be read.
+	 */
+	public JdbcModelLoader(String mappingFile) throws IOException{
+		this(mappingFile, ModelMaker.CONSTRUCT_FILE);
+	}
+
+	/**
+	 * Class constructor: reads the class maps and property bridges of the mapping file.
+	 * @param mappingFile the D2RQ mapping file.
+	 * @param constructFile the file of the CONSTRUCT query, the model gets its prefixes.
+	 * @throws IOException when the mapping file cannot be read.
+	 */
+	public JdbcModelLoader(String mappingFile,String constructFile) throws IOException{
+		this.constructFile = constructFile;
+		mapping = ModelFactory.createDefaultModel();
+		InputStream in = new FileInputStream(mappingFile);
+		try{
+			mapping.read(in, new File(mappingFile).toURI().toString(), "TURTLE");
+		}finally{
+			in.close();
+		}
+		//ModelD2RQ(mappingFile) resolves mappingFile# against the working directory, file:///...#
+		base = IRIResolver.resolveString(mappingFile+"#");
+		columns = new HashMap<String,String>();
+		datatypes = new HashMap<String,RDFDatatype>();
+		Property column = mapping.createProperty(D2RQ+"column");
+		Property datatype = mapping.createProperty(D2RQ+"datatype");
+		StmtIterator iter = mapping.listStatements((Resource)null, mapping.createProperty(D2RQ+"property"), (RDFNode)null);
+		while(iter.hasNext()){
+			com.hp.hpl.jena.rdf.model.Statement stmt = iter.nextStatement();
+			String property = stmt.getResource().getURI();
+			Resource bridge = stmt.getSubject();
+			//bridges with a d2rq:pattern (the labels) are not used by the CONSTRUCT query.
+			if(!property.startsWith(VOCAB) || !mapping.contains(bridge, column)){
+				continue;
+			}
+			String name = property.substring(VOCAB.length());
+			columns.put(name, mapping.listStatements(bridge, column, (RDFNode)null).nextStatement().getString());
+			if(mapping.contains(bridge, datatype)){
+				String type = mapping.listStatements(bridge, datatype, (RDFNode)null).nextStatement().getResource().getURI();
+				datatypes.put(name, TypeMapper.getInstance().getSafeTypeByName(type));
+			}
+		}
+		iter.close();
+		uriPatterns = new HashMap<String,String>();
+		iter = mapping.listStatements((Resource)null, mapping.createProperty(D2RQ+"uriPattern"), (RDFNode)null);
+		while(iter.hasNext()){
+			String uriPattern = iter.nextStatement().getString();
+			List<String> patternColumns = patternColumns(uriPattern);
+			if(!patternColumns.isEmpty()){
+				uriPatterns.put(table(patternColumns.get(0)), uriPattern);
+			}
+		}
+		iter.close();
+	}
+
+	/**
+	 * Opens a connection to the database declared in the mapping file (d2rq:jdbcDSN).
+	 * @return the connection, to be closed by the caller.
+	 * @throws SQLException when the database cannot be reached.
+	 */
+	public Connection connect() throws SQLException{
+		String driver = mappingValue("jdbcDriver");
+		if(driver != null){
+			try {
+				Class.forName(driver);
+			} catch (ClassNotFoundException e) {
+				throw new SQLException("JDBC driver not found: "+driver, e);
+			}
+		}
+		return DriverManager.getConnection(mappingValue("jdbcDSN"), mappingValue("username"), mappingValue("password"));
+	}
+
+	/**
+	 * Builds the constructed model from the database declared in the mapping file.
+	 * @return the constructed model.
+	 * @throws SQLException when the database cannot be read.
+	 * @throws IOException when the CONSTRUCT query, which gives the model its prefixes, cannot be read.
+	 */
+	public Model load() throws SQLException, IOException{
+		Connection connection = connect();
+		try{
+			return load(connection);
+		}finally{
+			connection.close();
+		}
+	}
+
+	/**
+	 * Builds the constructed model from the given database, e.g. an embedded database that holds
+	 * the mapped tables.
+	 * @param connection a connection to the database, it is not closed.
+	 * @return the constructed model.
+	 * @throws SQLException when the database cannot be read.
+	 * @throws IOException when the CONSTRUCT query, which gives the model its prefixes, cannot be read.
+	 */
+	public Model load(Connection connection) throws SQLException, IOException{
+		inspect(connection);
+		Model model = ModelFactory.createDefaultModel();
+		//the prefixes the CONSTRUCT query gives to its result, without them the RDFa has no CURIEs.
+		model.setNsPrefixes(QueryRegistry.getInstance().getQuery(constructFile, "main-construct").getPrefixMapping());
+		Map<String,String[]> authors = loadAuthors(connection);
+		Map<String,List<String>> rights = loadRights(connection, authors);
+		CitationCounts citations = new CitationCounts();
+		countCitations(connection, citations);
+		loadPublications(connection, model, authors, rights, citations);
+		return model;
+	}
+
+	/**
+	 * Counts the references to every publication with a single aggregated query on the references
+	 * table, in place of the COUNT subquery of the CONSTRUCT query, see {@link ModelMaker#mergeCitations(CitationCounts)}.
+	 * @return the citation counts, by PublicationID.
+	 * @throws SQLException when the database cannot be read.
+	 */
+	public CitationCounts loadCitationCounts() throws SQLException{
+		Connection connection = connect();
+		try{
+			inspect(connection);
+			CitationCounts citations = new CitationCounts();
+			countCitations(connection, citations);
+			return citations;
+		}finally{
+			connection.close();
+		}
+	}
+
+	/**
+	 * Reads how the database quotes identifiers and whether it is mySQL.
+	 */
+	private void inspect(Connection connection) throws SQLException{
+		DatabaseMetaData metaData = connection.getMetaData();
+		quote = metaData.getIdentifierQuoteString();
+		if(quote == null || quote.trim().isEmpty()){
+			quote = "";
+		}
+		mysql = "MySQL".equals(metaData.getDatabaseProductName());
+	}
+
+	/**
+	 * Reads the authors that have a name and a surname.
+	 * @return AuthorID to the URI, the name and the surname of the author.
+	 */
+	private Map<String,String[]> loadAuthors(Connection connection) throws SQLException{
+		String id = columns.get("authors_AuthorID");
+		String name = columns.get("authors_AuthorName");
+		String surname = columns.get("authors_AuthorSurname");
+		String uriPattern = uriPatterns.get(table(id));
+		HashMap<String,String[]> authors = new HashMap<String,String[]>();
+		LinkedHashSet<String> selected = new LinkedHashSet<String>();
+		selected.add(id);
+		selected.add(name);
+		selected.add(surname);
+		selected.addAll(patternColumns(uriPattern));
+		Statement stmt = streamingStatement(connection);
+		try{
+			ResultSet rs = stmt.executeQuery(select(selected, null));
+			HashMap<String,String> row = new HashMap<String,String>();
+			while(rs.next()){
+				read(rs, selected, row);
+				if(row.get(id) == null || row.get(name) == null || row.get(surname) == null){
+					continue;
+				}
+				authors.put(row.get(id), new String[]{expand(uriPattern, row), row.get(name), row.get(surname)});
+			}
+			rs.close();
+		}finally{
+			stmt.close();
+		}
+		return authors;
+	}
+
+	/**
+	 * Reads the authors of every publication, leaving out the authors that are not in the given map.
+	 * @return PublicationID to the AuthorIDs of its authors.
+	 */
+	private Map<String,List<String>> loadRights(Connection connection,Map<String,String[]> authors) throws SQLException{
+		String publication = columns.get("rights_PublicationID");
+		String author = columns.get("rights_AuthorID");
+		HashMap<String,List<String>> rights = new HashMap<String,List<String>>();
+		LinkedHashSet<String> selected = new LinkedHashSet<String>();
+		selected.add(publication);
+		selected.add(author);
+		Statement stmt = streamingStatement(connection);
+		try{
+			//a rights resource exists only if the columns of its URI pattern are not null.
+			ResultSet rs = stmt.executeQuery(select(selected, notNull(patternColumns(uriPatterns.get(table(publication))))));
+			while(rs.next()){
+				String pid = rs.getString(1);
+				String authid = rs.getString(2);
+				if(pid == null || !authors.containsKey(authid)){
+					continue;
+				}
+				List<String> list = rights.get(pid);
+				if(list == null){
+					list = new ArrayList<String>(4);
+					rights.put(pid, list);
+				}
+				if(!list.contains(authid)){
+					list.add(authid);
+				}
+			}
+			rs.close();
+		}finally{
+			stmt.close();
+		}
+		return rights;
+	}
+
+	/**
+	 * Counts the references to every publication, as the COUNT subquery of the CONSTRUCT query does:
+	 * it counts reference resources, so rows that share a RefID count once. Publications that are not
+	 * cited get no count.
+	 * @param citations receives the counts.
+	 */
+	private void countCitations(Connection connection,CitationCounts citations) throws SQLException{
+		String paper = columns.get("references_RefPaperID");
+		String reference = columns.get("references_RefID");
+		List<String> conditions = patternColumns(uriPatterns.get(table(paper)));
+		conditions.add(paper);
+		String sql = "SELECT "+quoted(paper)+", COUNT(DISTINCT "+quoted(reference)+") FROM "+quoted(table(paper))
+				+" WHERE "+notNull(conditions);
+		Statement stmt = streamingStatement(connection);
+		try{
+			ResultSet rs = stmt.executeQuery(sql+" GROUP BY "+quoted(paper));
+			while(rs.next()){
+				citations.add(rs.getInt(1), rs.getInt(2));
+			}
+			rs.close();
+		}finally{
+			stmt.close();
+		}
+	}
+
+	/**
+	 * @param citations the citation counts.
+	 * @param pid the PublicationID of a publication, as read from the database.
+	 * @return the number of references to the publication, 0 if it is not cited.
+	 */
+	private static int citations(CitationCounts citations,String pid){
+		try{
+			return citations.get(Integer.parseInt(pid.trim()));
+		}catch(NumberFormatException e){
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads the publications and adds their statements, and the statements of their authors, to the model.
+	 */
+	private void loadPublications(Connection connection,Model model,Map<String,String[]> authors,
+			Map<String,List<String>> rights,CitationCounts citations) throws SQLException{
+		String[] required = {"publications_PublicationID", "publications_PublicationTitle", "publications_MediaType",
+				"publications_MediaTitle", "publications_PublicationYear"};
+		String[] optional = {"publications_MediaEditors", "publications_MediaPublisher", "publications_MediaVolInfo",
+				"publications_PublicationPagesInMedium", "publications_PublicationLocation"};
+		//the constructed vocabulary, in the order of the arrays above.
+		Property[] requiredProperties = {model.createProperty(DC+"identifier"), model.createProperty(DC+"title"),
+				model.createProperty(DC+"type"), model.createProperty(BIBO+"presentedAt"), model.createProperty(DC+"date")};
+		Property[] optionalProperties = {model.createProperty(BIBO+"editor"), model.createProperty(DCT+"publisher"),
+				model.createProperty(BIBO+"volume"), model.createProperty(BIBO+"pages"), model.createProperty(DCT+"location")};
+		Property count = model.createProperty(CITO+"globalCountValue");
+		Property creator = model.createProperty(DCT+"creator");
+		Property identifier = model.createProperty(DC+"identifier");
+		Property familyName = model.createProperty(FOAF+"familyName");
+		Property givenName = model.createProperty(FOAF+"givenName");
+		String uriPattern = uriPatterns.get(table(columns.get(required[0])));
+		LinkedHashSet<String> selected = new LinkedHashSet<String>();
+		for(int i=0;i<required.length;i++){
+			selected.add(columns.get(required[i]));
+		}
+		for(int i=0;i<optional.length;i++){
+			selected.add(columns.get(optional[i]));
+		}
+		selected.addAll(patternColumns(uriPattern));
+		//the authors whose statements are already in the model.
+		HashMap<String,Resource> authorResources = new HashMap<String,Resource>();
+		Statement stmt = streamingStatement(connection);
+		try{
+			ResultSet rs = stmt.executeQuery(select(selected, null));
+			HashMap<String,String> row = new HashMap<String,String>();
+			while(rs.next()){
+				read(rs, selected, row);
+				boolean complete = true;
+				for(int i=0;i<required.length && complete;i++){
+					complete = row.get(columns.get(required[i])) != null;
+				}
+				String pid = row.get(columns.get(required[0]));
+				List<String> authorIds = complete ? rights.get(pid) : null;
+				if(authorIds == null){
+					continue;
+				}
+				Resource publication = model.createResource(expand(uriPattern, row));
+				for(int i=0;i<required.length;i++){
+					model.add(publication, requiredProperties[i], literal(model, required[i], row.get(columns.get(required[i]))));
+				}
+				//the OPTIONAL block matches only as a whole, including the COUNT subquery.
+				int cited = citations(citations, pid);
+				boolean optionalMatch = cited > 0;
+				for(int i=0;i<optional.length && optionalMatch;i++){
+					optionalMatch = row.get(columns.get(optional[i])) != null;
+				}
+				if(optionalMatch){
+					for(int i=0;i<optional.length;i++){
+						model.add(publication, optionalProperties[i], literal(model, optional[i], row.get(columns.get(optional[i]))));
+					}
+					model.add(publication, count, model.createTypedLiteral(Integer.toString(cited), XSDDatatype.XSDinteger));
+				}
+				for(int i=0;i<authorIds.size();i++){
+					String authid = authorIds.get(i);
+					Resource author = authorResources.get(authid);
+					if(author == null){
+						String[] details = authors.get(authid);
+						author = model.createResource(details[0]);
+						long auid = Long.parseLong(authid.trim())+AUTHOR_ID_OFFSET;
+						model.add(author, identifier, model.createTypedLiteral(Long.toString(auid), XSDDatatype.XSDinteger));
+						model.add(author, familyName, literal(model, "authors_AuthorSurname", details[2]));
+						model.add(author, givenName, literal(model, "authors_AuthorName", details[1]));
+						authorResources.put(authid, author);
+					}
+					model.add(publication, creator, author);
+				}
+			}
+			rs.close();
+		}finally{
+			stmt.close();
+		}
+	}
+
+	/**
+	 * @param model the constructed model.
+	 * @param name a property of the default mapping.
+	 * @param value a value of its column.
+	 * @return the literal D2RQ produces for the value: typed if the property bridge has a d2rq:datatype.
+	 */
+	private Literal literal(Model model,String name,String value){
+		RDFDatatype datatype = datatypes.get(name);
+		return datatype == null ? model.createLiteral(value) : model.createTypedLiteral(value, datatype);
+	}
+
+	/**
+	 * @return a forward only, read only statement that streams the rows of its query.
+	 */
+	private Statement streamingStatement(Connection connection) throws SQLException{
+		Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+		return stmt;
+	}
+
+	/**
+	 * @param selected table.column names of a single table.
+	 * @param condition the WHERE clause, or null.
+	 * @return the SQL query that reads the columns.
+	 */
+	private String select(LinkedHashSet<String> selected,String condition){
+		StringBuilder sql = new StringBuilder("SELECT ");
+		String table = null;
+		for(String column : selected){
+			if(table != null){
+				sql.append(", ");
+			}
+			table = table(column);
+			sql.append(quoted(column));
+		}
+		sql.append(" FROM ").append(quote).append(table).append(quote);
+		if(condition != null){
+			sql.append(" WHERE ").append(condition);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * @param columns table.column names.
+	 * @return a condition that holds if none of the columns is null.
+	 */
+	private String notNull(List<String> columns){
+		StringBuilder sql = new StringBuilder();
+		for(int i=0;i<columns.size();i++){
+			if(i>0){
+				sql.append(" AND ");
+			}
+			sql.append(quoted(columns.get(i))).append(" IS NOT NULL");
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Reads the current row of a result set.
+	 * @param rs the result set of {@link #select(LinkedHashSet, String)}.
+	 * @param selected the columns of the query, in order.
+	 * @param row receives the values, by table.column name.
+	 */
+	private static void read(ResultSet rs,LinkedHashSet<String> selected,Map<String,String> row) throws SQLException{
+		int i = 1;
+		for(String column : selected){
+			row.put(column, rs.getString(i++));
+		}
+	}
+
+	/**
+	 * @param column a table.column name.
+	 * @return the quoted column, e.g. `references`.`RefID`
+	 */
+	private String quoted(String column){
+		int dot = column.indexOf('.');
+		if(dot<0){
+			return quote+column+quote;
+		}
+		return quote+column.substring(0, dot)+quote+"."+quote+column.substring(dot+1)+quote;
+	}
+
+	/**
+	 * @param column a table.column name.
+	 * @return the table.
+	 */
+	private static String table(String column){
+		return column.substring(0, column.indexOf('.'));
+	}
+
+	/**
+	 * @param uriPattern a d2rq:uriPattern, e.g. rights/@@rights.AuthorID@@/@@rights.PublicationID@@
+	 * @return the table.column names in the pattern.
+	 */
+	private static List<String> patternColumns(String uriPattern){
+		ArrayList<String> patternColumns = new ArrayList<String>();
+		Matcher matcher = PATTERN_COLUMN.matcher(uriPattern);
+		while(matcher.find()){
+			patternColumns.add(matcher.group(1));
+		}
+		return patternColumns;
+	}
+
+	/**
+	 * @param uriPattern a d2rq:uriPattern.
+	 * @param row the values of the columns of the pattern.
+	 * @return the URI of the resource, resolved against the base of the mapping file.
+	 */
+	private String expand(String uriPattern,Map<String,String> row){
+		StringBuffer uri = new StringBuffer(base);
+		Matcher matcher = PATTERN_COLUMN.matcher(uriPattern);
+		while(matcher.find()){
+			String value = row.get(matcher.group(1));
+			value = matcher.group(2) != null ? urlify(value) : encode(value);
+			matcher.appendReplacement(uri, Matcher.quoteReplacement(value));
+		}
+		matcher.appendTail(uri);
+		return uri.toString();
+	}
+
+	/**
+	 * The default encoding of a column in a d2rq:uriPattern: the unreserved characters of an IRI
+	 * (letters, digits, - . _ ~ and the non-ASCII characters) are kept, all the others are percent-encoded
+	 * as UTF-8 bytes.
+	 * @param value a column value.
+	 * @return the value, safe to use in an IRI.
+	 */
+	private static String encode(String value){
+		StringBuilder encoded = new StringBuilder(value.length());
+		for(int i=0;i<value.length();i++){
+			char c = value.charAt(i);
+			if((c>='a' && c<='z') || (c>='A' && c<='Z') || (c>='0' && c<='9') || c=='-' || c=='.' || c=='_' || c=='~' || c>=0xA0){
+				encoded.append(c);
+				continue;
+			}
+			byte[] bytes = String.valueOf(c).getBytes(UTF8);
+			for(int k=0;k<bytes.length;k++){
+				encoded.append('%').append(HEX[(bytes[k]>>4)&0xF]).append(HEX[bytes[k]&0xF]);
+			}
+		}
+		return encoded.toString();
+	}
+
+	/**
+	 * The |urlify function of a d2rq:uriPattern: URL-encoding, with the spaces turned into underscores.
+	 * @param value a column value.
+	 * @return the urlified value.
+	 */
+	private static String urlify(String value){
+		try {
+			return URLEncoder.encode(value, "UTF-8").replace('+', '_');
+		} catch (UnsupportedEncodingException e) {
+			//every JVM supports UTF-8.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param localName the local name of a d2rq:Database property.
+	 * @return the value of the property, or null if the mapping does not declare it.
+	 */
+	private String mappingValue(String localName){
+		StmtIterator iter = mapping.listStatements((Resource)null, mapping.createProperty(D2RQ+localName), (RDFNode)null);
+		String value = iter.hasNext() ? iter.nextStatement().getString() : null;
+		iter.close();
+		return value;
+	}
+}
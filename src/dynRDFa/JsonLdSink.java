@@ -0,0 +1,184 @@
+package dynRDFa;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JsonLdSink class writes the publications of a web page as a JSON-LD document, in a .jsonld file
+ * next to the html document (e.g. type2.jsonld for type2.html). The @context holds the prefix mappings
+ * the html document declares, so the keys are the prefixed names of the RDFa markup (e.g. dc:title).
+ * The @graph is flat: a node per publication, and a node per author, written the first time the author
+ * is met in the page and referred to by its blank node label afterwards.
+ * @author magda
+ */
+public class JsonLdSink implements PageSink {
+	//size of the buffer between the sink and the file.
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+	/**
+	 * @see dynRDFa.PageSink#open(String, String, ExportableModel)
+	 */
+	public Document open(String outputDir,String pageName,ExportableModel exportableModel) throws IOException{
+		File file = new File(outputDir, pageName+".jsonld");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+		try{
+			return new JsonLdDocument(file, out, exportableModel.getMappings());
+		}catch(IOException e){
+			out.close();
+			file.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the string as a JSON string.
+	 */
+	private static String quote(String s){
+		StringBuilder json = new StringBuilder("\"");
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				json.append('\\').append(c);
+			}
+			else if(c < 0x20){
+				json.append(String.format("\\u%04x", (int) c));
+			}
+			else{
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	/**
+	 * The .jsonld file of a web page.
+	 */
+	private static class JsonLdDocument implements Document, TripleSink {
+		private File file;
+		private Writer out;
+		//namespaces mapped to their prefixes, from the prefix mappings of the page.
+		private Map<String,String> prefixes;
+		//the nodes of the publication being added: subject -> key -> JSON values.
+		private LinkedHashMap<String,LinkedHashMap<String,List<String>>> nodes;
+		//the authors already written in the document.
+		private HashSet<String> written;
+		private boolean first;
+
+		JsonLdDocument(File file,Writer out,List<String> mappings) throws IOException{
+			this.file = file;
+			this.out = out;
+			this.prefixes = new LinkedHashMap<String,String>();
+			this.nodes = new LinkedHashMap<String,LinkedHashMap<String,List<String>>>();
+			this.written = new HashSet<String>();
+			this.first = true;
+			out.write("{\n  \"@context\": {");
+			String separator = "\n";
+			for(int i=0;mappings != null && i<mappings.size();i++){
+				//a declaration looks like "dc: http://purl.org/dc/elements/1.1/"
+				String declaration = mappings.get(i);
+				int colon = declaration.indexOf(':');
+				String prefix = declaration.substring(0, colon).trim();
+				String namespace = declaration.substring(colon+1).trim();
+				prefixes.put(namespace, prefix);
+				out.write(separator+"    "+quote(prefix)+": "+quote(namespace));
+				separator = ",\n";
+			}
+			out.write("\n  },\n  \"@graph\": [");
+		}
+
+		public void add(Publication publication) throws IOException{
+			nodes.clear();
+			publication.describe(this);
+			for(Map.Entry<String,LinkedHashMap<String,List<String>>> node : nodes.entrySet()){
+				//an author is written once per document.
+				if(node.getKey().startsWith("_:") && !written.add(node.getKey())){
+					continue;
+				}
+				out.write(first ? "\n    {" : ",\n    {");
+				first = false;
+				out.write("\"@id\": "+quote(node.getKey()));
+				for(Map.Entry<String,List<String>> key : node.getValue().entrySet()){
+					List<String> values = key.getValue();
+					out.write(", "+quote(key.getKey())+": ");
+					if(values.size() == 1){
+						out.write(values.get(0));
+					}
+					else{
+						out.write("[");
+						for(int i=0;i<values.size();i++){
+							out.write(i == 0 ? values.get(i) : ", "+values.get(i));
+						}
+						out.write("]");
+					}
+				}
+				out.write("}");
+			}
+		}
+
+		public void resource(String subject,String predicate,String object) throws IOException{
+			if(predicate.equals(RDF_TYPE)){
+				values(subject, "@type").add(quote(compact(object)));
+			}
+			else{
+				values(subject, compact(predicate)).add("{\"@id\": "+quote(object)+"}");
+			}
+		}
+
+		public void literal(String subject,String predicate,String value) throws IOException{
+			values(subject, compact(predicate)).add(quote(value));
+		}
+
+		public void close() throws IOException{
+			try{
+				out.write("\n  ]\n}\n");
+			}finally{
+				out.close();
+			}
+		}
+
+		public void discard(){
+			try{
+				out.close();
+			}catch(IOException e){
+				//the file is removed anyway.
+			}
+			file.delete();
+		}
+
+		/**
+		 * @return the values of a key of a node of the publication being added.
+		 */
+		private List<String> values(String subject,String key){
+			LinkedHashMap<String,List<String>> node = nodes.get(subject);
+			if(node == null){
+				node = new LinkedHashMap<String,List<String>>();
+				nodes.put(subject, node);
+			}
+			List<String> values = node.get(key);
+			if(values == null){
+				values = new ArrayList<String>(1);
+				node.put(key, values);
+			}
+			return values;
+		}
+
+		/**
+		 * @return the IRI as a prefixed name if the page declares its namespace, otherwise the IRI.
+		 */
+		private String compact(String iri){
+			int cut = Math.max(iri.lastIndexOf('/'), iri.lastIndexOf('#'))+1;
+			String prefix = prefixes.get(iri.substring(0, cut));
+			return prefix == null || cut == iri.length() ? iri : prefix+":"+iri.substring(cut);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package dynRDFa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.NodeIterator;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+/**
+ * The ModelIndex class is built once per run from the constructed model and shared by all the
+ * web pages. It groups the statements of the model by subject, remembers which subject holds
+ * each literal object (e.g. a publication ID), and keeps the author index: an immutable map
+ * from every statement object that is a Resource (the authors in our case) to its treeple.
+ * The author treeples are resolved and structured only once, no matter how many publications
+ * or pages refer to them.
+ * For a model that is not kept on the heap (a {@link TdbModelStore}) the statements are not copied:
+ * the index answers from the model itself, with a listStatements call per lookup, and only the author
+ * treeples are kept.
+ * @author magda
+ */
+public class ModelIndex {
+	//the model, when the statements are not copied.
+	private Model resultsModel;
+	//all the statements of the model, grouped by subject. Null when the statements are not copied.
+	private HashMap<Resource,ArrayList<Statement>> groups;
+	//the first subject that holds a literal as an object. Null when the statements are not copied.
+	private HashMap<RDFNode,Resource> subjects;
+	//the author index: statement objects that are resources, mapped to their treeples.
+	private Map<Resource,Treeple> authors;
+
+	/**
+	 * Class constructor: traverses the constructed model once and builds the index.
+	 * @param resultsModel is a Jena Model that holds the statements resulting from the CONSTRUCT query.
+	 */
+	public ModelIndex(Model resultsModel){
+		this(resultsModel, true);
+	}
+
+	/**
+	 * Class constructor.
+	 * @param resultsModel is a Jena Model that holds the statements resulting from the CONSTRUCT query.
+	 * @param copy if true the statements are copied into the index with a single pass over the model.
+	 * If false (e.g. for the model of a TDB store) the index answers from the model, and only the author
+	 * treeples are built, with one traversal of the objects of the model.
+	 */
+	public ModelIndex(Model resultsModel,boolean copy){
+		HashMap<Resource,Treeple> lookup = new HashMap<Resource,Treeple>();
+		if(!copy){
+			this.resultsModel = resultsModel;
+			NodeIterator objects = resultsModel.listObjects();
+			while(objects.hasNext()){
+				RDFNode object = objects.nextNode();
+				if(object.isResource()){
+					addAuthor(object.asResource(), lookup, resultsModel);
+				}
+			}
+			objects.close();
+			authors = Collections.unmodifiableMap(lookup);
+			return;
+		}
+		groups = new HashMap<Resource,ArrayList<Statement>>();
+		subjects = new HashMap<RDFNode,Resource>();
+		ArrayList<Statement> resourceStmts = new ArrayList<Statement>();
+		//single pass over the constructed model.
+		StmtIterator iter = resultsModel.listStatements();
+		while(iter.hasNext()){
+			Statement stmt = iter.nextStatement();
+			ArrayList<Statement> group = groups.get(stmt.getSubject());
+			if(group == null){
+				group = new ArrayList<Statement>();
+				groups.put(stmt.getSubject(), group);
+			}
+			group.add(stmt);
+			RDFNode object = stmt.getObject();
+			if(object.isLiteral()){
+				if(!subjects.containsKey(object)){
+					subjects.put(object, stmt.getSubject());
+				}
+			}
+			else{
+				resourceStmts.add(stmt);
+			}
+		}
+		for(int i=0;i<resourceStmts.size();i++){
+			addAuthor(resourceStmts.get(i).getObject().asResource(), lookup, resultsModel);
+		}
+		authors = Collections.unmodifiableMap(lookup);
+	}
+
+	/**
+	 * Makes a treeple for an object that is a resource and a subject itself (author).
+	 * @param object a statement object that is a resource.
+	 * @param lookup the author treeples made so far, receives the treeple.
+	 * @param resultsModel the constructed model.
+	 */
+	private void addAuthor(Resource object,HashMap<Resource,Treeple> lookup,Model resultsModel){
+		if(lookup.containsKey(object)){
+			return;
+		}
+		List<Statement> objStmts = statementsOf(object);
+		if(objStmts.isEmpty()){
+			return;
+		}
+		Treeple author = new Treeple();
+		author.insertSubject(object);
+		for(int k=0;k<objStmts.size();k++){
+			Property pred = objStmts.get(k).getPredicate();
+			//avoid having duplicate names and last names.
+			if(!author.hasPredicate(pred)){
+				author.insertPredicateObjects(pred, objStmts.get(k).getObject());
+			}
+		}
+		author.setTreepleStructures(resultsModel);
+		lookup.put(object, author);
+	}
+
+	/**
+	 * @param object a literal object, e.g. a publication ID.
+	 * @return the subject that holds it as an object, or null if there is none.
+	 */
+	public Resource subjectOf(RDFNode object){
+		if(subjects == null){
+			StmtIterator iter = resultsModel.listStatements(null, null, object);
+			try{
+				return iter.hasNext() ? iter.nextStatement().getSubject() : null;
+			}finally{
+				iter.close();
+			}
+		}
+		return subjects.get(object);
+	}
+
+	/**
+	 * @param subject a subject of the model.
+	 * @return all the statements that hold it as a subject (an empty list if there are none).
+	 */
+	public List<Statement> statementsOf(Resource subject){
+		if(groups == null){
+			return Collections.unmodifiableList(resultsModel.listStatements(subject, null, (RDFNode)null).toList());
+		}
+		ArrayList<Statement> group = groups.get(subject);
+		if(group == null){
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(group);
+	}
+
+	/**
+	 * @return all the subjects of the model.
+	 */
+	public Set<Resource> getSubjects(){
+		if(groups == null){
+			return Collections.unmodifiableSet(resultsModel.listSubjects().toSet());
+		}
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 * Getter
+	 * @return the immutable author index: statement objects that are resources, mapped to their treeples.
+	 */
+	public Map<Resource,Treeple> getAuthors(){
+		return authors;
+	}
+}
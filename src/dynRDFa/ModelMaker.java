@@ -2,17 +2,21 @@ package dynRDFa;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.TreeMap;
 
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
-import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QuerySolution;
 import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -22,6 +26,7 @@ import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.shared.Lock;
 
 import de.fuberlin.wiwiss.d2rq.jena.ModelD2RQ;
 
@@ -37,6 +42,19 @@ import de.fuberlin.wiwiss.d2rq.jena.ModelD2RQ;
  * @author magda
  */
 public class ModelMaker {
+	//the D2RQ mapping file.
+	public static final String MAPPING_FILE = "conf/pubsmap.ttl";
+	//the file holding the CONSTRUCT query.
+	public static final String CONSTRUCT_FILE = "conf/sparqls/construct.txt";
+	//the predicate that the select queries filter the publications on.
+	private static final String DC_TYPE = "http://purl.org/dc/elements/1.1/type";
+	//the predicates the citation counts are merged with, see mergeCitations.
+	private static final String DC_TITLE = "http://purl.org/dc/elements/1.1/title";
+	private static final String DC_IDENTIFIER = "http://purl.org/dc/elements/1.1/identifier";
+	private static final String CITO_COUNT = "http://purl.org/net/cito/globalCountValue";
+	//the predicates of the OPTIONAL part of the CONSTRUCT query, which only matches cited publications.
+	private static final String[] CITED_ONLY = {"http://purl.org/ontology/bibo/editor", "http://purl.org/dc/terms/publisher",
+		"http://purl.org/ontology/bibo/volume", "http://purl.org/ontology/bibo/pages", "http://purl.org/dc/terms/location"};
 	//Jena Model view on the data in the D2RQ-mapped mysql database. Works as an initial model.
 	private Model m; 
 	//Constructed model, contains desired vocabulary contained in the corresponding SPARQL query.
@@ -44,13 +62,45 @@ public class ModelMaker {
 	/*ArrayList that stores all the treeple objects resulting from the SPARQL select queries and the methods of the class.
 	 *Essentially, a treeple is statements grouped together, with the addition of some useful data structures.  */
 	private ArrayList<Treeple> treeples; 
-	//HashMap that stores statement objects that are resources, not literals (in our case authors).
-	private HashMap<Resource,Treeple> objectLookup; 
+	//run-wide index of the constructed model, built once and shared by all the pages.
+	private ModelIndex index;
+	//immutable map that stores statement objects that are resources, not literals (in our case authors).
+	private Map<Resource,Treeple> objectLookup; 
 	//ExportableModel object that packs together all the necessary info that a velocity template consumes.
 	private ExportableModel exportableModel; 
 	//represents the type of file to be created by velocity(valid: 0 to 5).
 	private int choice; 
+	//if set, the constructed model is read from the database with a JdbcModelLoader instead of D2RQ.
+	private boolean jdbc;
+	//the D2RQ mapping file and the directory of the queries of the site, see ModelMaker(String, String).
+	private String mappingFile;
+	private String queryDir;
+	//if set, the CONSTRUCT query is executed without its COUNT subquery, see mergeCitations.
+	private boolean citationPass;
+	//the citation counts merged into the constructed model, null if the model has its own.
+	private CitationCounts citations;
+	//the OPTIONAL statements of the publications that are not cited (yet), left out of the model.
+	private HashMap<Resource,List<Statement>> withheld;
+	//the TDB store that holds the constructed model, null if the model is on the heap.
+	private TdbModelStore tdbStore;
     
+	/**
+	 * Class constructor: the default mapping file and queries, {@link #MAPPING_FILE} and {@link QueryRegistry#QUERY_DIR}.
+	 */
+	public ModelMaker(){
+		this(MAPPING_FILE, QueryRegistry.QUERY_DIR);
+	}
+	
+	/**
+	 * Class constructor, for a site with its own database and queries (see {@link SiteConfig}).
+	 * @param mappingFile the D2RQ mapping file, e.g. conf/pubsmap.ttl
+	 * @param queryDir the directory of construct.txt and of the select queries, e.g. conf/sparqls
+	 */
+	public ModelMaker(String mappingFile,String queryDir){
+		this.mappingFile = mappingFile;
+		this.queryDir = queryDir;
+	}
+	
 	/**
 	 * Creates a Jena model view on the data in the D2RQ-mapped mysql database. A previously created
 	 * mapping file is utilized. This mapping file, called the default mapping, maps each table to
@@ -59,7 +109,9 @@ public class ModelMaker {
 	 */
 	public void initializeD2RQModel(){
 		//Set up the ModelD2RQ using a mapping file
-	    m = new ModelD2RQ("conf/pubsmap.ttl");
+	    RunMetrics.Stage stage = RunMetrics.getInstance().start("d2rq init");
+	    m = new ModelD2RQ(mappingFile);
+	    stage.stop();
 	    //uncomment below to see info about the d2rq model and export it on a file
 //	    System.out.println("Number of statements:"+m.size());
 //		NsIterator nsiter = m.listNameSpaces();
@@ -86,20 +138,41 @@ public class ModelMaker {
 	 * vocabulary. 
 	 */
 	public void constructModel(){
-		//load our queries -construct
-        QueryReader queryReader;
+		constructModel(null);
+	}
+	
+	/**
+	 * Executes the CONSTRUCT query, see {@link #constructModel()}, adding the statements to a given
+	 * model, e.g. the model of a {@link TdbModelStore}, instead of a new in-memory one.
+	 * @param target the model that receives the statements, or null for a new in-memory model.
+	 */
+	public void constructModel(Model target){
 		try {
-			queryReader = QueryReader.createQueryReader("conf/sparqls/construct.txt");
-			String queryStr = queryReader.getQuery("main-construct");
+			String name = "main-construct";
+			CitationCounts counts = null;
+			if(citationPass){
+				counts = loadCitationCounts();
+				if(counts != null){
+					//the counts are merged afterwards, D2RQ does not run the COUNT subquery.
+					name = "construct-uncounted";
+				}
+			}
+			//the construct query, parsed once per run.
+			Query query = QueryRegistry.getInstance().getQuery(constructFile(), name);
 		    //display the query
-		    //System.out.println(queryStr);
+		    //System.out.println(query);
 		        
-		    //create the query -construct
-		    Query query = QueryFactory.create(queryStr);
 		    QueryExecution qExec = QueryExecutionFactory.create(query, m);
 		        
 		    //execute the query - as a result a model is expected
-	        resultsModel = qExec.execConstruct();
+	        RunMetrics.Stage stage = RunMetrics.getInstance().start("construct");
+	        resultsModel = target == null ? qExec.execConstruct() : qExec.execConstruct(target);
+	        stage.stop();
+	        qExec.close();
+	        index = null;
+	        if(counts != null){
+	        	mergeCitations(counts);
+	        }
 	        
 	        //output the resulting graph
 //	        FileOutputStream outStream = new FileOutputStream("conf/outputFile.txt");
@@ -112,157 +185,928 @@ public class ModelMaker {
 	}
 	
 	/**
-	 * Initializes inner structures, loads the select query that corresponds to the choice parameter 
-	 * and executes it, calls class method {@link #createTreeples(ResultSet resultSet)} in order to generate all 
-	 * the treeples that correspond to the results of the select query.
-	 * @param choice is the type of file to be created by velocity.
+	 * Builds the constructed model straight from the database, see {@link JdbcModelLoader}, instead of
+	 * executing the CONSTRUCT query on the D2RQModel.
 	 */
-	public void selectOnModel(int choice){
-		//structures should be (re)initialized each time a select query is performed.
-		treeples = new ArrayList<Treeple>();
-		objectLookup = new HashMap<Resource,Treeple>();
-		exportableModel = new ExportableModel();
-		//load select queries.
-        QueryReader queryReader;
+	public void loadJdbcModel(){
+		try {
+			RunMetrics.Stage stage = RunMetrics.getInstance().start("jdbc load");
+			resultsModel = new JdbcModelLoader(mappingFile, constructFile()).load();
+			stage.stop();
+			index = null;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Setter
+	 * @param citationPass if true, {@link #constructModel()} executes the CONSTRUCT query without its
+	 * COUNT subquery and merges the citation counts of one aggregated query on the references table.
+	 */
+	public void setCitationPass(boolean citationPass){
+		this.citationPass = citationPass;
+	}
+	
+	/**
+	 * @return the citation counts of the database, or null if the database cannot be read.
+	 */
+	private CitationCounts loadCitationCounts(){
+		RunMetrics.Stage stage = RunMetrics.getInstance().start("citations");
 		try {
-			this.choice = choice;
-			if(choice == 0){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_all_0.txt");
+			return new JdbcModelLoader(mappingFile, constructFile()).loadCitationCounts();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			stage.stop();
+		}
+		return null;
+	}
+	
+	/**
+	 * Merges citation counts into a model constructed by the construct-uncounted query, so that it
+	 * holds the statements of the main-construct query: a cited publication gets its
+	 * cito:globalCountValue, and, as the OPTIONAL part of the query includes the COUNT subquery, the
+	 * OPTIONAL statements (editor, publisher, volume, pages, location) of a publication that is not cited
+	 * are left out. They are kept aside, in case references to the publication arrive later.
+	 * @param counts the citation counts, by PublicationID.
+	 */
+	public void mergeCitations(CitationCounts counts){
+		citations = counts;
+		withheld = new HashMap<Resource,List<Statement>>();
+		resultsModel.enterCriticalSection(Lock.WRITE);
+		try {
+			List<Resource> publications = resultsModel.listSubjectsWithProperty(resultsModel.createProperty(DC_TITLE)).toList();
+			for(int i=0;i<publications.size();i++){
+				setCitations(publications.get(i), counts.get(publicationId(publications.get(i))));
 			}
-			else if(choice == 1){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_journal_1.txt");
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+		synchronized(this){
+			index = null;
+		}
+	}
+	
+	/**
+	 * Records the citation counts of the database as the ones the constructed model holds, so that
+	 * {@link #refreshCitations()} can tell which counts changed. A model built with the citation pass
+	 * (see {@link #mergeCitations(CitationCounts)}) already has them; a model loaded from a snapshot or a
+	 * TDB store, or built by the main-construct query or --jdbc, has them counted here, right after it
+	 * was obtained.
+	 */
+	public void trackCitations(){
+		if(citations == null){
+			citations = loadCitationCounts();
+		}
+	}
+	
+	/**
+	 * Counts the references of every publication again, with one aggregated query on the references
+	 * table, and updates the cito:globalCountValue (and the OPTIONAL statements) of the publications
+	 * whose count changed. As the references are counted afresh and compared with the counts of the
+	 * model, references that arrived, were deleted or now point to another publication are all taken into
+	 * account. The pages built afterwards show the new counts.
+	 * A publication that is cited for the first time only gets its count along with its OPTIONAL
+	 * statements; if the model does not hold them (the main-construct query leaves them out for the
+	 * publications that are not cited, only the citation pass keeps them aside), the model has to be
+	 * built again.
+	 * @return the number of publications whose count changed, or -1 if the model has to be built again
+	 * (or the counts cannot be read, or were not tracked, see {@link #trackCitations()}).
+	 */
+	public int refreshCitations(){
+		if(citations == null){
+			return -1;
+		}
+		CitationCounts counts = loadCitationCounts();
+		if(counts == null){
+			return -1;
+		}
+		int changed = 0;
+		boolean complete = true;
+		resultsModel.enterCriticalSection(Lock.WRITE);
+		try {
+			if(withheld == null){
+				withheld = new HashMap<Resource,List<Statement>>();
 			}
-			else if(choice == 2){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_conference_2.txt");
+			List<Resource> publications = resultsModel.listSubjectsWithProperty(resultsModel.createProperty(DC_TITLE)).toList();
+			for(int i=0;i<publications.size();i++){
+				Resource publication = publications.get(i);
+				int pid = publicationId(publication);
+				if(counts.get(pid) == citations.get(pid)){
+					continue;
+				}
+				if(citations.get(pid) == 0 && !withheld.containsKey(publication) && !hasOptional(publication)){
+					//the OPTIONAL statements of the publication are not known.
+					complete = false;
+				}
+				setCitations(publication, counts.get(pid));
+				changed++;
 			}
-			else if(choice == 3){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_bookchapter_3.txt");
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+		citations = counts;
+		synchronized(this){
+			index = null;
+		}
+		return complete ? changed : -1;
+	}
+	
+	/**
+	 * @param publication the subject of a publication.
+	 * @return true if the model holds any of the OPTIONAL statements of the publication.
+	 */
+	private boolean hasOptional(Resource publication){
+		for(int i=0;i<CITED_ONLY.length;i++){
+			if(resultsModel.contains(publication, resultsModel.createProperty(CITED_ONLY[i]))){
+				return true;
 			}
-			else if(choice == 4){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_book_4.txt");
+		}
+		return false;
+	}
+	
+	/**
+	 * Sets the citation count of a publication, the caller holds a write lock of the constructed model.
+	 * @param publication the subject of the publication.
+	 * @param cited the number of references to it.
+	 */
+	private void setCitations(Resource publication,int cited){
+		Property count = resultsModel.createProperty(CITO_COUNT);
+		resultsModel.removeAll(publication, count, (RDFNode)null);
+		List<Statement> optional = withheld.remove(publication);
+		if(optional != null){
+			resultsModel.add(optional);
+		}
+		if(cited == 0){
+			optional = new ArrayList<Statement>();
+			for(int i=0;i<CITED_ONLY.length;i++){
+				optional.addAll(resultsModel.listStatements(publication, resultsModel.createProperty(CITED_ONLY[i]), (RDFNode)null).toList());
 			}
-			else if(choice == 5){
-				queryReader = QueryReader.createQueryReader("conf/sparqls/select_techreport_5.txt");
+			if(!optional.isEmpty()){
+				resultsModel.remove(optional);
+				withheld.put(publication, optional);
 			}
-			else{
-				System.out.println("Wrong choice");
+			return;
+		}
+		//the OPTIONAL part matches as a whole, the count comes with the other statements.
+		for(int i=0;i<CITED_ONLY.length;i++){
+			if(!resultsModel.contains(publication, resultsModel.createProperty(CITED_ONLY[i]))){
+				return;
+			}
+		}
+		resultsModel.add(publication, count, resultsModel.createTypedLiteral(Integer.toString(cited), XSDDatatype.XSDinteger));
+	}
+	
+	/**
+	 * @param publication the subject of a publication.
+	 * @return its PublicationID (dc:identifier), -1 if it has none.
+	 */
+	private int publicationId(Resource publication){
+		Statement identifier = publication.getProperty(resultsModel.createProperty(DC_IDENTIFIER));
+		if(identifier == null || !identifier.getObject().isLiteral()){
+			return -1;
+		}
+		try {
+			return Integer.parseInt(identifier.getObject().asLiteral().getLexicalForm().trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Setter
+	 * @param jdbc if true, {@link #snapshotModel(String, boolean)} builds the model with {@link #loadJdbcModel()}
+	 * instead of D2RQ when the snapshot is out of date.
+	 */
+	public void setJdbc(boolean jdbc){
+		this.jdbc = jdbc;
+	}
+	
+	/**
+	 * Obtains the constructed model through a snapshot file. If the snapshot was built from the same
+	 * mapping file, CONSTRUCT query and database contents, it is simply loaded. Otherwise the D2RQModel
+	 * is created, the CONSTRUCT query is executed, and the resulting model is stored as the new snapshot.
+	 * @param snapshotFile the gzipped N-Triples file that holds the snapshot.
+	 * @param refresh if true the snapshot is rebuilt even if its fingerprint still matches.
+	 */
+	public void snapshotModel(String snapshotFile,boolean refresh){
+		ModelSnapshot snapshot = new ModelSnapshot(snapshotFile);
+		Properties fingerprint;
+		try {
+			fingerprint = snapshot.fingerprint(mappingFile, constructFile());
+			if(!refresh && snapshot.matches(fingerprint)){
+				RunMetrics.Stage stage = RunMetrics.getInstance().start("snapshot load");
+				resultsModel = snapshot.load();
+				stage.stop();
+				index = null;
 				return;
 			}
-			String queryStr = queryReader.getQuery("main-select");
-	        //display the query.
-	        //System.out.println(queryStr);
-	        
-	        //create the select query.
-	        Query query = QueryFactory.create(queryStr);
-	        QueryExecution qExec = QueryExecutionFactory.create(query, resultsModel);
-	        
-	        //execute the select query - as a result a resultSet is expected.
-	        ResultSet resultSet = qExec.execSelect();
-	        
-	        //call class method to generate all the treeples that correspond to the select query.
-	        createTreeples(resultSet);
-
+		} catch (IOException e) {
+			//the snapshot cannot be used, build the model from the database.
+			e.printStackTrace();
+			fingerprint = null;
+		}
+		if(jdbc){
+			loadJdbcModel();
+		}
+		else{
+			initializeD2RQModel();
+			constructModel();
+		}
+		if(fingerprint != null && resultsModel != null){
+			try {
+				snapshot.save(resultsModel, fingerprint);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Obtains the constructed model from a TDB store in a local directory, see {@link TdbModelStore}.
+	 * If the store was built from the same mapping file, CONSTRUCT query and database contents, its
+	 * model is used as it is. Otherwise the store is emptied and the constructed statements are
+	 * written straight into it (with --jdbc, the statements of the JdbcModelLoader are copied into it).
+	 * @param tdbDir the directory of the store, e.g. conf/tdb
+	 * @param refresh if true the store is rebuilt even if its fingerprint still matches.
+	 */
+	public void tdbModel(String tdbDir,boolean refresh){
+		TdbModelStore store = new TdbModelStore(tdbDir);
+		try {
+			Properties fingerprint = new ModelSnapshot(tdbDir).fingerprint(mappingFile, constructFile());
+			if(!refresh && store.matches(fingerprint)){
+				resultsModel = store.getModel();
+				tdbStore = store;
+				index = null;
+				return;
+			}
+			Model target = store.clear();
+			if(jdbc){
+				loadJdbcModel();
+				if(resultsModel == null){
+					return;
+				}
+				RunMetrics.Stage stage = RunMetrics.getInstance().start("tdb load");
+				target.setNsPrefixes(resultsModel.getNsPrefixMap());
+				target.add(resultsModel);
+				stage.stop();
+			}
+			else{
+				initializeD2RQModel();
+				constructModel(target);
+				if(resultsModel != target){
+					//the CONSTRUCT query failed, the store stays marked as incomplete.
+					return;
+				}
+			}
+			store.commit(fingerprint);
+			resultsModel = target;
+			tdbStore = store;
+			index = null;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Getter
+	 * @return the constructed model.
+	 */
+	public Model getResultsModel(){
+		return resultsModel;
+	}
+	
+	/**
+	 * Setter
+	 * @param resultsModel a model that holds the statements a CONSTRUCT query would produce,
+	 * e.g. loaded from a file.
+	 */
+	public void setResultsModel(Model resultsModel){
+		this.resultsModel = resultsModel;
+		this.index = null;
+	}
+	
+	/**
+	 * Drops the references to the D2RQModel, the constructed model and its index, so that they can be
+	 * garbage collected once the pages no longer need them (e.g. they are rendered from a PublicationStore).
+	 * Everything that holds nodes or statements of the model goes with them: the treeples, the author
+	 * index, the last exportableModel and the withheld statements. {@link ScaleTest} measures the heap
+	 * that the release frees. A TDB store is closed, see {@link #close()}.
+	 */
+	public synchronized void releaseModel(){
+		close();
+		m = null;
+		resultsModel = null;
+		index = null;
+		treeples = null;
+		objectLookup = null;
+		exportableModel = null;
+		withheld = null;
+	}
+	
+	/**
+	 * Closes the TDB store that holds the constructed model, if there is one (see {@link #tdbModel(String, boolean)}).
+	 * The model cannot be used afterwards. Only one store of a directory is open at a time, so a run that
+	 * opens the store again (e.g. a regeneration) closes the previous one first.
+	 */
+	public synchronized void close(){
+		if(tdbStore != null){
+			tdbStore.close();
+			tdbStore = null;
+		}
+	}
+	
+	/**
+	 * Initializes inner structures, loads the select query that corresponds to the choice parameter 
+	 * and executes it, calls class method {@link #createTreeples(ResultSet resultSet)} in order to generate all 
+	 * the treeples that correspond to the results of the select query.
+	 * @param choice is the type of file to be created by velocity.
+	 */
+	public void selectOnModel(int choice){
+		//structures should be (re)initialized each time a select query is performed.
+		treeples = new ArrayList<Treeple>();
+		//the author index is built once per run, not once per page.
+		objectLookup = getIndex().getAuthors();
+		exportableModel = new ExportableModel();
+		this.choice = choice;
+		select(choice, treeples, null);
+	}
+	
+	/**
+	 * Builds the exportableModel of a web page without touching the private fields of the class, so
+	 * that several pages can be built at the same time by different threads. The constructed model
+	 * is only read.
+	 * @param choice is the type of file to be created by velocity.
+	 * @return the exportableModel of the page, or null if the choice is not valid.
+	 */
+	public ExportableModel exportPage(int choice){
+		if(selectFile(choice) == null){
+			System.out.println("Wrong choice");
+			return null;
+		}
+		ArrayList<Treeple> pageTreeples = new ArrayList<Treeple>();
+		//the namespaces of the page are recorded while its treeples are built.
+		NamespaceRegistry.Usage usage = new NamespaceRegistry.Usage();
+		select(choice, pageTreeples, usage);
+		ExportableModel pageModel = new ExportableModel();
+		pageModel.setID(choice);
+		pageModel.setMappings(usage.getMappings());
+		pageModel.setPublicationsPerYear(publicationsPerYear(pageTreeples));
+		pageModel.setTreeples(pageTreeples);
+		return pageModel;
+	}
+	
+	/**
+	 * @param choice is the type of file to be created by velocity (valid: 0 to 5).
+	 * @return the file holding the select query of the web page, or null if the choice is not valid.
+	 */
+	public static String selectFile(int choice){
+		return selectFile(QueryRegistry.QUERY_DIR, choice);
+	}
+	
+	/**
+	 * @param queryDir the directory of the queries, e.g. conf/sparqls
+	 * @param choice is the type of file to be created by velocity (valid: 0 to 5).
+	 * @return the file of the directory holding the select query of the web page, or null if the choice is not valid.
+	 */
+	public static String selectFile(String queryDir,int choice){
+		if(choice == 0){
+			return queryDir+"/select_all_0.txt";
+		}
+		else if(choice == 1){
+			return queryDir+"/select_journal_1.txt";
+		}
+		else if(choice == 2){
+			return queryDir+"/select_conference_2.txt";
+		}
+		else if(choice == 3){
+			return queryDir+"/select_bookchapter_3.txt";
+		}
+		else if(choice == 4){
+			return queryDir+"/select_book_4.txt";
+		}
+		else if(choice == 5){
+			return queryDir+"/select_techreport_5.txt";
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the directory of the queries of the site, e.g. conf/sparqls
+	 */
+	public String getQueryDir(){
+		return queryDir;
+	}
+	
+	/**
+	 * @return the file holding the CONSTRUCT query of the site, e.g. conf/sparqls/construct.txt
+	 */
+	public String constructFile(){
+		return queryDir+"/construct.txt";
+	}
+	
+	/**
+	 * Finds the web page that a publication type belongs to, in the same way the FILTERs
+	 * of the select queries do. Every publication also belongs to the page of all publications (0).
+	 * @param type the dc:type of a publication.
+	 * @return the type of the web page (1 to 5), or -1 if no page but the page of all publications shows the type.
+	 */
+	public static int pageForType(String type){
+		if(type.equals("Journal")){
+			return 1;
+		}
+		else if(type.equals("Conference Proceedings") || type.equals("Workshop Proceedings") || type.equals("Symposium Proceedings")){
+			return 2;
+		}
+		else if(type.equals("Book Chapter")){
+			return 3;
+		}
+		else if(type.equals("Book")){
+			return 4;
+		}
+		else if(type.equals("Technical Report")){
+			return 5;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Loads the select query that corresponds to the choice parameter, executes it under a read
+	 * lock of the constructed model, and adds the resulting treeples to the given list.
+	 * @param choice is the type of file to be created by velocity.
+	 * @param target the list that receives the treeples.
+	 * @param usage if not null, records the namespaces used by the treeples.
+	 */
+	private void select(int choice,ArrayList<Treeple> target,NamespaceRegistry.Usage usage){
+		resultsModel.enterCriticalSection(Lock.READ);
+		try {
+			//generate all the treeples that correspond to the select query.
+			buildTreeples(querySubjects(choice), target, usage);
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
-		}   
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+	}
+	
+	/**
+	 * Loads and executes the select query that corresponds to the choice parameter. The caller
+	 * holds a read lock of the constructed model.
+	 * @param choice is the type of file to be created by velocity.
+	 * @return the subjects of the publications, in the order of the select query.
+	 * @throws IOException when the select query cannot be read.
+	 */
+	private ArrayList<Resource> querySubjects(int choice) throws IOException{
+		//load select queries.
+		String file = selectFile(queryDir, choice);
+		if(file == null){
+			System.out.println("Wrong choice");
+			return new ArrayList<Resource>();
+		}
+		//the select query, parsed once per run and reloaded when its file is edited.
+		Query query = QueryRegistry.getInstance().getQuery(file, "main-select");
+        //display the query.
+        //System.out.println(query);
+        
+        RunMetrics.Stage stage = RunMetrics.getInstance().start("select type"+choice);
+        QueryExecution qExec = QueryExecutionFactory.create(query, resultsModel);
+        try {
+        	//execute the select query - as a result a resultSet is expected.
+        	return subjectsOf(qExec.execSelect());
+        } finally {
+        	qExec.close();
+        	stage.stop();
+        }
 	}
 
 	
 	/**
+	 * Builds the treeples of the publications returned by the select query. Instead of looking every
+	 * publication and author up in the model separately, the run-wide {@link ModelIndex} is used: it
+	 * holds the statements of the model grouped by subject, the subject of each publication ID, and
+	 * the author treeples, which are shared by all the pages. The treeples are built from these groups,
+	 * in the order of the select query.
 	 * @param resultSet is the product of the select query.
 	 */
 	public void createTreeples(ResultSet resultSet){
-		boolean flag = false;
-		//unique publication IDs will be stored here.
-		ArrayList<RDFNode> resNodes = new ArrayList<RDFNode>();
-		//retrieve publication IDs from the resultSet and store them as RDFNodes .
+		objectLookup = getIndex().getAuthors();
+		buildTreeples(subjectsOf(resultSet), treeples, null);
+	}
+	
+	/**
+	 * Empties the treeples private field, so that {@link #createTreeples(ResultSet resultSet)} starts
+	 * over without a select query being executed (e.g. between the invocations of a benchmark).
+	 */
+	public void clearTreeples(){
+		treeples = new ArrayList<Treeple>();
+	}
+	
+	/**
+	 * @param resultSet is the product of the select query.
+	 * @return the subjects that hold the publication IDs of the resultSet, in the same order.
+	 */
+	private ArrayList<Resource> subjectsOf(ResultSet resultSet){
+		ModelIndex index = getIndex();
+		ArrayList<Resource> subjects = new ArrayList<Resource>();
+		//retrieve publication IDs from the resultSet.
 		while(resultSet.hasNext()){
 			QuerySolution soln = resultSet.nextSolution();
 			for(Object var : resultSet.getResultVars()){
 				RDFNode node = soln.get(var.toString());
-				resNodes.add(node);
+				if(node == null){
+					continue;
+				}
+				//the subject that holds the current publicationID as an object (only 1 is expected in our case).
+				Resource subject = index.subjectOf(node);
+				if(subject != null){
+					subjects.add(subject);
+				}
 			}
 		}
-		StmtIterator iter;
-		//iterate through sorted unique publication IDs expressed as RDFNodes.
-		for(int i=0; i<resNodes.size(); i++){
-			//create a treeple.
-			Treeple temp = new Treeple();
-			//find in the model all the statements that have the current publicationID as an object (only 1 is expected in our case).
-			iter = resultsModel.listStatements(null, null, resNodes.get(i));
-			//get the first statement.
-			Statement stmt = iter.nextStatement();
-			//extract the subject.
-			Resource subject = stmt.getSubject();
-			//insert it in the treeple.
-			temp.insertSubject(subject);
-			//iterate through all the statements that hold the Resource subject as subject
-			//the goal is to sort the model in descending order by year and publication id.
-			//note that the publicationIDs do not represent chronological order.
-			StmtIterator internalIter;
-			internalIter = resultsModel.listStatements(subject, (Property) null, (RDFNode)null);
-			while(internalIter.hasNext()){
-				Statement internalStmt = internalIter.nextStatement();
-				//retrieve predicate.
-				Property predicate = internalStmt.getPredicate();
-				//retrieve object.
-				RDFNode object = internalStmt.getObject();
-				//insert the predicate and the object in the treeple.
-				temp.insertPredicateObjects(predicate, object);
-				//if the object is a Resource, and not a literal itself (authors in our case).
-				if( object instanceof Resource ){
-					flag = true;
-					//retrieve the statements that have the object as a subject.
-					StmtIterator objIter = resultsModel.listStatements((Resource)object, (Property) null, (RDFNode)null);
-					while(objIter.hasNext()){
-						Statement objStmt = objIter.nextStatement();
-						//retrieve predicate.
-						Property pred = objStmt.getPredicate();
-						//retrieve object.
-						RDFNode obj = objStmt.getObject();
-						//make a treeple for the object that is a resource (author).
-						Treeple tempT = new Treeple();
-						tempT.insertSubject((Resource)object);
-						tempT.insertPredicateObjects(pred, obj);
-						//place the treeple in the objectLookup.
-						//objectLookup is a hashMap. this means that there are no duplicate keys.
-						//already existing object.
-						if(objectLookup.containsKey((Resource)object)){
-							objectLookup.get((Resource)object).insertSubject((Resource)object);
-							//avoid having duplicate names and last names.
-							if(!objectLookup.get((Resource)object).getPredobs().containsKey(pred)){
-								objectLookup.get((Resource)object).insertPredicateObjects(pred, obj);
-							}
-							
-						}
-						//object does not exist in hashMap.
-						else{
-							//place the author related treeple in the objectLookup.
-							objectLookup.put((Resource)object, tempT);
-						}
-					}
-				}
+		return subjects;
+	}
+	
+	/**
+	 * Builds the treeples of the given publications, see {@link #createTreeples(ResultSet resultSet)},
+	 * and adds them to the given list.
+	 * @param subjects the subjects of the publications, in the order of the select query.
+	 * @param target the list that receives the treeples.
+	 * @param usage if not null, records the namespaces used by the treeples.
+	 */
+	private void buildTreeples(List<Resource> subjects,ArrayList<Treeple> target,NamespaceRegistry.Usage usage){
+		ModelIndex index = getIndex();
+		//setTreepleStructures is measured apart from the rest of createTreeples.
+		RunMetrics metrics = RunMetrics.getInstance();
+		long structureNanos = 0;
+		long structureBytes = 0;
+		long startBytes = metrics.allocatedBytes();
+		long start = System.nanoTime();
+		//iterate through the subjects of the sorted publication IDs.
+		for(int i=0; i<subjects.size(); i++){
+			Treeple temp = treepleOf(subjects.get(i), index);
+			//sets the private fields of a treeple.
+			if(metrics.isEnabled()){
+				long structureStartBytes = metrics.allocatedBytes();
+				long structureStart = System.nanoTime();
+				temp.setTreepleStructures(resultsModel);
+				structureNanos += System.nanoTime()-structureStart;
+				structureBytes += metrics.allocatedBytes()-structureStartBytes;
+			}
+			else{
+				temp.setTreepleStructures(resultsModel);
+			}
+			if(usage != null){
+				usage.add(temp);
 			}
 			/*
-			 * place the treeple in the private field of the class (arrayList). It will be
-			 * a part of the exportable model. Place it in  only if it's a publication and not an author.
+			 * place the treeple in the target list. It will be a part of the exportable
+			 * model. Place it in  only if it's a publication and not an author.
 			 */
-			treeples.add(temp);
+			target.add(temp);
 		}
+		metrics.add("createTreeples", System.nanoTime()-start-structureNanos, metrics.allocatedBytes()-startBytes-structureBytes);
+		metrics.add("setTreepleStructures", structureNanos, structureBytes);
+	}
+	
+	/**
+	 * Creates the treeple of a publication from its statements in the index. Its structures are not
+	 * set yet, see {@link Treeple#setTreepleStructures(Model)}.
+	 * @param subject the subject of the publication.
+	 * @param index the index of the constructed model.
+	 * @return the treeple of the publication.
+	 */
+	static Treeple treepleOf(Resource subject,ModelIndex index){
+		//create a treeple.
+		Treeple temp = new Treeple();
+		temp.insertSubject(subject);
+		//the statements that hold the Resource subject as subject.
+		List<Statement> stmts = index.statementsOf(subject);
+		for(int j=0; j<stmts.size(); j++){
+			//insert the predicate and the object in the treeple.
+			temp.insertPredicateObjects(stmts.get(j).getPredicate(), stmts.get(j).getObject());
+		}
+		//the objectLookup is "global". Each treeple holds a reference to the same objectLookup
+		temp.setObjectLookup(index.getAuthors());
+		return temp;
+	}
 
-		for (Map.Entry<Resource, Treeple> entry : objectLookup.entrySet())
-		{
-			entry.getValue().setTreepleStructures(resultsModel);
+	/**
+	 * Builds the exportableModel of a web page whose treeples are not built up front: the publications
+	 * per year come from the year-totals query of the page, and the treeples are built one at a time
+	 * from the rows of the select query while the template is merged, see {@link TreepleStream}. As no
+	 * treeple is known before the head of the page is rendered, the page declares all the prefixes of
+	 * the constructed model. The caller closes the stream of the exportableModel.
+	 * @param choice is the type of file to be created by velocity (valid: 0 to 5).
+	 * @return the exportableModel of the page, or null if the choice or the queries of the page are not valid.
+	 */
+	public ExportableModel exportStream(int choice){
+		String file = selectFile(queryDir, choice);
+		if(file == null){
+			System.out.println("Wrong choice");
+			return null;
+		}
+		Query select;
+		Query totals;
+		try {
+			select = QueryRegistry.getInstance().getQuery(file, "main-select");
+			totals = QueryRegistry.getInstance().getQuery(file, "year-totals");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		if(select == null || totals == null){
+			System.out.println(file+" has no main-select or year-totals query");
+			return null;
 		}
+		ExportableModel pageModel = new ExportableModel();
+		pageModel.setID(choice);
+		pageModel.setMappings(NamespaceRegistry.of(resultsModel).getDeclarations());
+		pageModel.setPublicationsPerYear(yearTotals(totals));
+		pageModel.setStream(new TreepleStream(resultsModel, getIndex(), select));
+		return pageModel;
+	}
 
-		 // for each treeple in the ArrayList, set the object's inner structures.
-		for(int i=0;i<treeples.size();i++){
-			//the objectLookup is "global". Each treeple holds a copy of the same objectLookup
-			treeples.get(i).setObjectLookup(objectLookup);
-			//sets the private fields of a treeple.
-			treeples.get(i).setTreepleStructures(resultsModel);
-		}        	       
+	/**
+	 * Executes the year-totals query of a web page.
+	 * @param query the aggregate query, with the ?year and ?total variables.
+	 * @return TreeMap with the publications per year, in descending year order.
+	 */
+	private TreeMap<Integer,Integer> yearTotals(Query query){
+		TreeMap<Integer,Integer> publicationsPerYear = new TreeMap<Integer,Integer>(Collections.reverseOrder());
+		RunMetrics.Stage stage = RunMetrics.getInstance().start("year totals");
+		resultsModel.enterCriticalSection(Lock.READ);
+		QueryExecution qExec = QueryExecutionFactory.create(query, resultsModel);
+		try {
+			ResultSet resultSet = qExec.execSelect();
+			while(resultSet.hasNext()){
+				QuerySolution soln = resultSet.nextSolution();
+				RDFNode year = soln.get("year");
+				RDFNode total = soln.get("total");
+				if(year == null || !year.isLiteral() || total == null || !total.isLiteral()){
+					continue;
+				}
+				//the year of a treeple is a four digit xsd:int literal, every other date counts as 0.
+				int key = Treeple.isYear(year.asLiteral()) ? Integer.parseInt(year.asLiteral().getLexicalForm()) : 0;
+				Integer previous = publicationsPerYear.get(key);
+				publicationsPerYear.put(key, (previous == null ? 0 : previous)+total.asLiteral().getInt());
+			}
+		} finally {
+			qExec.close();
+			resultsModel.leaveCriticalSection();
+			stage.stop();
+		}
+		return publicationsPerYear;
+	}
+
+	/**
+	 * Builds the columnar store of the publications, see {@link PublicationStore}.
+	 * @return the store, or null if the constructed model does not fit in it.
+	 */
+	public PublicationStore buildStore(){
+		return PublicationStore.build(getIndex(), resultsModel);
+	}
+	
+	/**
+	 * Builds the exportableModel of a web page from the rows of a PublicationStore, instead of treeples.
+	 * Only the select query runs on the constructed model. Like {@link #exportPage(int)}, it can be
+	 * called by several threads at the same time.
+	 * @param choice is the type of file to be created by velocity.
+	 * @param store the store of the publications of the constructed model.
+	 * @return the exportableModel of the page, or null if the choice is not valid or a publication
+	 * of the page is not in the store.
+	 */
+	public ExportableModel exportRows(int choice,PublicationStore store){
+		if(selectFile(choice) == null){
+			System.out.println("Wrong choice");
+			return null;
+		}
+		ArrayList<Resource> subjects;
+		resultsModel.enterCriticalSection(Lock.READ);
+		try {
+			subjects = querySubjects(choice);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+		ArrayList<PublicationStore.Row> rows = new ArrayList<PublicationStore.Row>(subjects.size());
+		NamespaceRegistry.Usage usage = new NamespaceRegistry.Usage();
+		for(int i=0;i<subjects.size();i++){
+			PublicationStore.Row row = store.rowOf(subjects.get(i));
+			if(row == null){
+				System.out.println(subjects.get(i)+" is not in the publication store");
+				return null;
+			}
+			usage.add(row);
+			rows.add(row);
+		}
+		ExportableModel pageModel = new ExportableModel();
+		pageModel.setID(choice);
+		pageModel.setMappings(usage.getMappings());
+		pageModel.setPublicationsPerYear(publicationsPerYear(rows));
+		pageModel.setPublications(rows);
+		return pageModel;
+	}
+	
+	/**
+	 * Builds the exportableModels of several web pages from a single run of the select query of all the
+	 * publications (select_all_0). The select queries of the pages only differ in the FILTER on the
+	 * dc:type of the publications, so instead of matching and sorting the model once per page, every
+	 * publication of the ordered result is routed to the page of its type (see {@link #pageForType(String)})
+	 * and to the page of all publications. The treeples (or rows) are built once and shared by both pages.
+	 * @param choices the types of the web pages (valid: 0 to 5).
+	 * @param store if not null, the pages are built from the rows of this store instead of treeples.
+	 * @return the exportableModels of the valid choices, by type of web page, or null if a publication
+	 * is not in the store.
+	 */
+	public Map<Integer,ExportableModel> exportPartitioned(int[] choices,PublicationStore store){
+		ArrayList<Resource> subjects;
+		resultsModel.enterCriticalSection(Lock.READ);
+		try {
+			subjects = querySubjects(0);
+		} catch (IOException e) {
+			e.printStackTrace();
+			subjects = new ArrayList<Resource>();
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+		HashMap<Integer,ExportableModel> pages = new HashMap<Integer,ExportableModel>();
+		if(store == null){
+			ArrayList<Treeple> all = new ArrayList<Treeple>(subjects.size());
+			buildTreeples(subjects, all, null);
+			ArrayList<ArrayList<Treeple>> buckets = partition(subjects, all);
+			for(int i=0;i<choices.length;i++){
+				if(selectFile(choices[i]) == null){
+					System.out.println("Wrong choice");
+					continue;
+				}
+				ExportableModel pageModel = pageModel(choices[i], buckets.get(choices[i]));
+				pageModel.setTreeples(buckets.get(choices[i]));
+				pages.put(choices[i], pageModel);
+			}
+			return pages;
+		}
+		ArrayList<PublicationStore.Row> all = new ArrayList<PublicationStore.Row>(subjects.size());
+		for(int i=0;i<subjects.size();i++){
+			PublicationStore.Row row = store.rowOf(subjects.get(i));
+			if(row == null){
+				System.out.println(subjects.get(i)+" is not in the publication store");
+				return null;
+			}
+			all.add(row);
+		}
+		ArrayList<ArrayList<PublicationStore.Row>> buckets = partition(subjects, all);
+		for(int i=0;i<choices.length;i++){
+			if(selectFile(choices[i]) == null){
+				System.out.println("Wrong choice");
+				continue;
+			}
+			ExportableModel pageModel = pageModel(choices[i], buckets.get(choices[i]));
+			pageModel.setPublications(buckets.get(choices[i]));
+			pages.put(choices[i], pageModel);
+		}
+		return pages;
+	}
+
+	/**
+	 * Builds the exportableModels of the author pages. The treeples of all the publications are built
+	 * once, from one select query, and an inverted index from every author to the treeples of their
+	 * publications is filled in the same pass over the statements of the publications. The publications
+	 * of an author keep the order of the select query (descending year).
+	 * @return one exportableModel per author, with the author, the prefix mappings, the publications per
+	 * year and the treeples of the page set.
+	 */
+	public ArrayList<ExportableModel> exportAuthors(){
+		ArrayList<Resource> subjects;
+		resultsModel.enterCriticalSection(Lock.READ);
+		try {
+			subjects = querySubjects(0);
+		} catch (IOException e) {
+			e.printStackTrace();
+			subjects = new ArrayList<Resource>();
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+		ArrayList<Treeple> all = new ArrayList<Treeple>(subjects.size());
+		buildTreeples(subjects, all, null);
+		ModelIndex index = getIndex();
+		Map<Resource,Treeple> authors = index.getAuthors();
+		//the inverted index, in the order the authors are first met.
+		LinkedHashMap<Resource,ArrayList<Treeple>> publicationsOf = new LinkedHashMap<Resource,ArrayList<Treeple>>();
+		for(int i=0;i<subjects.size();i++){
+			List<Statement> stmts = index.statementsOf(subjects.get(i));
+			for(int j=0;j<stmts.size();j++){
+				RDFNode object = stmts.get(j).getObject();
+				if(!object.isResource() || !authors.containsKey(object)){
+					continue;
+				}
+				ArrayList<Treeple> publications = publicationsOf.get(object);
+				if(publications == null){
+					publications = new ArrayList<Treeple>();
+					publicationsOf.put(object.asResource(), publications);
+				}
+				//an author that is linked twice to a publication gets it once.
+				if(publications.isEmpty() || publications.get(publications.size()-1) != all.get(i)){
+					publications.add(all.get(i));
+				}
+			}
+		}
+		ArrayList<ExportableModel> pages = new ArrayList<ExportableModel>(publicationsOf.size());
+		for(Map.Entry<Resource,ArrayList<Treeple>> entry : publicationsOf.entrySet()){
+			Treeple author = authors.get(entry.getKey());
+			NamespaceRegistry.Usage usage = new NamespaceRegistry.Usage();
+			usage.add(author);
+			for(int i=0;i<entry.getValue().size();i++){
+				usage.add(entry.getValue().get(i));
+			}
+			ExportableModel pageModel = new ExportableModel();
+			//the author pages are not pages of a type of publication.
+			pageModel.setID(-1);
+			pageModel.setAuthor(author);
+			pageModel.setMappings(usage.getMappings());
+			pageModel.setPublicationsPerYear(publicationsPerYear(entry.getValue()));
+			pageModel.setTreeples(entry.getValue());
+			pages.add(pageModel);
+		}
+		RunMetrics.getInstance().count("author pages", pages.size());
+		return pages;
+	}
+
+	/**
+	 * Routes the publications of the select query of all the publications to the pages of their types.
+	 * @param subjects the subjects of the publications, in the order of the select query.
+	 * @param publications the treeples (or rows) of the subjects, in the same order.
+	 * @return one list per type of web page (0 to 5), in the order of the select query; the first holds
+	 * all the publications.
+	 */
+	private <P extends Publication> ArrayList<ArrayList<P>> partition(List<Resource> subjects,List<P> publications){
+		ModelIndex index = getIndex();
+		ArrayList<ArrayList<P>> buckets = new ArrayList<ArrayList<P>>();
+		for(int page=0;page<=5;page++){
+			buckets.add(new ArrayList<P>());
+		}
+		for(int i=0;i<subjects.size();i++){
+			buckets.get(0).add(publications.get(i));
+			//a publication with several types is shown once on the page of each of them.
+			boolean[] routed = new boolean[6];
+			List<Statement> stmts = index.statementsOf(subjects.get(i));
+			for(int j=0;j<stmts.size();j++){
+				RDFNode object = stmts.get(j).getObject();
+				if(!stmts.get(j).getPredicate().getURI().equals(DC_TYPE) || !object.isLiteral()){
+					continue;
+				}
+				//the FILTERs compare plain literals, e.g. ?type = 'Journal'
+				if(!object.asLiteral().getLanguage().isEmpty()){
+					continue;
+				}
+				int page = pageForType(object.asLiteral().getLexicalForm());
+				if(page > 0 && !routed[page]){
+					routed[page] = true;
+					buckets.get(page).add(publications.get(i));
+				}
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * @param choice the type of the web page.
+	 * @param publications the publications of the page.
+	 * @return an exportableModel with the id, the prefix mappings and the publications per year of the page set.
+	 */
+	private static ExportableModel pageModel(int choice,List<? extends Publication> publications){
+		ExportableModel pageModel = new ExportableModel();
+		pageModel.setID(choice);
+		pageModel.setMappings(getMappings(publications));
+		pageModel.setPublicationsPerYear(publicationsPerYear(publications));
+		return pageModel;
+	}
+
+	/**
+	 * Returns the run-wide index of the constructed model. It is built on first use,
+	 * after the model has been constructed (or loaded), and shared by all the pages. The statements
+	 * of a model kept in a TDB store are not copied to the heap: the treeples are built from
+	 * listStatements calls on the store.
+	 * @return the ModelIndex of the constructed model.
+	 */
+	public synchronized ModelIndex getIndex(){
+		if(index == null){
+			RunMetrics.Stage stage = RunMetrics.getInstance().start("index");
+			index = new ModelIndex(resultsModel, tdbStore == null);
+			stage.stop();
+			RunMetrics.getInstance().count("triples", resultsModel.size());
+			RunMetrics.getInstance().count("authors", index.getAuthors().size());
+			//every subject of the constructed model is either a publication or an author.
+			RunMetrics.getInstance().count("publications", index.getSubjects().size()-index.getAuthors().size());
+		}
+		return index;
 	}
 	
 	/**
@@ -310,18 +1154,17 @@ public class ModelMaker {
 	 * ready to be inserted in a velocity template.
 	 */
 	public ArrayList<String> getMappings(){
-		ArrayList<String> mappings = new ArrayList<String>();
-		//note that each treeple holds different mappings. Therefore it's needed to iterate through them all.
-		for(int i=0;i<treeples.size();i++){ 
-			for (Map.Entry<String, String> entry : treeples.get(i).getMappings().entrySet())
-			{
-				if(!mappings.contains(entry.getKey()+": "+entry.getValue())){
-					//supports the RDFs 1.1 notation e.g.: prefix="dc: http://purl.org/dc/elements/1.1/	foaf: http://xmlns.com/foaf/0.1/"
-					mappings.add(entry.getKey()+": "+entry.getValue());
-				}
-			}
-		}
-		return mappings;
+		return getMappings(treeples);
+	}
+	
+	/**
+	 * @param treeples the treeples of a web page.
+	 * @return an ArrayList that contains the prefix mappings of the given treeples in a String form,
+	 * ready to be inserted in a velocity template, in the alphabetical order of the prefixes.
+	 */
+	public static ArrayList<String> getMappings(List<? extends Publication> treeples){
+		//note that each treeple uses different namespaces, the page uses all of them.
+		return NamespaceRegistry.Usage.of(treeples);
 	}
 	
 	/**
@@ -329,6 +1172,14 @@ public class ModelMaker {
 	 * @return TreeMap with publications per year.
 	 */
 	public TreeMap<Integer,Integer> publicationsPerYear(){
+		return publicationsPerYear(treeples);
+	}
+	
+	/**
+	 * @param treeples the treeples of a web page.
+	 * @return TreeMap with the publications per year of the given treeples, in descending year order.
+	 */
+	public static TreeMap<Integer,Integer> publicationsPerYear(List<? extends Publication> treeples){
 		//tree map in order to keep a descending order among the years
 		TreeMap<Integer,Integer> publicationsPerYear = new TreeMap(Collections.reverseOrder());
 		for(int i=0;i<treeples.size();i++){
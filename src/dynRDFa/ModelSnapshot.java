@@ -0,0 +1,328 @@
+package dynRDFa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+/**
+ * The ModelSnapshot class stores the constructed model (the result of the CONSTRUCT query)
+ * in a local gzipped N-Triples file, so that later runs can skip the D2RQ and CONSTRUCT phase.
+ * Next to the snapshot a small properties file is kept, holding the namespace prefixes of the
+ * model (N-Triples cannot carry them) and a fingerprint of everything the model was built from:
+ * the mapping file, the CONSTRUCT query file and the data of the mapped mySQL tables.
+ * The snapshot is only reused while that fingerprint stays the same.
+ * @author magda
+ */
+public class ModelSnapshot {
+	//namespace of the D2RQ mapping language.
+	private static final String D2RQ = "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#";
+	//the gzipped N-Triples file.
+	private File snapshotFile;
+	//the properties file that holds the fingerprint and the prefix mappings.
+	private File infoFile;
+
+	/**
+	 * Class constructor.
+	 * @param snapshotFile the path of the gzipped N-Triples file, e.g. conf/snapshot/model.nt.gz
+	 */
+	public ModelSnapshot(String snapshotFile){
+		this.snapshotFile = new File(snapshotFile);
+		this.infoFile = new File(snapshotFile+".properties");
+	}
+
+	/**
+	 * Computes the fingerprint of the sources of the constructed model.
+	 * @param mappingFile the D2RQ mapping file.
+	 * @param constructFile the file holding the CONSTRUCT query.
+	 * @return the fingerprint: digests of the mapping file (key: mapping), of the query file
+	 * (key: construct) and of the database tables (key: data). The data digest is missing
+	 * when the database cannot be reached.
+	 * @throws IOException when one of the files cannot be read.
+	 */
+	public Properties fingerprint(String mappingFile,String constructFile) throws IOException{
+		Properties fingerprint = new Properties();
+		fingerprint.setProperty("mapping", digest(new File(mappingFile)));
+		fingerprint.setProperty("construct", digest(new File(constructFile)));
+		String data = dataDigest(mappingFile);
+		if(data != null){
+			fingerprint.setProperty("data", data);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Compares a fingerprint with the one the snapshot was saved with.
+	 * If the database could not be reached the data digest is ignored, since D2RQ would fail as well.
+	 * @param fingerprint the fingerprint of the current sources.
+	 * @return true if the snapshot exists and is still up to date.
+	 */
+	public boolean matches(Properties fingerprint){
+		if(!snapshotFile.isFile() || !infoFile.isFile()){
+			return false;
+		}
+		Properties info = readInfo();
+		if(info == null){
+			return false;
+		}
+		return sameSources(fingerprint, info, "snapshot "+snapshotFile);
+	}
+
+	/**
+	 * Compares a fingerprint with the one a stored model was built from.
+	 * If the database could not be reached the data digest is ignored, since D2RQ would fail as well.
+	 * @param fingerprint the fingerprint of the current sources.
+	 * @param info the properties the stored model was saved with.
+	 * @param stored the stored model, for the message printed when the data digest is ignored.
+	 * @return true if the stored model is still up to date.
+	 */
+	static boolean sameSources(Properties fingerprint,Properties info,String stored){
+		if(!fingerprint.getProperty("mapping").equals(info.getProperty("mapping"))
+				||!fingerprint.getProperty("construct").equals(info.getProperty("construct"))){
+			return false;
+		}
+		if(fingerprint.getProperty("data") == null){
+			System.out.println("Database fingerprint unavailable, reusing "+stored);
+			return true;
+		}
+		return fingerprint.getProperty("data").equals(info.getProperty("data"));
+	}
+
+	/**
+	 * Loads the snapshot.
+	 * @return a Jena Model holding the statements and prefix mappings of the snapshot.
+	 * @throws IOException when the snapshot cannot be read.
+	 */
+	public Model load() throws IOException{
+		Model model = ModelFactory.createDefaultModel();
+		InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)), 1 << 16);
+		try{
+			model.read(in, null, "N-TRIPLE");
+		}finally{
+			in.close();
+		}
+		//restore the prefix mappings, they are needed for the RDFa attributes.
+		Properties info = readInfo();
+		for(String key : info.stringPropertyNames()){
+			if(key.startsWith("prefix.")){
+				model.setNsPrefix(key.substring(7), info.getProperty(key));
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Saves a model as the snapshot. The files are first written under a temporary
+	 * name and then renamed, so that an interrupted run does not leave a broken snapshot behind.
+	 * @param model the constructed model.
+	 * @param fingerprint the fingerprint of the sources the model was built from.
+	 * @throws IOException when the snapshot cannot be written.
+	 */
+	public void save(Model model,Properties fingerprint) throws IOException{
+		File dir = snapshotFile.getAbsoluteFile().getParentFile();
+		if(dir != null && !dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Cannot create directory "+dir);
+		}
+		File tmpSnapshot = new File(snapshotFile.getPath()+".tmp");
+		OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpSnapshot)), 1 << 16);
+		try{
+			model.write(out, "N-TRIPLE");
+		}finally{
+			out.close();
+		}
+		Properties info = new Properties();
+		info.putAll(fingerprint);
+		for(Map.Entry<String, String> entry : model.getNsPrefixMap().entrySet()){
+			info.setProperty("prefix."+entry.getKey(), entry.getValue());
+		}
+		File tmpInfo = new File(infoFile.getPath()+".tmp");
+		OutputStream infoOut = new FileOutputStream(tmpInfo);
+		try{
+			info.store(infoOut, "dynRDFa model snapshot");
+		}finally{
+			infoOut.close();
+		}
+		replace(tmpSnapshot, snapshotFile);
+		replace(tmpInfo, infoFile);
+	}
+
+	/**
+	 * @return the properties file of the snapshot, or null if it cannot be read.
+	 */
+	private Properties readInfo(){
+		Properties info = new Properties();
+		try{
+			InputStream in = new FileInputStream(infoFile);
+			try{
+				info.load(in);
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			return null;
+		}
+		return info;
+	}
+
+	/**
+	 * Computes a digest of the mapped tables, using the database connection declared in the mapping file.
+	 * The tables are the ones referred to by the d2rq:column properties. mySQL's CHECKSUM TABLE is used,
+	 * so that the rows do not have to be transferred.
+	 * @param mappingFile the D2RQ mapping file.
+	 * @return a hex digest, or null if the database cannot be reached.
+	 */
+	private String dataDigest(String mappingFile){
+		Model mapping = ModelFactory.createDefaultModel();
+		try{
+			InputStream in = new FileInputStream(mappingFile);
+			try{
+				mapping.read(in, new File(mappingFile).toURI().toString(), "TURTLE");
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			return null;
+		}
+		String dsn = mappingValue(mapping, "jdbcDSN");
+		if(dsn == null){
+			return null;
+		}
+		//the mapped tables, sorted so that the digest does not depend on the order of the mapping file.
+		TreeSet<String> tables = new TreeSet<String>();
+		StmtIterator iter = mapping.listStatements((Resource)null, mapping.createProperty(D2RQ+"column"), (RDFNode)null);
+		while(iter.hasNext()){
+			String column = iter.nextStatement().getString();
+			tables.add(column.substring(0, column.indexOf('.')));
+		}
+		StringBuilder sql = new StringBuilder("CHECKSUM TABLE ");
+		for(String table : tables){
+			if(sql.length()>15){
+				sql.append(", ");
+			}
+			sql.append('`').append(table).append('`');
+		}
+		try{
+			String driver = mappingValue(mapping, "jdbcDriver");
+			if(driver != null){
+				Class.forName(driver);
+			}
+			Connection conn = DriverManager.getConnection(dsn, mappingValue(mapping, "username"), mappingValue(mapping, "password"));
+			try{
+				Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery(sql.toString());
+				MessageDigest md = newDigest();
+				while(rs.next()){
+					md.update((rs.getString(1)+"="+rs.getString(2)+"\n").getBytes("UTF-8"));
+				}
+				rs.close();
+				stmt.close();
+				return toHex(md.digest());
+			}finally{
+				conn.close();
+			}
+		}catch(ClassNotFoundException e){
+			return null;
+		}catch(SQLException e){
+			return null;
+		}catch(IOException e){
+			return null;
+		}
+	}
+
+	/**
+	 * @param mapping the parsed mapping file.
+	 * @param localName the local name of a d2rq:Database property.
+	 * @return the value of the property, or null if the mapping does not declare it.
+	 */
+	private static String mappingValue(Model mapping,String localName){
+		Property property = mapping.createProperty(D2RQ+localName);
+		StmtIterator iter = mapping.listStatements((Resource)null, property, (RDFNode)null);
+		String value = iter.hasNext() ? iter.nextStatement().getString() : null;
+		iter.close();
+		return value;
+	}
+
+	/**
+	 * @param file a file.
+	 * @return the hex SHA-256 digest of the file contents.
+	 * @throws IOException when the file cannot be read.
+	 */
+	static String digest(File file) throws IOException{
+		MessageDigest md = newDigest();
+		InputStream in = new FileInputStream(file);
+		try{
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer))>0){
+				md.update(buffer, 0, n);
+			}
+		}finally{
+			in.close();
+		}
+		return toHex(md.digest());
+	}
+
+	/**
+	 * @return a new SHA-256 MessageDigest.
+	 */
+	static MessageDigest newDigest(){
+		try{
+			return MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException e){
+			//every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param bytes a digest.
+	 * @return the digest as a lowercase hex String.
+	 */
+	static String toHex(byte[] bytes){
+		char[] digits = "0123456789abcdef".toCharArray();
+		char[] hex = new char[bytes.length*2];
+		for(int i=0;i<bytes.length;i++){
+			hex[2*i] = digits[(bytes[i]>>4)&0xf];
+			hex[2*i+1] = digits[bytes[i]&0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Moves a freshly written file over the old one.
+	 * @param from the temporary file.
+	 * @param to the final file.
+	 * @throws IOException when the file cannot be moved.
+	 */
+	private static void replace(File from,File to) throws IOException{
+		if(to.exists() && !to.delete()){
+			throw new IOException("Cannot replace "+to);
+		}
+		if(!from.renameTo(to)){
+			throw new IOException("Cannot rename "+from+" to "+to);
+		}
+	}
+}
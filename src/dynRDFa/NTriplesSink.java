@@ -0,0 +1,99 @@
+package dynRDFa;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * The NTriplesSink class writes the statements of the publications of a web page as N-Triples, one
+ * statement per line, in a .nt file next to the html document (e.g. type2.nt for type2.html). The
+ * statements are the ones the RDFa markup of the page carries, see {@link Publication#describe(TripleSink)}.
+ * @author magda
+ */
+public class NTriplesSink implements PageSink {
+	//size of the buffer between the sink and the file.
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * @see dynRDFa.PageSink#open(String, String, ExportableModel)
+	 */
+	public Document open(String outputDir,String pageName,ExportableModel exportableModel) throws IOException{
+		File file = new File(outputDir, pageName+".nt");
+		return new NTriplesDocument(file, new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE));
+	}
+
+	/**
+	 * The .nt file of a web page.
+	 */
+	private static class NTriplesDocument implements Document, TripleSink {
+		private File file;
+		private Writer out;
+
+		NTriplesDocument(File file,Writer out){
+			this.file = file;
+			this.out = out;
+		}
+
+		public void add(Publication publication) throws IOException{
+			publication.describe(this);
+		}
+
+		public void resource(String subject,String predicate,String object) throws IOException{
+			node(subject);
+			out.write(' ');
+			node(predicate);
+			out.write(' ');
+			node(object);
+			out.write(" .\n");
+		}
+
+		public void literal(String subject,String predicate,String value) throws IOException{
+			node(subject);
+			out.write(' ');
+			node(predicate);
+			out.write(" \"");
+			for(int i=0;i<value.length();i++){
+				char c = value.charAt(i);
+				switch(c){
+				case '"': out.write("\\\""); break;
+				case '\\': out.write("\\\\"); break;
+				case '\n': out.write("\\n"); break;
+				case '\r': out.write("\\r"); break;
+				case '\t': out.write("\\t"); break;
+				default: out.write(c);
+				}
+			}
+			out.write("\" .\n");
+		}
+
+		public void close() throws IOException{
+			out.close();
+		}
+
+		public void discard(){
+			try{
+				out.close();
+			}catch(IOException e){
+				//the file is removed anyway.
+			}
+			file.delete();
+		}
+
+		/**
+		 * Writes an IRI between angle brackets, a blank node label as it is.
+		 */
+		private void node(String node) throws IOException{
+			if(node.startsWith("_:")){
+				out.write(node);
+			}
+			else{
+				out.write('<');
+				out.write(node);
+				out.write('>');
+			}
+		}
+	}
+}
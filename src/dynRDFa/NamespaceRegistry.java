@@ -0,0 +1,187 @@
+package dynRDFa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * The NamespaceRegistry class holds the namespace prefixes of the constructed model. It is built once
+ * per model, from the model's prefix mappings, and shared by all the treeples and pages: the prefix of
+ * a namespace is found with a single hash lookup. Every namespace that has a prefix also gets a small
+ * number, so that the namespaces a treeple (or any {@link Publication}) uses can be recorded as a
+ * BitSet, and the namespaces a web page uses (see {@link Usage}) are simply the union of the BitSets
+ * of its treeples.
+ * @author magda
+ */
+public class NamespaceRegistry {
+	//one registry per model.
+	private static final Map<Model,NamespaceRegistry> REGISTRIES = new WeakHashMap<Model,NamespaceRegistry>();
+	//namespace to prefix.
+	private HashMap<String,String> prefixes;
+	//namespace to number.
+	private HashMap<String,Integer> ids;
+	//number to namespace, and to its "prefix: namespace" declaration.
+	private String[] namespaces;
+	private String[] declarations;
+
+	/**
+	 * Class constructor: reads the prefix mappings of the model. The namespaces are numbered in
+	 * the alphabetical order of their prefixes.
+	 * @param resultsModel the constructed model.
+	 */
+	private NamespaceRegistry(Model resultsModel){
+		prefixes = new HashMap<String,String>();
+		ids = new HashMap<String,Integer>();
+		//prefix to namespace, sorted by prefix.
+		TreeMap<String,String> sorted = new TreeMap<String,String>();
+		for(String namespace : resultsModel.getNsPrefixMap().values()){
+			//the prefix the model itself prefers for the namespace.
+			String prefix = resultsModel.getNsURIPrefix(namespace);
+			if(prefix != null){
+				prefixes.put(namespace, prefix);
+				sorted.put(prefix, namespace);
+			}
+		}
+		namespaces = new String[sorted.size()];
+		declarations = new String[sorted.size()];
+		int id = 0;
+		for(Map.Entry<String, String> entry : sorted.entrySet()){
+			ids.put(entry.getValue(), id);
+			namespaces[id] = entry.getValue();
+			//supports the RDFs 1.1 notation e.g.: prefix="dc: http://purl.org/dc/elements/1.1/	foaf: http://xmlns.com/foaf/0.1/"
+			declarations[id] = entry.getKey()+": "+entry.getValue();
+			id++;
+		}
+	}
+
+	/**
+	 * @param resultsModel the constructed model.
+	 * @return the registry of the model, built on first use.
+	 */
+	public static NamespaceRegistry of(Model resultsModel){
+		synchronized(REGISTRIES){
+			NamespaceRegistry registry = REGISTRIES.get(resultsModel);
+			if(registry == null){
+				registry = new NamespaceRegistry(resultsModel);
+				REGISTRIES.put(resultsModel, registry);
+			}
+			return registry;
+		}
+	}
+
+	/**
+	 * @param namespace a namespace, e.g. http://purl.org/dc/elements/1.1/
+	 * @return its prefix (e.g. dc), or null if the model has none for it.
+	 */
+	public String prefixOf(String namespace){
+		return prefixes.get(namespace);
+	}
+
+	/**
+	 * @param namespace the namespace of a term, e.g. http://purl.org/dc/elements/1.1/
+	 * @param localName the local name of the term, e.g. title
+	 * @return the prefixed name of the term (e.g. dc:title), or its full IRI if the model has no prefix
+	 * for the namespace: RDFa 1.1 takes absolute IRIs in property, rel and typeof, "namespace:title" is
+	 * not a CURIE.
+	 */
+	public String prefixedName(String namespace,String localName){
+		String prefix = prefixes.get(namespace);
+		return prefix == null ? namespace+localName : prefix+":"+localName;
+	}
+
+	/**
+	 * Records a namespace as used.
+	 * @param used the namespaces used so far, by number.
+	 * @param namespace a namespace; it is ignored if the model has no prefix for it.
+	 */
+	public void use(BitSet used,String namespace){
+		Integer id = ids.get(namespace);
+		if(id != null){
+			used.set(id);
+		}
+	}
+
+	/**
+	 * @param used namespaces, by number.
+	 * @return their prefix mappings.
+	 */
+	public Map<String,String> mappingsOf(BitSet used){
+		HashMap<String,String> mappings = new HashMap<String,String>();
+		for(int id=used.nextSetBit(0);id>=0;id=used.nextSetBit(id+1)){
+			mappings.put(prefixes.get(namespaces[id]), namespaces[id]);
+		}
+		return mappings;
+	}
+
+	/**
+	 * @return the prefix declarations of all the namespaces of the model, in the alphabetical order
+	 * of their prefixes, for a web page whose treeples are not known before it is rendered.
+	 */
+	public ArrayList<String> getDeclarations(){
+		ArrayList<String> mappings = new ArrayList<String>(declarations.length);
+		for(int id=0;id<declarations.length;id++){
+			mappings.add(declarations[id]);
+		}
+		return mappings;
+	}
+
+	/**
+	 * The namespaces used by a web page. The treeples of the page are added as they are built,
+	 * and the prefix declarations of the page come out of it in the end.
+	 */
+	public static class Usage {
+		//the registry of the model the treeples belong to, known after the first treeple.
+		private NamespaceRegistry registry;
+		//the namespaces used so far, by number.
+		private BitSet used;
+
+		/**
+		 * Class constructor: initializes the private fields.
+		 */
+		public Usage(){
+			used = new BitSet();
+		}
+
+		/**
+		 * Records the namespaces a publication (e.g. a structured treeple) uses.
+		 * @param publication a publication of the page.
+		 */
+		public void add(Publication publication){
+			if(publication.getRegistry() == null){
+				return;
+			}
+			registry = publication.getRegistry();
+			used.or(publication.getNamespaces());
+		}
+
+		/**
+		 * @return the prefix declarations of the namespaces used by the page, in the alphabetical
+		 * order of their prefixes, ready to be inserted in a velocity template.
+		 */
+		public ArrayList<String> getMappings(){
+			ArrayList<String> mappings = new ArrayList<String>(used.cardinality());
+			for(int id=used.nextSetBit(0);id>=0;id=used.nextSetBit(id+1)){
+				mappings.add(registry.declarations[id]);
+			}
+			return mappings;
+		}
+
+		/**
+		 * @param publications the publications (e.g. treeples) of a web page.
+		 * @return the prefix declarations of the namespaces used by the publications.
+		 */
+		public static ArrayList<String> of(List<? extends Publication> publications){
+			Usage usage = new Usage();
+			for(int i=0;i<publications.size();i++){
+				usage.add(publications.get(i));
+			}
+			return usage.getMappings();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package dynRDFa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The PageGenerator class generates a set of web pages from a ModelMaker whose model has already
+ * been constructed. With a single worker the pages are built one after another. With more workers
+ * every page (its SELECT query, its treeples and the template merge) runs as a separate task against
+ * the shared, read-only constructed model, so the run takes about as long as the slowest page.
+ * @author magda
+ */
+public class PageGenerator {
+	//the ModelMaker that holds the constructed model.
+	private ModelMaker modelMaker;
+	//the VelociDataModel that renders the pages.
+	private VelociDataModel vdm;
+	//number of pages built at the same time.
+	private int workers;
+	//if set, the pages are split in one html document per year.
+	private PageSharder sharder;
+	//if set, the pages are rendered from the rows of this store instead of treeples.
+	private PublicationStore store;
+	//if set, all the pages are built from one run of the select query of all the publications.
+	private boolean partitioned;
+	//if set, the treeples of a page are built while it is rendered, and not kept.
+	private boolean streaming;
+	//the exportableModels of the pages, built before rendering when the store is used or the pages are partitioned.
+	private ConcurrentHashMap<Integer,ExportableModel> prepared;
+
+	/**
+	 * Class constructor.
+	 * @param modelMaker the ModelMaker that holds the constructed model.
+	 * @param vdm the VelociDataModel that renders the pages, already initialized.
+	 * @param workers number of pages built at the same time (1 builds them one after another).
+	 */
+	public PageGenerator(ModelMaker modelMaker,VelociDataModel vdm,int workers){
+		this.modelMaker = modelMaker;
+		this.vdm = vdm;
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * Setter
+	 * @param sharder if not null, every page is rendered as per-year shards plus an index page.
+	 */
+	public void setSharder(PageSharder sharder){
+		this.sharder = sharder;
+	}
+
+	/**
+	 * Setter
+	 * @param store if not null, the pages are rendered from the rows of the store. The rows of all the
+	 * pages are picked first; after that the constructed model of the ModelMaker is released, so that
+	 * only the store stays in memory while the pages are rendered.
+	 */
+	public void setStore(PublicationStore store){
+		this.store = store;
+	}
+
+	/**
+	 * Setter
+	 * @param partitioned if true, the exportableModels of all the pages are built before rendering from
+	 * a single run of the select query of all the publications, see {@link ModelMaker#exportPartitioned(int[], PublicationStore)}.
+	 */
+	public void setPartitioned(boolean partitioned){
+		this.partitioned = partitioned;
+	}
+
+	/**
+	 * Setter
+	 * @param streaming if true, the treeples of every page are built one at a time while the page is
+	 * rendered, see {@link ModelMaker#exportStream(int)}, so that the memory needed does not grow with
+	 * the size of the page. The store, the partitioning and the sharder are not used.
+	 */
+	public void setStreaming(boolean streaming){
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Builds and renders the given web pages. A page that fails does not stop the others.
+	 * @param choices the types of the web pages (valid: 0 to 5).
+	 * @return the types of the pages that failed (their cause is printed), empty if all were written.
+	 */
+	public int[] generate(int[] choices){
+		if(streaming){
+			//nothing is prepared, every page streams its own treeples.
+		}
+		else if(partitioned){
+			//one select query for all the pages.
+			prepared = new ConcurrentHashMap<Integer,ExportableModel>();
+			Map<Integer,ExportableModel> pages = store != null ? modelMaker.exportPartitioned(choices, store) : null;
+			if(pages == null){
+				pages = modelMaker.exportPartitioned(choices, null);
+			}
+			prepared.putAll(pages);
+		}
+		else if(store != null){
+			prepared = new ConcurrentHashMap<Integer,ExportableModel>();
+			for(int i=0;i<choices.length;i++){
+				ExportableModel em = modelMaker.exportRows(choices[i], store);
+				if(em == null){
+					//the page does not fit in the store, it is built from treeples.
+					em = modelMaker.exportPage(choices[i]);
+				}
+				prepared.put(choices[i], em);
+			}
+		}
+		if(store != null && !streaming){
+			store.detach();
+			modelMaker.releaseModel();
+		}
+		ArrayList<Integer> failed = new ArrayList<Integer>();
+		if(workers == 1 || choices.length <= 1){
+			for(int i=0;i<choices.length;i++){
+				try{
+					if(!buildPage(choices[i])){
+						failed.add(choices[i]);
+					}
+				}catch(RuntimeException e){
+					System.out.println("Generation of page type"+choices[i]+" failed: "+e);
+					e.printStackTrace();
+					failed.add(choices[i]);
+				}
+			}
+			return toArray(failed);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, choices.length));
+		try{
+			List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+			for(int i=0;i<choices.length;i++){
+				final int choice = choices[i];
+				tasks.add(pool.submit(new Callable<Boolean>() {
+					public Boolean call(){
+						return buildPage(choice);
+					}
+				}));
+			}
+			//wait for all the pages, a failed page does not stop the others.
+			for(int i=0;i<tasks.size();i++){
+				try{
+					if(!tasks.get(i).get()){
+						failed.add(choices[i]);
+					}
+				}catch(ExecutionException e){
+					System.out.println("Generation of page type"+choices[i]+" failed: "+e.getCause());
+					e.getCause().printStackTrace();
+					failed.add(choices[i]);
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					//the pages that were not waited for are not known to be written.
+					for(int j=i;j<tasks.size();j++){
+						failed.add(choices[j]);
+					}
+					break;
+				}
+			}
+		}finally{
+			pool.shutdown();
+		}
+		return toArray(failed);
+	}
+
+	private static int[] toArray(List<Integer> list){
+		int[] array = new int[list.size()];
+		for(int i=0;i<array.length;i++){
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Builds the exportableModel of a page and renders it.
+	 * @param choice the type of the web page.
+	 * @return true if the page was written.
+	 */
+	private boolean buildPage(int choice){
+		if(streaming){
+			ExportableModel em = modelMaker.exportStream(choice);
+			if(em == null){
+				return false;
+			}
+			try{
+				return vdm.builder(em);
+			}finally{
+				//the rows the template did not read, if it failed.
+				em.getStream().close();
+			}
+		}
+		ExportableModel em = prepared != null ? prepared.remove(choice) : modelMaker.exportPage(choice);
+		if(em == null){
+			return false;
+		}
+		if(sharder != null){
+			return sharder.build(em);
+		}
+		return vdm.builder(em);
+	}
+}
@@ -0,0 +1,260 @@
+package dynRDFa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The PagePublisher class is the output stage of the generated html documents. The documents are
+ * rendered into a staging directory next to the output directory (e.g. conf/webpages.staging), and
+ * then published: every document is hashed, documents whose hash did not change since the last run
+ * are dropped, so that the published files (and the caches downstream) are not touched, and the
+ * changed ones get a gzipped sibling (typeN.html.gz, for static servers that serve precompressed
+ * files) and are moved into the output directory with an atomic rename. Readers never see a half
+ * written document. The documents are published before the ones that link to them: the year shards
+ * and the JSON-LD and N-Triples documents first, then the pages of the types (the shard indexes), then
+ * the author pages, so that a reader who follows a link of a new page never gets an old or missing
+ * document. Last, a manifest with the hash and size of every published document is renamed into place,
+ * it describes the set of documents of the run.
+ * The documents are swapped one at a time, not as a whole directory: the output directory also holds
+ * the static files of the site (lpis.css, images2006) and is served as it is.
+ * @author magda
+ */
+public class PagePublisher {
+	//the manifest of the published documents, in the output directory.
+	public static final String MANIFEST = "manifest.txt";
+	//orders the staged documents by publishing rank, then by name.
+	private static final Comparator<File> LINKED_FIRST = new Comparator<File>() {
+		public int compare(File a,File b){
+			int byRank = rank(a.getName()) - rank(b.getName());
+			return byRank != 0 ? byRank : a.getName().compareTo(b.getName());
+		}
+	};
+	//the directory the documents are published to.
+	private File outputDir;
+	//the directory the documents are rendered into.
+	private File stagingDir;
+
+	/**
+	 * Class constructor.
+	 * @param outputDir the directory the documents are published to, e.g. conf/webpages
+	 */
+	public PagePublisher(String outputDir){
+		this.outputDir = new File(outputDir);
+		this.stagingDir = new File(outputDir+".staging");
+	}
+
+	/**
+	 * Getter
+	 * @return the staging directory, the VelociDataModels render the documents into it.
+	 */
+	public String getStagingDir(){
+		return stagingDir.getPath();
+	}
+
+	/**
+	 * Creates an empty staging directory. Documents left behind by an interrupted run are removed.
+	 * @throws IOException when the directory cannot be created.
+	 */
+	public void prepare() throws IOException{
+		if(stagingDir.isDirectory()){
+			File[] files = stagingDir.listFiles();
+			for(int i=0;i<files.length;i++){
+				if(files[i].isFile() && !files[i].delete()){
+					throw new IOException("Cannot delete "+files[i]);
+				}
+			}
+		}
+		else if(!stagingDir.mkdirs()){
+			throw new IOException("Cannot create directory "+stagingDir);
+		}
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()){
+			throw new IOException("Cannot create directory "+outputDir);
+		}
+	}
+
+	/**
+	 * Publishes the documents of the staging directory.
+	 * @return the number of documents that changed and were published.
+	 * @throws IOException when a document cannot be read or moved.
+	 */
+	public int publish() throws IOException{
+		//name to "hash size", the documents of earlier runs that were not rendered this time are kept.
+		TreeMap<String,String> manifest = readManifest();
+		int published = 0;
+		File[] staged = stagingDir.listFiles();
+		Arrays.sort(staged, LINKED_FIRST);
+		for(int i=0;i<staged.length;i++){
+			File file = staged[i];
+			if(!file.isFile()){
+				continue;
+			}
+			String hash = digest(file);
+			File target = new File(outputDir, file.getName());
+			if(unchanged(target, hash, manifest.get(file.getName()))){
+				//the published document is byte-identical, it is left as it is.
+				delete(file);
+			}
+			else{
+				File gz = new File(stagingDir, file.getName()+".gz");
+				gzip(file, gz);
+				//the compressed sibling first, so that it is never older than the document.
+				move(gz, new File(outputDir, gz.getName()));
+				move(file, target);
+				published++;
+			}
+			manifest.put(file.getName(), hash+" "+target.length());
+		}
+		writeManifest(manifest);
+		return published;
+	}
+
+	/**
+	 * @param name the name of a document.
+	 * @return the publishing rank of the document: 0 for the documents that only others link to (shards,
+	 * typeN-YYYY.html, and the data documents), 1 for the pages of the types, 2 for the author pages,
+	 * which link to the pages of the types.
+	 */
+	private static int rank(String name){
+		if(name.startsWith("author-") && name.endsWith(".html")){
+			return 2;
+		}
+		if(name.matches("type[0-9]+\\.html")){
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @param target the published document.
+	 * @param hash the hash of the new document.
+	 * @param entry the manifest entry of the published document, or null.
+	 * @return true if the published document has the given hash.
+	 */
+	private static boolean unchanged(File target,String hash,String entry) throws IOException{
+		if(!target.isFile() || !new File(target.getPath()+".gz").isFile()){
+			return false;
+		}
+		if(entry != null){
+			//the manifest is trusted as long as the document has the recorded size.
+			String[] parts = entry.split(" ");
+			if(parts.length == 2 && parts[1].equals(Long.toString(target.length()))){
+				return parts[0].equals(hash);
+			}
+		}
+		return digest(target).equals(hash);
+	}
+
+	/**
+	 * @return the manifest of the previous run, empty if there is none.
+	 */
+	private TreeMap<String,String> readManifest() throws IOException{
+		TreeMap<String,String> manifest = new TreeMap<String,String>();
+		File file = new File(outputDir, MANIFEST);
+		if(!file.isFile()){
+			return manifest;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try{
+			String line;
+			while((line = reader.readLine()) != null){
+				//hash size name
+				String[] parts = line.split(" ", 3);
+				if(parts.length == 3){
+					manifest.put(parts[2], parts[0]+" "+parts[1]);
+				}
+			}
+		}finally{
+			reader.close();
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest into the staging directory and renames it into place.
+	 * @param manifest name to "hash size".
+	 */
+	private void writeManifest(TreeMap<String,String> manifest) throws IOException{
+		File file = new File(stagingDir, MANIFEST);
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try{
+			for(Map.Entry<String,String> entry : manifest.entrySet()){
+				out.write(entry.getValue()+" "+entry.getKey()+"\n");
+			}
+		}finally{
+			out.close();
+		}
+		move(file, new File(outputDir, MANIFEST));
+	}
+
+	/**
+	 * @param file a file.
+	 * @return the hex SHA-256 digest of the file contents.
+	 */
+	private static String digest(File file) throws IOException{
+		return ModelSnapshot.digest(file);
+	}
+
+	/**
+	 * Writes the gzipped copy of a file.
+	 * @param from the file.
+	 * @param to the gzipped copy.
+	 */
+	private static void gzip(File from,File to) throws IOException{
+		InputStream in = new FileInputStream(from);
+		try{
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(to), 1 << 16);
+			try{
+				byte[] buffer = new byte[1 << 16];
+				int n;
+				while((n = in.read(buffer))>0){
+					out.write(buffer, 0, n);
+				}
+			}finally{
+				out.close();
+			}
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Moves a file over another one with an atomic rename, so that readers see either the old or
+	 * the new file. The staging directory is next to the output directory, on the same file system.
+	 * @param from the new file.
+	 * @param to the published file.
+	 */
+	private static void move(File from,File to) throws IOException{
+		try{
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}catch(AtomicMoveNotSupportedException e){
+			//e.g. the output directory is a mount of another file system.
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @param file a staged file that is not published.
+	 */
+	private static void delete(File file) throws IOException{
+		if(!file.delete()){
+			throw new IOException("Cannot delete "+file);
+		}
+	}
+}
@@ -0,0 +1,342 @@
+package dynRDFa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The PageServer class serves the web pages from memory, with the JDK's embedded http server, instead
+ * of writing them to files that have to be copied to a web server. The rendered pages and the static
+ * files of the output directory (lpis.css, date.js, images2006) are kept as byte arrays, along with a
+ * gzipped copy of the text files, a strong ETag (a digest of the content) and the time the content
+ * last changed. Requests are answered from these entries only: nothing is read from disk or rendered
+ * while serving, and conditional GETs (If-None-Match, If-Modified-Since) are answered with 304.
+ * New versions of the pages are published as a whole: the map of entries is replaced by a single
+ * assignment, so a request sees either the old or the new set of pages, never a mix.
+ * @author magda
+ */
+public class PageServer {
+	//the document served for "/".
+	private static final String INDEX = "/type0.html";
+	//content types by file extension.
+	private static final Map<String,String> CONTENT_TYPES = new HashMap<String,String>();
+	static{
+		CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+		CONTENT_TYPES.put("css", "text/css; charset=UTF-8");
+		CONTENT_TYPES.put("js", "application/javascript; charset=UTF-8");
+		CONTENT_TYPES.put("gif", "image/gif");
+		CONTENT_TYPES.put("jpg", "image/jpeg");
+		CONTENT_TYPES.put("jpeg", "image/jpeg");
+		CONTENT_TYPES.put("png", "image/png");
+		CONTENT_TYPES.put("ico", "image/x-icon");
+	}
+	//http dates, e.g. Sun, 06 Nov 1994 08:49:37 GMT. SimpleDateFormat is not thread safe.
+	private static final ThreadLocal<SimpleDateFormat> HTTP_DATE = new ThreadLocal<SimpleDateFormat>() {
+		protected SimpleDateFormat initialValue(){
+			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return format;
+		}
+	};
+
+	//the http server and its worker threads.
+	private HttpServer server;
+	private ExecutorService workers;
+	//the static files of the output directory, by path.
+	private Map<String,Entry> assets;
+	//the entries that are served, by path. Replaced as a whole by publish().
+	private volatile Map<String,Entry> entries;
+
+	/**
+	 * Class constructor: loads the static files of the output directory and binds the server.
+	 * @param port the port to listen on.
+	 * @param assetsDir the directory of the static files, e.g. conf/webpages
+	 * @param threads number of requests served at the same time.
+	 * @throws IOException when the files cannot be read or the port cannot be bound.
+	 */
+	public PageServer(int port,String assetsDir,int threads) throws IOException{
+		assets = loadAssets(new File(assetsDir).toPath());
+		entries = assets;
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		server.setExecutor(workers);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException{
+				serve(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Starts serving requests.
+	 */
+	public void start(){
+		server.start();
+	}
+
+	/**
+	 * @return the port the server listens on, the one chosen by the system when it was created with port 0.
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving requests.
+	 * @param delay the seconds the requests in progress are given to finish.
+	 */
+	public void stop(int delay){
+		server.stop(delay);
+		workers.shutdown();
+	}
+
+	/**
+	 * Replaces the served pages with a new version. A page whose content did not change keeps its
+	 * entry, so its ETag and Last-Modified stay the same and cached copies stay valid.
+	 * @param pages the rendered pages by path, e.g. /type1.html
+	 */
+	public void publish(Map<String,byte[]> pages){
+		Map<String,Entry> current = entries;
+		HashMap<String,Entry> next = new HashMap<String,Entry>(assets);
+		long now = System.currentTimeMillis();
+		for(Map.Entry<String,byte[]> page : pages.entrySet()){
+			Entry entry = new Entry(page.getValue(), contentType(page.getKey()), now);
+			Entry previous = current.get(page.getKey());
+			next.put(page.getKey(), previous != null && previous.etag.equals(entry.etag) ? previous : entry);
+		}
+		entries = next;
+	}
+
+	/**
+	 * Renders web pages in memory.
+	 * @param modelMaker the ModelMaker that holds the constructed model.
+	 * @param vdm the VelociDataModel that renders the pages.
+	 * @param choices the types of the web pages (valid: 0 to 5).
+	 * @return the rendered pages by path, e.g. /type1.html
+	 * @throws IOException when a page cannot be rendered.
+	 */
+	public static Map<String,byte[]> render(ModelMaker modelMaker,VelociDataModel vdm,int[] choices) throws IOException{
+		Map<Integer,ExportableModel> models = modelMaker.exportPartitioned(choices, null);
+		HashMap<String,byte[]> pages = new HashMap<String,byte[]>();
+		for(ExportableModel em : models.values()){
+			ByteArrayOutputStream out = new ByteArrayOutputStream(1<<16);
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			vdm.render(em, writer);
+			writer.close();
+			pages.put("/type"+em.getID()+".html", out.toByteArray());
+			RunMetrics.getInstance().page("type"+em.getID()+".html", out.size());
+		}
+		return pages;
+	}
+
+	/**
+	 * Answers a request from the entries.
+	 */
+	private void serve(HttpExchange exchange) throws IOException{
+		try{
+			String method = exchange.getRequestMethod();
+			boolean head = method.equals("HEAD");
+			Headers response = exchange.getResponseHeaders();
+			if(!head && !method.equals("GET")){
+				response.set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			Entry entry = entries.get(path.equals("/") ? INDEX : path);
+			if(entry == null){
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			Headers request = exchange.getRequestHeaders();
+			boolean gzip = entry.gzipped != null && acceptsGzip(request.getFirst("Accept-Encoding"));
+			//the gzipped copy is a different representation, it has its own ETag.
+			String etag = gzip ? entry.gzipEtag : entry.etag;
+			response.set("ETag", etag);
+			response.set("Last-Modified", entry.lastModifiedDate);
+			//the pages change when they are regenerated, caches must revalidate them.
+			response.set("Cache-Control", "no-cache");
+			if(entry.gzipped != null){
+				response.set("Vary", "Accept-Encoding");
+			}
+			if(notModified(request, entry, etag)){
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			byte[] body = gzip ? entry.gzipped : entry.body;
+			response.set("Content-Type", entry.contentType);
+			if(gzip){
+				response.set("Content-Encoding", "gzip");
+			}
+			if(head){
+				response.set("Content-Length", Integer.toString(body.length));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}finally{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return true if the client's copy is the current one: one of the If-None-Match ETags matches,
+	 * or, without If-None-Match, the entry did not change after If-Modified-Since.
+	 */
+	private static boolean notModified(Headers request,Entry entry,String etag){
+		String ifNoneMatch = request.getFirst("If-None-Match");
+		if(ifNoneMatch != null){
+			String[] tags = ifNoneMatch.split(",");
+			for(int i=0;i<tags.length;i++){
+				String tag = tags[i].trim();
+				if(tag.startsWith("W/")){
+					tag = tag.substring(2);
+				}
+				if(tag.equals("*") || tag.equals(etag)){
+					return true;
+				}
+			}
+			return false;
+		}
+		String ifModifiedSince = request.getFirst("If-Modified-Since");
+		if(ifModifiedSince != null){
+			try {
+				return entry.lastModified <= HTTP_DATE.get().parse(ifModifiedSince).getTime();
+			} catch (ParseException e) {
+				//an invalid date is ignored.
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param acceptEncoding the Accept-Encoding header of the request, or null.
+	 * @return true if the client accepts gzip.
+	 */
+	private static boolean acceptsGzip(String acceptEncoding){
+		if(acceptEncoding == null){
+			return false;
+		}
+		String[] codings = acceptEncoding.split(",");
+		for(int i=0;i<codings.length;i++){
+			String[] parts = codings[i].split(";");
+			String coding = parts[0].trim();
+			if(!coding.equalsIgnoreCase("gzip") && !coding.equals("*")){
+				continue;
+			}
+			//gzip;q=0 means not acceptable.
+			return parts.length<2 || !parts[1].trim().matches("q=0(\\.0*)?");
+		}
+		return false;
+	}
+
+	/**
+	 * Loads the files of a directory and its subdirectories.
+	 * @return the entries by path, e.g. /images2006/spacer.gif
+	 */
+	private static Map<String,Entry> loadAssets(final Path dir) throws IOException{
+		final HashMap<String,Entry> loaded = new HashMap<String,Entry>();
+		if(!Files.isDirectory(dir)){
+			return loaded;
+		}
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			public FileVisitResult visitFile(Path file,BasicFileAttributes attrs) throws IOException{
+				String path = "/"+dir.relativize(file).toString().replace(File.separatorChar, '/');
+				loaded.put(path, new Entry(Files.readAllBytes(file), contentType(path), attrs.lastModifiedTime().toMillis()));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return loaded;
+	}
+
+	/**
+	 * @param path a path, e.g. /lpis.css
+	 * @return the content type of its extension.
+	 */
+	private static String contentType(String path){
+		String type = CONTENT_TYPES.get(path.substring(path.lastIndexOf('.')+1).toLowerCase(Locale.US));
+		return type == null ? "application/octet-stream" : type;
+	}
+
+	/**
+	 * A served document: its content, gzipped copy, ETags and modification time, computed once.
+	 */
+	private static class Entry {
+		private final byte[] body;
+		//null if the content is not text, or gzip does not make it smaller.
+		private final byte[] gzipped;
+		private final String contentType;
+		private final String etag;
+		private final String gzipEtag;
+		//http dates have a precision of seconds.
+		private final long lastModified;
+		private final String lastModifiedDate;
+
+		/**
+		 * Class constructor.
+		 * @param body the content.
+		 * @param contentType the content type.
+		 * @param lastModified the time the content changed, in milliseconds.
+		 */
+		private Entry(byte[] body,String contentType,long lastModified){
+			this.body = body;
+			this.contentType = contentType;
+			MessageDigest md = ModelSnapshot.newDigest();
+			String digest = ModelSnapshot.toHex(md.digest(body)).substring(0, 32);
+			this.etag = "\""+digest+"\"";
+			this.gzipEtag = "\""+digest+"-gz\"";
+			this.lastModified = lastModified/1000*1000;
+			this.lastModifiedDate = HTTP_DATE.get().format(new Date(this.lastModified));
+			byte[] compressed = null;
+			if(contentType.startsWith("text/") || contentType.startsWith("application/javascript")){
+				compressed = gzip(body);
+			}
+			this.gzipped = compressed != null && compressed.length<body.length ? compressed : null;
+		}
+
+		/**
+		 * @return the gzipped bytes, or null if they cannot be produced.
+		 */
+		private static byte[] gzip(byte[] body){
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(body.length/4+64);
+				GZIPOutputStream gz = new GZIPOutputStream(out);
+				gz.write(body);
+				gz.close();
+				return out.toByteArray();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+	}
+}
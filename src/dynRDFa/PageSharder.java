@@ -0,0 +1,132 @@
+package dynRDFa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The PageSharder class splits a web page into one html document per year, following the
+ * publicationsPerYear TreeMap of its exportableModel. Every shard is an exportableModel of its own,
+ * holding the treeples of one year and only the prefix mappings that those treeples need, and is
+ * rendered with the page template as typeN-YYYY.html. The shards are rendered in parallel. In place
+ * of the full page, typeN.html becomes a lightweight index that links to the shards and carries the
+ * per-year totals. The sinks of the shard VelociDataModel (see {@link PageSink}) write one document per
+ * shard as well, e.g. type2-2013.jsonld: the statements of a page are the union of its shards'. The index
+ * page holds no publications, so its VelociDataModel is given no sinks.
+ * @author magda
+ */
+public class PageSharder {
+	//renders the shards, with the page template.
+	private VelociDataModel shardVdm;
+	//renders the index pages, with the index template.
+	private VelociDataModel indexVdm;
+	//the pool that renders the shards.
+	private ExecutorService pool;
+
+	/**
+	 * Class constructor.
+	 * @param shardVdm renders the shards, with the page template.
+	 * @param indexVdm renders the index pages, with the index template (e.g. conf/index.vm).
+	 * @param workers number of shards rendered at the same time.
+	 */
+	public PageSharder(VelociDataModel shardVdm,VelociDataModel indexVdm,int workers){
+		this.shardVdm = shardVdm;
+		this.indexVdm = indexVdm;
+		this.pool = Executors.newFixedThreadPool(Math.max(1, workers));
+	}
+
+	/**
+	 * Renders the shards of a web page and its index page.
+	 * @param exportableModel the exportableModel of the full web page.
+	 * @return true if all the shards and the index page were written.
+	 */
+	public boolean build(ExportableModel exportableModel){
+		List<ExportableModel> shards = split(exportableModel);
+		List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+		for(int i=0;i<shards.size();i++){
+			final ExportableModel shard = shards.get(i);
+			tasks.add(pool.submit(new Callable<Boolean>() {
+				public Boolean call(){
+					return shardVdm.builder(shard, shardFile(shard));
+				}
+			}));
+		}
+		//the index only needs the totals.
+		ExportableModel index = new ExportableModel();
+		index.setID(exportableModel.getID());
+		index.setMappings(new ArrayList<String>());
+		index.setPublicationsPerYear(exportableModel.getPublicationsPerYear());
+		index.setTreeples(new ArrayList<Treeple>());
+		boolean written = indexVdm.builder(index);
+		for(int i=0;i<tasks.size();i++){
+			try{
+				if(!tasks.get(i).get()){
+					written = false;
+				}
+			}catch(ExecutionException e){
+				System.out.println("Rendering of "+shardFile(shards.get(i))+" failed: "+e.getCause());
+				e.getCause().printStackTrace();
+				written = false;
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Splits a web page by year. The order of the treeples within a year is kept.
+	 * @param exportableModel the exportableModel of the full web page.
+	 * @return one exportableModel per year, in descending year order.
+	 */
+	public static List<ExportableModel> split(ExportableModel exportableModel){
+		HashMap<Integer,ArrayList<Publication>> byYear = new HashMap<Integer,ArrayList<Publication>>();
+		List<? extends Publication> treeples = exportableModel.getPublications();
+		for(int i=0;i<treeples.size();i++){
+			ArrayList<Publication> yearTreeples = byYear.get(treeples.get(i).getYear());
+			if(yearTreeples == null){
+				yearTreeples = new ArrayList<Publication>();
+				byYear.put(treeples.get(i).getYear(), yearTreeples);
+			}
+			yearTreeples.add(treeples.get(i));
+		}
+		List<ExportableModel> shards = new ArrayList<ExportableModel>();
+		for(Map.Entry<Integer, Integer> entry : exportableModel.getPublicationsPerYear().entrySet()){
+			ArrayList<Publication> yearTreeples = byYear.get(entry.getKey());
+			ExportableModel shard = new ExportableModel();
+			shard.setID(exportableModel.getID());
+			shard.setPublications(yearTreeples);
+			//only the prefixes this year's treeples use.
+			shard.setMappings(ModelMaker.getMappings(yearTreeples));
+			TreeMap<Integer,Integer> years = new TreeMap<Integer,Integer>(Collections.reverseOrder());
+			years.put(entry.getKey(), yearTreeples.size());
+			shard.setPublicationsPerYear(years);
+			shards.add(shard);
+		}
+		return shards;
+	}
+
+	/**
+	 * @param shard the exportableModel of a shard.
+	 * @return the name of its html document, e.g. type2-2013.html
+	 */
+	private static String shardFile(ExportableModel shard){
+		return "type"+shard.getID()+"-"+shard.getPublicationsPerYear().firstKey()+".html";
+	}
+
+	/**
+	 * Stops the pool that renders the shards.
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+}
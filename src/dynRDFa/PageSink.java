@@ -0,0 +1,51 @@
+package dynRDFa;
+
+import java.io.IOException;
+
+/**
+ * The PageSink interface is an output of the web pages besides the html document, e.g. a JSON-LD
+ * document ({@link JsonLdSink}) or an N-Triples dump ({@link NTriplesSink}). The sinks are fed by the
+ * traversal that renders the page: the {@link VelociDataModel} opens a document per sink when it starts
+ * a page, adds each publication to it as the template's #foreach reaches the publication, and closes it
+ * when the page is rendered. No query or pass over the model is added for a sink. A document that fails,
+ * or whose html document fails, is discarded.
+ * @author magda
+ */
+public interface PageSink {
+
+	/**
+	 * Opens the document of a web page.
+	 * @param outputDir the directory of the generated html documents.
+	 * @param pageName the name of the html document without .html, e.g. type2-2013
+	 * @param exportableModel the page, for its prefix mappings.
+	 * @return the document the publications of the page are added to.
+	 * @throws IOException when the document cannot be created.
+	 */
+	Document open(String outputDir,String pageName,ExportableModel exportableModel) throws IOException;
+
+	/**
+	 * The document of a web page.
+	 */
+	public interface Document {
+
+		/**
+		 * Writes a publication of the page.
+		 * @param publication the publication the template has just reached.
+		 * @throws IOException when the document cannot be written.
+		 */
+		void add(Publication publication) throws IOException;
+
+		/**
+		 * Completes and closes the document.
+		 * @throws IOException when the document cannot be written.
+		 */
+		void close() throws IOException;
+
+		/**
+		 * Closes the document without completing it and removes its file, when a publication could not
+		 * be added to it or the html document of the page failed, so that no partial document is left
+		 * to be published.
+		 */
+		void discard();
+	}
+}
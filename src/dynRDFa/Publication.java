@@ -0,0 +1,49 @@
+package dynRDFa;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.velocity.runtime.Renderable;
+
+/**
+ * The Publication interface is what a velocity template and the page structures need from a
+ * publication: its RDFa markup, its hyperlink, its year and the namespaces its markup uses.
+ * It is implemented by {@link Treeple}, which reads the publication from the constructed model,
+ * and by the rows of a {@link PublicationStore}. Besides the markup, a publication hands the statements
+ * of its markup to a {@link TripleSink}, so that other serializations are written in the same pass.
+ * @author magda
+ */
+public interface Publication {
+
+	/**
+	 * @return a block that writes the RDFa markup of the publication, used by the velocity template as $element.rdfa
+	 */
+	Renderable getRdfa();
+
+	/**
+	 * Hands the statements of the RDFa markup of the publication to a sink.
+	 * @param sink receives the statements.
+	 * @throws IOException when the sink cannot write a statement.
+	 */
+	void describe(TripleSink sink) throws IOException;
+
+	/**
+	 * @return the hyperlink of the publication.
+	 */
+	String getLink();
+
+	/**
+	 * @return the publication year.
+	 */
+	int getYear();
+
+	/**
+	 * @return the run-wide namespace registry the namespaces are numbered by.
+	 */
+	NamespaceRegistry getRegistry();
+
+	/**
+	 * @return the namespaces used by the RDFa markup of the publication, numbered by the registry.
+	 */
+	BitSet getNamespaces();
+}
@@ -0,0 +1,516 @@
+package dynRDFa;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.Renderable;
+
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * The PublicationStore class is a read-only, columnar copy of the fields the web pages show, built once
+ * from the constructed model. Every publication and every author is a row. Integer fields (identifiers,
+ * years, citation counts) are kept in int columns, and text fields (titles, venues, names...) in int
+ * columns that point into a dictionary of distinct Strings. The authors of a publication are an int
+ * adjacency list. Once the pages have picked their rows, the Jena model is no longer needed to render them.
+ * The rows render the same RDFa markup as the treeples: the columns are written in the order of the
+ * predicates of a treeple, integers as values, N/A text is left out. The store only knows the vocabulary
+ * of the CONSTRUCT query (construct.txt); if the model holds anything else, it cannot be built.
+ * @author magda
+ */
+public class PublicationStore {
+	private static final String DC = "http://purl.org/dc/elements/1.1/";
+	private static final String DCT = "http://purl.org/dc/terms/";
+	private static final String BIBO = "http://purl.org/ontology/bibo/";
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+	private static final String CITO = "http://purl.org/net/cito/";
+	//the typed literals (xsd:int, xsd:integer) that are written as values.
+	private static final String INT_TYPE = "http://www.w3.org/2001/XMLSchema#int";
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	//marks an empty int cell.
+	private static final int NONE = Integer.MIN_VALUE;
+	//the author IDs are shifted by this number in the constructed model (see construct.txt).
+	private static final int AUTHOR_ID_OFFSET = 80000;
+	//the columns of a publication and of an author, in the order a treeple holds its predicates.
+	private static final Column[] PUBLICATION_COLUMNS = sorted(new Column[]{
+		new Column(DCT, "creator", false), new Column(DC, "date", true), new Column(BIBO, "editor", false),
+		new Column(CITO, "globalCountValue", true), new Column(DC, "identifier", true), new Column(DCT, "location", false),
+		new Column(BIBO, "pages", false), new Column(BIBO, "presentedAt", false), new Column(DCT, "publisher", false),
+		new Column(DC, "title", false), new Column(DC, "type", false), new Column(BIBO, "volume", false)});
+	private static final Column[] AUTHOR_COLUMNS = sorted(new Column[]{
+		new Column(FOAF, "familyName", false), new Column(FOAF, "givenName", false), new Column(DC, "identifier", true)});
+
+	//the distinct Strings of the text columns.
+	private String[] dictionary;
+	//for every dictionary entry: true if it is marked as N/A and not written.
+	private boolean[] hidden;
+	//the prefixed names of the columns, e.g. dc:title
+	private String[] publicationNames;
+	private String[] authorNames;
+	//publication columns: cells[column][row], an int or a dictionary index (NONE if empty).
+	private int[][] cells;
+	//the last part of the publication subjects, e.g. 373 for .../publications/373
+	private String[] subjectIds;
+	//the publication years, as a treeple finds them.
+	private int[] years;
+	//the namespaces used by each publication, as a bit mask of registry numbers.
+	private long[] namespaceMasks;
+	//the authors of publication r are authorRows[authorStart[r]] to authorRows[authorStart[r+1]-1].
+	private int[] authorStart;
+	private int[] authorRows;
+	//author columns: authorCells[column][author row].
+	private int[][] authorCells;
+	//the blank node labels of the authors, by author row, see RDFaWriter.authorNode.
+	private String[] authorNodes;
+	//the rows, shared by all the pages.
+	private Row[] rows;
+	//the publication subjects mapped to their rows, dropped by detach().
+	private HashMap<Resource,Integer> rowsBySubject;
+	//the registry the namespaces are numbered by.
+	private NamespaceRegistry registry;
+
+	private PublicationStore(){
+	}
+
+	/**
+	 * Builds the store from the constructed model. A publication is a subject with a dc:type; its
+	 * dct:creator objects must be authors (subjects themselves).
+	 * @param index the index of the constructed model.
+	 * @param resultsModel the constructed model.
+	 * @return the store, or null if the model holds statements that the store has no column for.
+	 */
+	public static PublicationStore build(ModelIndex index,Model resultsModel){
+		PublicationStore store = new PublicationStore();
+		try{
+			store.load(index, resultsModel);
+		}catch(IllegalArgumentException e){
+			System.out.println("The publications cannot be stored in columns: "+e.getMessage());
+			return null;
+		}
+		return store;
+	}
+
+	private void load(ModelIndex index,Model resultsModel){
+		registry = NamespaceRegistry.of(resultsModel);
+		publicationNames = names(PUBLICATION_COLUMNS);
+		authorNames = names(AUTHOR_COLUMNS);
+		Dictionary dict = new Dictionary();
+		//the authors
+		Map<Resource,Treeple> authors = index.getAuthors();
+		HashMap<Resource,Integer> authorIndex = new HashMap<Resource,Integer>();
+		long[] authorMasks = new long[authors.size()];
+		authorCells = newCells(AUTHOR_COLUMNS.length, authors.size());
+		authorNodes = new String[authors.size()];
+		for(Resource author : authors.keySet()){
+			int row = authorIndex.size();
+			authorIndex.put(author, row);
+			authorNodes[row] = RDFaWriter.authorNode(author);
+			List<Statement> stmts = index.statementsOf(author);
+			for(int i=0;i<stmts.size();i++){
+				Statement stmt = stmts.get(i);
+				authorMasks[row] |= mask(stmt.getPredicate().getNameSpace());
+				int c = column(AUTHOR_COLUMNS, stmt.getPredicate().getURI());
+				//like the author treeples, only the first object of a predicate is kept.
+				if(authorCells[c][row] == NONE){
+					authorCells[c][row] = AUTHOR_COLUMNS[c].integer
+							? intValue(stmt.getObject()) - AUTHOR_ID_OFFSET : dict.add(text(stmt.getObject()));
+				}
+			}
+		}
+		//the publications: subjects with a dc:type
+		ArrayList<Resource> subjects = new ArrayList<Resource>();
+		for(Resource subject : index.getSubjects()){
+			if(!authors.containsKey(subject) && hasType(index.statementsOf(subject))){
+				subjects.add(subject);
+			}
+		}
+		int n = subjects.size();
+		cells = newCells(PUBLICATION_COLUMNS.length, n);
+		subjectIds = new String[n];
+		years = new int[n];
+		namespaceMasks = new long[n];
+		authorStart = new int[n+1];
+		rowsBySubject = new HashMap<Resource,Integer>();
+		int creator = column(PUBLICATION_COLUMNS, DCT+"creator");
+		ArrayList<Integer> creators = new ArrayList<Integer>();
+		for(int row=0;row<n;row++){
+			Resource subject = subjects.get(row);
+			rowsBySubject.put(subject, row);
+			String s = subject.toString();
+			subjectIds[row] = s.substring(s.lastIndexOf('/')+1);
+			authorStart[row] = creators.size();
+			List<Statement> stmts = index.statementsOf(subject);
+			for(int i=0;i<stmts.size();i++){
+				Statement stmt = stmts.get(i);
+				namespaceMasks[row] |= mask(stmt.getPredicate().getNameSpace());
+				int c = column(PUBLICATION_COLUMNS, stmt.getPredicate().getURI());
+				if(c == creator){
+					Integer author = stmt.getObject().isLiteral() ? null : authorIndex.get(stmt.getObject().asResource());
+					if(author == null){
+						throw new IllegalArgumentException("the creator "+stmt.getObject()+" of "+subject+" is not an author");
+					}
+					creators.add(author);
+					namespaceMasks[row] |= authorMasks[author];
+					continue;
+				}
+				if(cells[c][row] != NONE){
+					throw new IllegalArgumentException(subject+" has more than one "+stmt.getPredicate());
+				}
+				cells[c][row] = PUBLICATION_COLUMNS[c].integer ? intValue(stmt.getObject()) : dict.add(text(stmt.getObject()));
+			}
+			years[row] = year(stmts);
+		}
+		authorStart[n] = creators.size();
+		authorRows = new int[creators.size()];
+		for(int i=0;i<authorRows.length;i++){
+			authorRows[i] = creators.get(i);
+		}
+		dictionary = dict.strings.toArray(new String[dict.strings.size()]);
+		hidden = new boolean[dictionary.length];
+		for(int i=0;i<dictionary.length;i++){
+			//do not produce Predicates and Objects for objects marked as N/A
+			hidden[i] = dictionary[i].contains("N/A");
+		}
+		rows = new Row[n];
+		for(int row=0;row<n;row++){
+			rows[row] = new Row(row);
+		}
+	}
+
+	/**
+	 * @param subject the subject of a publication.
+	 * @return the row of the publication, or null if it is not a publication (or the store was detached).
+	 */
+	public Row rowOf(Resource subject){
+		Integer row = rowsBySubject == null ? null : rowsBySubject.get(subject);
+		return row == null ? null : rows[row];
+	}
+
+	/**
+	 * Drops the references to the resources of the constructed model, once the pages have picked their
+	 * rows, so that the model can be garbage collected.
+	 */
+	public void detach(){
+		rowsBySubject = null;
+	}
+
+	/**
+	 * @return the number of publications.
+	 */
+	public int size(){
+		return rows.length;
+	}
+
+	/**
+	 * Writes the RDFa markup of a publication, the same markup {@link RDFaWriter} writes for its treeple.
+	 * @param row the row of the publication.
+	 * @param out where the markup is written to.
+	 * @throws IOException when the Appendable cannot be written.
+	 */
+	public void write(int row,Appendable out) throws IOException{
+		out.append("<div about=\"http://lpis.csd.auth.gr/paper_details.asp?publicationID=").append(subjectIds[row])
+			.append("\" typeof=\"bibo:Document\">").append('\n'); //RDFa S
+		for(int c=0;c<PUBLICATION_COLUMNS.length;c++){
+			if(PUBLICATION_COLUMNS[c].creator){
+				for(int a=authorStart[row];a<authorStart[row+1];a++){
+					out.append("<span rel=\"").append(publicationNames[c]).append("\">").append('\n'); //RDFa P
+					writeAuthor(authorRows[a], out);
+					out.append("</span>").append(", ").append('\n');
+				}
+				continue;
+			}
+			int cell = cells[c][row];
+			if(cell == NONE || (!PUBLICATION_COLUMNS[c].integer && hidden[cell])){
+				continue;
+			}
+			out.append("<span property=\"").append(publicationNames[c]).append("\">") //RDFa P
+				.append(PUBLICATION_COLUMNS[c].integer ? Integer.toString(cell) : dictionary[cell]) //RDFa O
+				.append("</span>").append(", ").append('\n');
+		}
+		out.append("</div>");
+	}
+
+	/**
+	 * Hands the statements of the markup {@link #write(int, Appendable)} writes to a sink, the same statements
+	 * {@link RDFaWriter#describe(Treeple, TripleSink)} hands over for the treeple of the publication.
+	 * @param row the row of the publication.
+	 * @param sink receives the statements.
+	 * @throws IOException when the sink cannot write a statement.
+	 */
+	public void describe(int row,TripleSink sink) throws IOException{
+		String subject = "http://lpis.csd.auth.gr/paper_details.asp?publicationID="+subjectIds[row];
+		sink.resource(subject, RDF_TYPE, BIBO+"Document");
+		for(int c=0;c<PUBLICATION_COLUMNS.length;c++){
+			if(PUBLICATION_COLUMNS[c].creator){
+				for(int a=authorStart[row];a<authorStart[row+1];a++){
+					//labelled like the blank node of the author of a treeple.
+					String blank = authorNodes[authorRows[a]];
+					sink.resource(subject, PUBLICATION_COLUMNS[c].uri, blank);
+					for(int k=0;k<AUTHOR_COLUMNS.length;k++){
+						int cell = authorCells[k][authorRows[a]];
+						if(cell != NONE){
+							sink.literal(blank, AUTHOR_COLUMNS[k].uri, AUTHOR_COLUMNS[k].integer ? Integer.toString(cell) : dictionary[cell]);
+						}
+					}
+				}
+				continue;
+			}
+			int cell = cells[c][row];
+			if(cell == NONE || (!PUBLICATION_COLUMNS[c].integer && hidden[cell])){
+				continue;
+			}
+			sink.literal(subject, PUBLICATION_COLUMNS[c].uri, PUBLICATION_COLUMNS[c].integer ? Integer.toString(cell) : dictionary[cell]);
+		}
+	}
+
+	private void writeAuthor(int author,Appendable out) throws IOException{
+		for(int c=0;c<AUTHOR_COLUMNS.length;c++){
+			int cell = authorCells[c][author];
+			if(cell == NONE){
+				continue;
+			}
+			out.append("<span property=\"").append(authorNames[c]); //RDFa P
+			//Author ID case. @content can be used to indicate a plain literal
+			if(AUTHOR_COLUMNS[c].integer){
+				out.append("\" content=\"").append(Integer.toString(cell)).append("\">");
+			}
+			else{
+				out.append("\">").append(dictionary[cell]); //RDFa O
+			}
+			out.append(" </span>").append('\n');
+		}
+	}
+
+	private static Column[] sorted(Column[] columns){
+		//the order of the predicates of a treeple: by the characters after the last /
+		Arrays.sort(columns, new Comparator<Column>() {
+			public int compare(Column a, Column b){
+				return a.local.compareTo(b.local);
+			}
+		});
+		return columns;
+	}
+
+	private String[] names(Column[] columns){
+		String[] names = new String[columns.length];
+		for(int i=0;i<columns.length;i++){
+			names[i] = registry.prefixedName(columns[i].namespace, columns[i].local);
+		}
+		return names;
+	}
+
+	private static int[][] newCells(int columns,int rows){
+		int[][] cells = new int[columns][rows];
+		for(int i=0;i<columns;i++){
+			Arrays.fill(cells[i], NONE);
+		}
+		return cells;
+	}
+
+	private static int column(Column[] columns,String uri){
+		for(int i=0;i<columns.length;i++){
+			if(columns[i].uri.equals(uri)){
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("no column for "+uri);
+	}
+
+	private long mask(String namespace){
+		BitSet used = new BitSet();
+		registry.use(used, namespace);
+		if(used.length() > 64){
+			throw new IllegalArgumentException("more than 64 namespaces");
+		}
+		return used.isEmpty() ? 0 : used.toLongArray()[0];
+	}
+
+	private static boolean hasType(List<Statement> stmts){
+		for(int i=0;i<stmts.size();i++){
+			if(stmts.get(i).getPredicate().getURI().equals(DC+"type")){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the year of a publication, found the way a treeple finds it: the last 4 digit
+	 * xsd:int (or xsd:integer) literal, in the order of the predicates.
+	 */
+	private static int year(List<Statement> stmts){
+		int year = 0;
+		for(int c=0;c<PUBLICATION_COLUMNS.length;c++){
+			for(int i=0;i<stmts.size();i++){
+				RDFNode object = stmts.get(i).getObject();
+				if(stmts.get(i).getPredicate().getURI().equals(PUBLICATION_COLUMNS[c].uri) && object.isLiteral()
+						&& Treeple.isYear(object.asLiteral())){
+					year = Integer.parseInt(object.asLiteral().getLexicalForm());
+				}
+			}
+		}
+		return year;
+	}
+
+	private static boolean isInt(Literal literal){
+		return literal.getDatatypeURI() != null && literal.getDatatypeURI().startsWith(INT_TYPE);
+	}
+
+	private static int intValue(RDFNode node){
+		if(!node.isLiteral() || !isInt(node.asLiteral())){
+			throw new IllegalArgumentException(node+" is not an integer");
+		}
+		try{
+			return Integer.parseInt(node.asLiteral().getLexicalForm());
+		}catch(NumberFormatException e){
+			throw new IllegalArgumentException(node+" is not an int");
+		}
+	}
+
+	/**
+	 * @return the text of a literal as the treeples write it: a plain literal is its lexical form.
+	 */
+	private static String text(RDFNode node){
+		if(!node.isLiteral()){
+			throw new IllegalArgumentException(node+" is not a literal");
+		}
+		Literal literal = node.asLiteral();
+		String lang = literal.getLanguage();
+		if(literal.getDatatypeURI() == null && (lang == null || lang.length() == 0)){
+			return literal.getLexicalForm();
+		}
+		if(isInt(literal)){
+			throw new IllegalArgumentException(node+" is an integer");
+		}
+		return literal.toString();
+	}
+
+	/**
+	 * A column of the store: a predicate of the constructed vocabulary.
+	 */
+	private static class Column {
+		final String uri;
+		final String namespace;
+		final String local;
+		//holds xsd:int (or xsd:integer) literals.
+		final boolean integer;
+		//stands for the authors.
+		final boolean creator;
+
+		Column(String namespace,String local,boolean integer){
+			this.uri = namespace+local;
+			this.namespace = namespace;
+			this.local = local;
+			this.integer = integer;
+			this.creator = uri.equals(DCT+"creator");
+		}
+	}
+
+	/**
+	 * Hands out one number per distinct String.
+	 */
+	private static class Dictionary {
+		final ArrayList<String> strings = new ArrayList<String>();
+		final HashMap<String,Integer> numbers = new HashMap<String,Integer>();
+
+		int add(String s){
+			Integer number = numbers.get(s);
+			if(number == null){
+				number = strings.size();
+				strings.add(s);
+				numbers.put(s, number);
+			}
+			return number;
+		}
+	}
+
+	/**
+	 * A publication of the store, as the velocity template sees it.
+	 */
+	public class Row implements Publication, Renderable {
+		//the row of the publication.
+		private final int row;
+
+		Row(int row){
+			this.row = row;
+		}
+
+		/**
+		 * @see dynRDFa.Publication#getRdfa()
+		 */
+		public Renderable getRdfa(){
+			return this;
+		}
+
+		/**
+		 * Writes the RDFa markup of the publication to the Writer of the template merge.
+		 * @see org.apache.velocity.runtime.Renderable#render(InternalContextAdapter, Writer)
+		 */
+		public boolean render(InternalContextAdapter context,Writer writer) throws IOException{
+			write(row, writer);
+			return true;
+		}
+
+		/**
+		 * @see dynRDFa.Publication#describe(TripleSink)
+		 */
+		public void describe(TripleSink sink) throws IOException{
+			PublicationStore.this.describe(row, sink);
+		}
+
+		/**
+		 * @see dynRDFa.Publication#getLink()
+		 */
+		public String getLink(){
+			return "http://lpis.csd.auth.gr/paper_details.asp?publicationID="+subjectIds[row];
+		}
+
+		/**
+		 * @see dynRDFa.Publication#getYear()
+		 */
+		public int getYear(){
+			return years[row];
+		}
+
+		/**
+		 * @see dynRDFa.Publication#getRegistry()
+		 */
+		public NamespaceRegistry getRegistry(){
+			return registry;
+		}
+
+		/**
+		 * @see dynRDFa.Publication#getNamespaces()
+		 */
+		public BitSet getNamespaces(){
+			return BitSet.valueOf(new long[]{namespaceMasks[row]});
+		}
+
+		/**
+		 * @return the RDFa markup of the publication as a String.
+		 */
+		@Override
+		public String toString(){
+			StringBuilder str = new StringBuilder(1024);
+			try{
+				write(row, str);
+			}catch(IOException e){
+				//a StringBuilder does not throw IOExceptions.
+				throw new IllegalStateException(e);
+			}
+			return str.toString();
+		}
+	}
+}
@@ -3,8 +3,10 @@ package dynRDFa;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The class parses a text file with a set of queries in it and then 
@@ -43,7 +45,16 @@ public class QueryReader {
 	      
 	      return query;
 	   }
-	   
+
+	   /**
+	    * Get the names of all the queries in the file
+	    * @return The set of query names
+	    */
+	   public Set<String> getQueryNames()
+	   {
+	      return Collections.unmodifiableSet(_queries.keySet());
+	   }
+
 	   /**
 	    * Create a new instance of QueryReader populated with 
 	    * queries from the provided file
@@ -59,30 +70,37 @@ public class QueryReader {
 	      String currLine = null;
 	      StringBuilder currQuery = null;
 	      String currQueryName = null;
-	      while(null != (currLine = reader.readLine()))
+	      try
 	      {
-	         if(currLine.startsWith("#query "))
+	         while(null != (currLine = reader.readLine()))
 	         {
-	            currQueryName = currLine.substring(7).trim();
-	            currQuery = new StringBuilder();
-	         }
-	         else if(currLine.startsWith("#end"))
-	         {
-	            if(!queryMap.containsKey(currQueryName))
+	            if(currLine.startsWith("#query "))
 	            {
-	               queryMap.put(currQueryName, currQuery.toString());
+	               currQueryName = currLine.substring(7).trim();
+	               currQuery = new StringBuilder();
 	            }
-	            currQuery = null;
-	            currQueryName = null;
-	         }
-	         else
-	         {
-	            if(null != currQuery)
+	            else if(currLine.startsWith("#end"))
 	            {
-	               currQuery.append(currLine + " \r\n");
+	               if(!queryMap.containsKey(currQueryName))
+	               {
+	                  queryMap.put(currQueryName, currQuery.toString());
+	               }
+	               currQuery = null;
+	               currQueryName = null;
+	            }
+	            else
+	            {
+	               if(null != currQuery)
+	               {
+	                  currQuery.append(currLine).append(" \r\n");
+	               }
 	            }
 	         }
 	      }
+	      finally
+	      {
+	         reader.close();
+	      }
 	      
 	      return new QueryReader(queryMap);
 	   }
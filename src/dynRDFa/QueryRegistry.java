@@ -0,0 +1,238 @@
+package dynRDFa;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryException;
+import com.hp.hpl.jena.query.QueryFactory;
+
+/**
+ * The QueryRegistry class holds the parsed SPARQL queries of the application. The query files of a
+ * directory (conf/sparqls) are read with a {@link QueryReader} and parsed once, and the resulting
+ * Query objects are handed out by file and query name, so that building a web page does not read or
+ * parse anything. A background thread watches the directory: a query file that is edited, added or
+ * removed is re-parsed and swapped in while the application keeps running. If an edited file does
+ * not parse, the queries it held before are kept.
+ * The Query objects are shared, they must not be modified by the callers.
+ * @author magda
+ */
+public class QueryRegistry {
+	//the directory of the query files.
+	public static final String QUERY_DIR = "conf/sparqls";
+	//the glob of the query files in the directory, editor backups and the like are ignored.
+	private static final String QUERY_FILES = "*.txt";
+	//the registry of the query directory, loaded and watched on first use.
+	private static QueryRegistry shared;
+	//the directory this registry loads and watches.
+	private Path directory;
+	//file (absolute path) to its queries, by name.
+	private ConcurrentHashMap<String,Map<String,Query>> files;
+	//the watch service of the directory, null when it is not watched.
+	private WatchService watchService;
+	private Thread watcher;
+
+	/**
+	 * Class constructor: reads and parses every query file (*.txt) of the directory. A file that does
+	 * not parse is reported and left out, the queries of the other files are kept.
+	 * @param directory the directory of the query files.
+	 * @throws IOException when the directory or one of its files cannot be read.
+	 */
+	public QueryRegistry(String directory) throws IOException{
+		this.directory = Paths.get(directory).toAbsolutePath().normalize();
+		files = new ConcurrentHashMap<String,Map<String,Query>>();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, QUERY_FILES);
+		try{
+			for(Path file : stream){
+				if(Files.isRegularFile(file)){
+					try {
+						files.put(file.toString(), parse(file));
+					} catch (QueryException e) {
+						System.out.println("Skipping the queries of "+file+": "+e.getMessage());
+					}
+				}
+			}
+		}finally{
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return the registry of {@link #QUERY_DIR}. It is created on first use, and then watches the
+	 * directory for the rest of the run.
+	 * @throws IOException when the query files cannot be read.
+	 */
+	public static synchronized QueryRegistry getInstance() throws IOException{
+		if(shared == null){
+			shared = new QueryRegistry(QUERY_DIR);
+			shared.startWatching();
+		}
+		return shared;
+	}
+
+	/**
+	 * @param file a query file, e.g. conf/sparqls/select_all_0.txt
+	 * @param name the name of the query in the file, e.g. main-select
+	 * @return the parsed query, or null if the file has no query of that name.
+	 * @throws IOException when the file is not in the directory of the registry and cannot be read.
+	 */
+	public Query getQuery(String file,String name) throws IOException{
+		Path path = Paths.get(file).toAbsolutePath().normalize();
+		Map<String,Query> queries = files.get(path.toString());
+		if(queries == null){
+			//a file outside the watched directory, or one created before the watcher noticed it.
+			queries = parse(path);
+			Map<String,Query> previous = files.putIfAbsent(path.toString(), queries);
+			if(previous != null){
+				queries = previous;
+			}
+		}
+		return queries.get(name);
+	}
+
+	/**
+	 * Reads and parses the queries of a file.
+	 * @param file a query file.
+	 * @return its queries, by name.
+	 * @throws IOException when the file cannot be read.
+	 */
+	private Map<String,Query> parse(Path file) throws IOException{
+		QueryReader queryReader = QueryReader.createQueryReader(file.toString());
+		HashMap<String,Query> queries = new HashMap<String,Query>();
+		for(String name : queryReader.getQueryNames()){
+			Query query = QueryFactory.create(queryReader.getQuery(name));
+			//fixes the projection now, so that the query is not modified when it is executed.
+			query.setResultVars();
+			queries.put(name, query);
+		}
+		return Collections.unmodifiableMap(queries);
+	}
+
+	/**
+	 * Starts a daemon thread that re-parses the files of the directory as they change.
+	 */
+	public synchronized void startWatching(){
+		if(watcher != null){
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			//the queries are still served, they are just not reloaded.
+			e.printStackTrace();
+			watchService = null;
+			return;
+		}
+		watcher = new Thread(new Runnable() {
+			public void run(){
+				watch();
+			}
+		}, "QueryRegistry-"+directory.getFileName());
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops the thread that watches the directory.
+	 */
+	public synchronized void stopWatching(){
+		if(watcher == null){
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		watcher = null;
+		watchService = null;
+	}
+
+	/**
+	 * The loop of the watcher thread: waits for changes of the directory and reloads the files.
+	 */
+	private void watch(){
+		WatchService service = watchService;
+		try {
+			while(true){
+				WatchKey key = service.take();
+				for(WatchEvent<?> event : key.pollEvents()){
+					if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+						//events were lost, every file is checked again.
+						reloadAll();
+						continue;
+					}
+					Path file = directory.resolve((Path) event.context());
+					if(file.getFileName().toString().endsWith(".txt")){
+						reload(file);
+					}
+				}
+				if(!key.reset()){
+					//the directory is gone, the queries loaded so far are kept.
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			//stopWatching() was called.
+		}
+	}
+
+	/**
+	 * Re-parses a file of the directory and swaps its queries in.
+	 * @param file a file that was created, modified or deleted.
+	 */
+	private void reload(Path file){
+		if(!Files.isRegularFile(file)){
+			files.remove(file.toString());
+			return;
+		}
+		try {
+			files.put(file.toString(), parse(file));
+		} catch (IOException e) {
+			//e.g. the file is still being written, the next event reloads it.
+			e.printStackTrace();
+		} catch (QueryException e) {
+			System.out.println("Keeping the previous queries of "+file+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Re-parses every file of the directory.
+	 */
+	private void reloadAll(){
+		for(String file : files.keySet()){
+			reload(Paths.get(file));
+		}
+		try {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(directory, QUERY_FILES);
+			try{
+				for(Path file : stream){
+					if(!files.containsKey(file.toString())){
+						reload(file);
+					}
+				}
+			}finally{
+				stream.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package dynRDFa;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.Renderable;
+
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * The RDFaWriter class serializes a treeple as an RDFa enriched html block. The markup is written
+ * straight to an Appendable (e.g. the Writer of a velocity merge), piece by piece, so no intermediate
+ * Strings are built for a publication. The namespace prefix of a predicate is a hash lookup in the
+ * {@link NamespaceRegistry}, the treeple of an author is looked up once per author. Through {@link Block}, a velocity template
+ * can stream a treeple into the html document it is rendering.
+ * @author magda
+ */
+public class RDFaWriter {
+	//marks the typed literals (xsd:int, xsd:integer) whose value is written instead of their lexical form.
+	private static final String INT_TYPE = "^^http://www.w3.org/2001/XMLSchema#int";
+	//the namespace of the class of the authors.
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+	//the type of the publications, see typeof="bibo:Document".
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	private static final String BIBO_DOCUMENT = "http://purl.org/ontology/bibo/Document";
+
+	/**
+	 * All the information that is related to a publication is wrapped around RDFa tags depending on its type.
+	 * Resources found in the objectLookup (authors) are nested in a rel span, literals become property spans,
+	 * objects marked as N/A are left out.
+	 * @param treeple the treeple of a publication.
+	 * @param out where the markup is written to.
+	 * @throws IOException when the Appendable cannot be written.
+	 */
+	public static void write(Treeple treeple,Appendable out) throws IOException{
+		//the publication hyperlink is used as a subject for the RDF content chunks in the html document.
+		String subject = treeple.getSubject().toString();
+		out.append("<div about=\"http://lpis.csd.auth.gr/paper_details.asp?publicationID=")
+			.append(subject, subject.lastIndexOf('/')+1, subject.length())
+			.append("\" typeof=\"bibo:Document\">").append('\n'); //RDFa S
+		Map<Resource,Treeple> objectLookup = treeple.getObjectLookup();
+		NamespaceRegistry registry = treeple.getRegistry();
+		//iterate through predicates and objects
+		for(int k=0;k<treeple.getPredicateCount();k++){
+			Property key = treeple.getPredicate(k);
+			int count = treeple.getObjectCount(k);
+			//the prefixed name of the predicate, resolved once
+			String name = registry.prefixedName(key.getNameSpace(), key.getLocalName());
+			for(int i=0;i<count;i++){
+				RDFNode node = treeple.getObject(k, i);
+				Treeple author = objectLookup == null ? null : objectLookup.get(node);
+				//the statement object is a Resource, it is consequently contained in objectLookup
+				if(author != null){
+					out.append("<span rel=\"").append(name).append("\">").append('\n'); //RDFa P
+					writeAuthor(author, out);
+					out.append("</span>").append(", ").append('\n');
+				}
+				else{
+					String text = text(node);
+					//do not produce Predicates and Objects for objects marked as N/A
+					if(text.contains("N/A")){
+						continue;
+					}
+					out.append("<span property=\"").append(name).append("\">"); //RDFa P
+					//id and year not as typed literals in NTriple syntax
+					if(text.contains(INT_TYPE)){
+						out.append(String.valueOf(node.asLiteral().getValue())); //RDFa O
+					}
+					else{
+						out.append(text); //RDFa O
+					}
+					out.append("</span>").append(", ").append('\n');
+				}
+			}
+		}
+		out.append("</div>"); //RDFa P
+	}
+
+	/**
+	 * Hands the statements of the markup {@link #write(Treeple, Appendable)} writes to a sink: the same
+	 * subject, the same predicates and objects, N/A objects left out and integers as values. An author
+	 * is a blank node, labelled by the last part of its subject (see {@link #authorNode(Resource)}).
+	 * @param treeple the treeple of a publication.
+	 * @param sink receives the statements.
+	 * @throws IOException when the sink cannot write a statement.
+	 */
+	public static void describe(Treeple treeple,TripleSink sink) throws IOException{
+		String subject = treeple.getLink();
+		sink.resource(subject, RDF_TYPE, BIBO_DOCUMENT);
+		Map<Resource,Treeple> objectLookup = treeple.getObjectLookup();
+		for(int k=0;k<treeple.getPredicateCount();k++){
+			Property key = treeple.getPredicate(k);
+			for(int i=0;i<treeple.getObjectCount(k);i++){
+				RDFNode node = treeple.getObject(k, i);
+				Treeple author = objectLookup == null ? null : objectLookup.get(node);
+				if(author != null){
+					String blank = authorNode(author.getSubject());
+					sink.resource(subject, key.getURI(), blank);
+					describeAuthor(author, blank, sink);
+				}
+				else{
+					String text = text(node);
+					if(text.contains("N/A")){
+						continue;
+					}
+					sink.literal(subject, key.getURI(), text.contains(INT_TYPE) ? String.valueOf(node.asLiteral().getValue()) : text);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The label of the blank node of an author, the same for a treeple and for a row of a
+	 * {@link PublicationStore}, so that both give the same statements for a page.
+	 * @param author the subject of the author, e.g. .../authors/12
+	 * @return e.g. _:author12
+	 */
+	static String authorNode(Resource author){
+		String id = author.toString();
+		return "_:author"+id.substring(id.lastIndexOf('/')+1);
+	}
+
+	/**
+	 * Hands the statements of the markup of an author to a sink, see {@link #writeAuthor(Treeple, Appendable)}.
+	 */
+	private static void describeAuthor(Treeple author,String blank,TripleSink sink) throws IOException{
+		for(int i=0;i<author.getPredicateCount();i++){
+			String text = author.getObjectCount(i) == 1 ? text(author.getObject(i, 0)) : joined(author, i);
+			if(text.contains(INT_TYPE)){
+				text = Integer.toString(Integer.parseInt(text.substring(0, text.lastIndexOf('^')-1))-80000);
+			}
+			sink.literal(blank, author.getPredicate(i).getURI(), text);
+		}
+	}
+
+	/**
+	 * Writes the RDFa block of an author on its own, as the heading of the author's page.
+	 * @param author the treeple of the author.
+	 * @param out where the markup is written to.
+	 * @throws IOException when the Appendable cannot be written.
+	 */
+	public static void writePerson(Treeple author,Appendable out) throws IOException{
+		out.append("<div about=\"").append(author.getSubject().toString())
+			.append("\" typeof=\"").append(author.getRegistry().prefixedName(FOAF, "Person")).append("\">").append('\n'); //RDFa S
+		writeAuthor(author, out);
+		out.append("</div>");
+	}
+
+	/**
+	 * Writes the predicates and objects of a statement object that is a Resource (an author).
+	 * @param author the treeple of the author.
+	 * @param out where the markup is written to.
+	 * @throws IOException when the Appendable cannot be written.
+	 */
+	private static void writeAuthor(Treeple author,Appendable out) throws IOException{
+		NamespaceRegistry registry = author.getRegistry();
+		for(int i=0;i<author.getPredicateCount();i++){
+			Property k = author.getPredicate(i);
+			out.append("<span property=\"").append(registry.prefixedName(k.getNameSpace(), k.getLocalName())); //RDFa P
+			//an author holds a single object per predicate; otherwise fall back to the list notation.
+			String text = author.getObjectCount(i) == 1 ? text(author.getObject(i, 0)) : joined(author, i);
+			//Author ID case. @content can be used to indicate a plain literal
+			if(text.contains(INT_TYPE)){
+				out.append("\" content=\"")
+					.append(Integer.toString(Integer.parseInt(text.substring(0, text.lastIndexOf('^')-1))-80000))
+					.append("\">");
+			}
+			else{
+				out.append("\">").append(text); //RDFa O
+			}
+			out.append(" </span>").append('\n');
+		}
+	}
+
+	/**
+	 * @param treeple a treeple.
+	 * @param i the position of a predicate that holds several objects.
+	 * @return the objects as Jena prints them, separated by commas (as in a printed list).
+	 */
+	private static String joined(Treeple treeple,int i){
+		StringBuilder str = new StringBuilder();
+		for(int j=0;j<treeple.getObjectCount(i);j++){
+			if(j > 0){
+				str.append(", ");
+			}
+			str.append(treeple.getObject(i, j));
+		}
+		return str.toString();
+	}
+
+	/**
+	 * @param node a statement object.
+	 * @return the node as Jena prints it: a plain literal is its lexical form, which is returned
+	 * without building a new String.
+	 */
+	private static String text(RDFNode node){
+		if(node.isLiteral()){
+			String lang = node.asLiteral().getLanguage();
+			if(node.asLiteral().getDatatypeURI() == null && (lang == null || lang.length() == 0)){
+				return node.asLiteral().getLexicalForm();
+			}
+		}
+		return node.toString();
+	}
+
+	/**
+	 * A Block lets a velocity template stream a treeple: when the template refers to it, velocity
+	 * calls {@link #render(InternalContextAdapter, Writer)} with the Writer of the html document.
+	 */
+	public static class Block implements Renderable {
+		//the treeple to render.
+		private Treeple treeple;
+
+		/**
+		 * Class constructor.
+		 * @param treeple the treeple to render.
+		 */
+		public Block(Treeple treeple){
+			this.treeple = treeple;
+		}
+
+		/**
+		 * Writes the RDFa markup of the treeple to the Writer of the template merge.
+		 * @see org.apache.velocity.runtime.Renderable#render(InternalContextAdapter, Writer)
+		 */
+		public boolean render(InternalContextAdapter context,Writer writer) throws IOException{
+			write(treeple, writer);
+			return true;
+		}
+
+		/**
+		 * @return the RDFa markup of the treeple as a String.
+		 */
+		@Override
+		public String toString(){
+			return treeple.toString();
+		}
+	}
+
+	/**
+	 * A Person lets a velocity template stream the RDFa block of an author, see {@link #writePerson(Treeple, Appendable)}.
+	 */
+	public static class Person implements Renderable {
+		//the treeple of the author.
+		private Treeple author;
+
+		/**
+		 * Class constructor.
+		 * @param author the treeple of the author.
+		 */
+		public Person(Treeple author){
+			this.author = author;
+		}
+
+		/**
+		 * Writes the RDFa markup of the author to the Writer of the template merge.
+		 * @see org.apache.velocity.runtime.Renderable#render(InternalContextAdapter, Writer)
+		 */
+		public boolean render(InternalContextAdapter context,Writer writer) throws IOException{
+			writePerson(author, writer);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package dynRDFa;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The RunMetrics class records where the time of a generation run goes. For every stage (D2RQ init,
+ * construct, every select, createTreeples, setTreepleStructures, render, write) it adds up the wall
+ * time and the bytes allocated by the threads that ran it, and it keeps the counts of the run (triples,
+ * publications, authors) and the size of every page. The figures are written as a JSON run report and
+ * exposed through JMX (dynRDFa:type=RunMetrics).
+ * There is one instance per process. It records nothing until it is enabled, so the instrumented code
+ * costs a field read when the metrics are off.
+ * @author magda
+ */
+public class RunMetrics implements RunMetricsMXBean {
+	//the instance of the process.
+	private static final RunMetrics INSTANCE = new RunMetrics();
+	//the stage returned while the metrics are off.
+	private static final Stage DISABLED = new Stage(null, null);
+	//the allocated bytes of a thread, if the JVM can measure them.
+	private com.sun.management.ThreadMXBean allocation;
+	private volatile boolean enabled;
+	//stage to its wall time in nanoseconds, and to its allocated bytes.
+	private ConcurrentHashMap<String,AtomicLong> stageNanos;
+	private ConcurrentHashMap<String,AtomicLong> stageBytes;
+	//the counts of the run.
+	private ConcurrentHashMap<String,AtomicLong> counts;
+	//page to its size in bytes.
+	private ConcurrentHashMap<String,AtomicLong> pageBytes;
+	//when the run started.
+	private long started;
+
+	/**
+	 * Class constructor: initializes the private fields.
+	 */
+	private RunMetrics(){
+		stageNanos = new ConcurrentHashMap<String,AtomicLong>();
+		stageBytes = new ConcurrentHashMap<String,AtomicLong>();
+		counts = new ConcurrentHashMap<String,AtomicLong>();
+		pageBytes = new ConcurrentHashMap<String,AtomicLong>();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if(sunThreads.isThreadAllocatedMemorySupported()){
+				sunThreads.setThreadAllocatedMemoryEnabled(true);
+				allocation = sunThreads;
+			}
+		}
+	}
+
+	/**
+	 * @return the metrics of the process.
+	 */
+	public static RunMetrics getInstance(){
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts recording and registers the metrics with the platform MBeanServer.
+	 */
+	public synchronized void enable(){
+		if(enabled){
+			return;
+		}
+		started = System.currentTimeMillis();
+		enabled = true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("dynRDFa:type=RunMetrics");
+			if(!server.isRegistered(name)){
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			//the report is still written.
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return true if the metrics are recorded.
+	 */
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	/**
+	 * Starts timing a stage on the current thread.
+	 * @param name the stage, e.g. "select type1"
+	 * @return the running stage, to be stopped by the same thread.
+	 */
+	public Stage start(String name){
+		if(!enabled){
+			return DISABLED;
+		}
+		return new Stage(this, name);
+	}
+
+	/**
+	 * Adds time and allocated bytes to a stage, for stages that are measured piecewise.
+	 * @param name the stage.
+	 * @param nanos wall time in nanoseconds.
+	 * @param bytes allocated bytes.
+	 */
+	public void add(String name,long nanos,long bytes){
+		if(!enabled){
+			return;
+		}
+		total(stageNanos, name).addAndGet(nanos);
+		total(stageBytes, name).addAndGet(bytes);
+	}
+
+	/**
+	 * Sets a count of the run.
+	 * @param name e.g. "triples"
+	 * @param value the count.
+	 */
+	public void count(String name,long value){
+		if(!enabled){
+			return;
+		}
+		total(counts, name).set(value);
+	}
+
+	/**
+	 * Records the size of a generated page.
+	 * @param page e.g. type1.html
+	 * @param bytes its size.
+	 */
+	public void page(String page,long bytes){
+		if(!enabled){
+			return;
+		}
+		total(pageBytes, page).set(bytes);
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, or 0 if the JVM cannot tell.
+	 */
+	public long allocatedBytes(){
+		if(!enabled || allocation == null){
+			return 0;
+		}
+		return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the running total of a name, created on first use.
+	 */
+	private static AtomicLong total(ConcurrentHashMap<String,AtomicLong> totals,String name){
+		AtomicLong total = totals.get(name);
+		if(total == null){
+			AtomicLong created = new AtomicLong();
+			total = totals.putIfAbsent(name, created);
+			if(total == null){
+				total = created;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return a sorted copy of the totals, divided by the given unit.
+	 */
+	private static Map<String,Long> snapshot(ConcurrentHashMap<String,AtomicLong> totals,long unit){
+		TreeMap<String,Long> copy = new TreeMap<String,Long>();
+		for(Map.Entry<String,AtomicLong> entry : totals.entrySet()){
+			copy.put(entry.getKey(), entry.getValue().get()/unit);
+		}
+		return copy;
+	}
+
+	public Map<String,Long> getStageMillis(){
+		return snapshot(stageNanos, 1000000);
+	}
+
+	public Map<String,Long> getStageAllocatedBytes(){
+		return snapshot(stageBytes, 1);
+	}
+
+	public Map<String,Long> getCounts(){
+		return snapshot(counts, 1);
+	}
+
+	public Map<String,Long> getPageBytes(){
+		return snapshot(pageBytes, 1);
+	}
+
+	public String getReport(){
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"started\": ").append(started);
+		json.append(",\n  \"millis\": ").append(System.currentTimeMillis()-started);
+		json.append(",\n  \"stages\": {");
+		Map<String,Long> millis = getStageMillis();
+		Map<String,Long> bytes = getStageAllocatedBytes();
+		String separator = "\n";
+		for(Map.Entry<String,Long> entry : millis.entrySet()){
+			json.append(separator).append("    ").append(quote(entry.getKey())).append(": {\"millis\": ").append(entry.getValue());
+			json.append(", \"allocatedBytes\": ").append(bytes.get(entry.getKey())).append("}");
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"counts\": ").append(object(getCounts()));
+		json.append(",\n  \"pageBytes\": ").append(object(getPageBytes()));
+		json.append("\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Writes the run report.
+	 * @param file the JSON file.
+	 * @throws IOException when the file cannot be written.
+	 */
+	public void writeReport(String file) throws IOException{
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try{
+			out.write(getReport());
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the map as a JSON object on one line.
+	 */
+	private static String object(Map<String,Long> values){
+		StringBuilder json = new StringBuilder("{");
+		for(Map.Entry<String,Long> entry : values.entrySet()){
+			if(json.length()>1){
+				json.append(", ");
+			}
+			json.append(quote(entry.getKey())).append(": ").append(entry.getValue());
+		}
+		return json.append("}").toString();
+	}
+
+	/**
+	 * @return the string as a JSON string.
+	 */
+	private static String quote(String s){
+		StringBuilder json = new StringBuilder("\"");
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				json.append('\\').append(c);
+			}
+			else if(c < 0x20){
+				json.append(String.format("\\u%04x", (int) c));
+			}
+			else{
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	/**
+	 * A stage running on a thread: remembers when it started and how much the thread had allocated.
+	 */
+	public static class Stage {
+		private RunMetrics metrics;
+		private String name;
+		private long startNanos;
+		private long startBytes;
+
+		/**
+		 * Class constructor: starts the stage.
+		 * @param metrics the metrics the stage is added to, null for the disabled stage.
+		 * @param name the stage.
+		 */
+		private Stage(RunMetrics metrics,String name){
+			this.metrics = metrics;
+			this.name = name;
+			if(metrics != null){
+				startBytes = metrics.allocatedBytes();
+				startNanos = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Stops the stage and adds its time and allocated bytes to the metrics.
+		 */
+		public void stop(){
+			if(metrics == null){
+				return;
+			}
+			long nanos = System.nanoTime()-startNanos;
+			metrics.add(name, nanos, metrics.allocatedBytes()-startBytes);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package dynRDFa;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link RunMetrics}, registered as dynRDFa:type=RunMetrics.
+ * @author magda
+ */
+public interface RunMetricsMXBean {
+
+	/**
+	 * @return the wall time of every stage so far, in milliseconds.
+	 */
+	public Map<String,Long> getStageMillis();
+
+	/**
+	 * @return the bytes allocated by every stage so far.
+	 */
+	public Map<String,Long> getStageAllocatedBytes();
+
+	/**
+	 * @return the counts of the run, e.g. triples, publications, authors.
+	 */
+	public Map<String,Long> getCounts();
+
+	/**
+	 * @return the size of every generated page, in bytes.
+	 */
+	public Map<String,Long> getPageBytes();
+
+	/**
+	 * @return the run report, as JSON.
+	 */
+	public String getReport();
+}
@@ -0,0 +1,82 @@
+package dynRDFa;
+
+import java.util.HashMap;
+
+/**
+ * The RunOptions class holds the command line options of a generation run. Options are
+ * given in the form --name or --name=value, e.g.: --snapshot=conf/snapshot/model.nt.gz
+ * An option given without a value is simply switched on.
+ * @author magda
+ */
+public class RunOptions {
+	//option values, hashed by option name (without the leading dashes).
+	private HashMap<String,String> values;
+
+	/**
+	 * Class constructor: initializes the private fields.
+	 */
+	private RunOptions(){
+		values = new HashMap<String,String>();
+	}
+
+	/**
+	 * Parses the arguments of the main method.
+	 * @param args the command line arguments.
+	 * @return a RunOptions object holding all the options that were found.
+	 */
+	public static RunOptions parse(String[] args){
+		RunOptions options = new RunOptions();
+		for(int i=0;i<args.length;i++){
+			String arg = args[i];
+			if(!arg.startsWith("--")){
+				System.out.println("Ignoring unknown argument: "+arg);
+				continue;
+			}
+			int eq = arg.indexOf('=');
+			if(eq<0){
+				//switch, no value
+				options.values.put(arg.substring(2), null);
+			}
+			else{
+				options.values.put(arg.substring(2,eq), arg.substring(eq+1));
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * @param name the name of the option.
+	 * @return true if the option was given, with or without a value.
+	 */
+	public boolean isSet(String name){
+		return values.containsKey(name);
+	}
+
+	/**
+	 * @param name the name of the option.
+	 * @param defaultValue returned when the option was not given, or was given without a value.
+	 * @return the value of the option.
+	 */
+	public String get(String name,String defaultValue){
+		String value = values.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * @param name the name of the option.
+	 * @param defaultValue returned when the option was not given, or its value is not a number.
+	 * @return the value of the option as an int.
+	 */
+	public int getInt(String name,int defaultValue){
+		String value = values.get(name);
+		if(value == null){
+			return defaultValue;
+		}
+		try{
+			return Integer.parseInt(value.trim());
+		}catch(NumberFormatException e){
+			System.out.println("Option --"+name+" expects a number, using "+defaultValue);
+			return defaultValue;
+		}
+	}
+}
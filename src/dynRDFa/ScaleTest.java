@@ -0,0 +1,200 @@
+package dynRDFa;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * The ScaleTest class runs the generation pipeline on synthetic datasets of growing size (see
+ * {@link DatasetGenerator}) and records, for every stage, the wall time and the peak heap. The peak
+ * heap of a stage is the sum of the peak usage of the heap memory pools while the stage runs; a
+ * garbage collection is requested before every stage, so that the figure mostly reflects what the
+ * stage itself keeps alive. The stages are: generating the constructed model, building the
+ * {@link ModelIndex}, and for every page building its exportableModel and rendering it. With --columnar
+ * the pages are built from a {@link PublicationStore} instead of treeples. At the end the constructed
+ * model is released ({@link ModelMaker#releaseModel()}) and the heap in use after a garbage collection
+ * is recorded before and after the release, along with whether the model itself was collected.
+ * @author magda
+ */
+public class ScaleTest {
+	//heap memory pools, their peak usage is reset before every stage.
+	private List<MemoryPoolMXBean> heapPools;
+	//one line per stage: scale, publications, stage, milliseconds, peak heap in bytes.
+	private List<String> results;
+	//if set, the pages are built from the rows of a PublicationStore.
+	private boolean columnar;
+
+	/**
+	 * Class constructor: initializes the private fields.
+	 * @param columnar if true, the pages are built from the rows of a PublicationStore, like --columnar does.
+	 */
+	public ScaleTest(boolean columnar){
+		this.columnar = columnar;
+		heapPools = new ArrayList<MemoryPoolMXBean>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP){
+				heapPools.add(pool);
+			}
+		}
+		results = new ArrayList<String>();
+	}
+
+	/**
+	 * Runs the pipeline on a dataset of the given size.
+	 * @param scale the multiple of the base dataset, used in the report.
+	 * @param generator the generator, set up for the size of this run.
+	 * @param publications the number of publications of the dataset.
+	 * @param outputDir the directory of the html documents.
+	 */
+	public void run(int scale,final DatasetGenerator generator,int publications,String outputDir){
+		final ModelMaker modelMaker = new ModelMaker();
+		final Model[] model = new Model[1];
+		stage(scale, publications, "generate", new Runnable() {
+			public void run(){
+				model[0] = generator.generateModel();
+			}
+		});
+		modelMaker.setResultsModel(model[0]);
+		stage(scale, publications, "index", new Runnable() {
+			public void run(){
+				modelMaker.getIndex();
+			}
+		});
+		final PublicationStore[] store = new PublicationStore[1];
+		if(columnar){
+			stage(scale, publications, "store", new Runnable() {
+				public void run(){
+					store[0] = modelMaker.buildStore();
+				}
+			});
+		}
+		final VelociDataModel vdm = new VelociDataModel(VelociDataModel.TEMPLATE_FILE, outputDir, false);
+		vdm.vdmInitializer();
+		for(int page=0;page<=5;page++){
+			final int choice = page;
+			final ExportableModel[] em = new ExportableModel[1];
+			stage(scale, publications, "export type"+choice, new Runnable() {
+				public void run(){
+					em[0] = store[0] != null ? modelMaker.exportRows(choice, store[0]) : modelMaker.exportPage(choice);
+				}
+			});
+			stage(scale, publications, "render type"+choice, new Runnable() {
+				public void run(){
+					vdm.builder(em[0]);
+				}
+			});
+		}
+		//all the pages from one run of the select query, to compare with the sum of the export stages.
+		stage(scale, publications, "export partitioned", new Runnable() {
+			public void run(){
+				modelMaker.exportPartitioned(new int[]{0, 1, 2, 3, 4, 5}, store[0]);
+			}
+		});
+		//only the model maker (and the store, if any) hold the model from here on.
+		WeakReference<Model> released = new WeakReference<Model>(model[0]);
+		model[0] = null;
+		long before = usedAfterGc();
+		if(store[0] != null){
+			store[0].detach();
+		}
+		modelMaker.releaseModel();
+		long after = usedAfterGc();
+		boolean collected = released.get() == null;
+		System.out.println(String.format("x%-4d %8d publications  %-18s %8d MB before %8d MB after, model %s", scale, publications, "release",
+				before>>20, after>>20, collected ? "collected" : "still reachable"));
+		results.add(scale+","+publications+",release before,0,"+before);
+		results.add(scale+","+publications+",release after,0,"+after);
+	}
+
+	/**
+	 * @return the heap in use after a garbage collection, in bytes.
+	 */
+	private long usedAfterGc(){
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		//one request may leave objects with finalizers or weak references behind.
+		for(int i=0;i<3;i++){
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Runs a stage and records its wall time and peak heap.
+	 */
+	private void stage(int scale,int publications,String name,Runnable stage){
+		System.gc();
+		for(int i=0;i<heapPools.size();i++){
+			heapPools.get(i).resetPeakUsage();
+		}
+		long start = System.nanoTime();
+		stage.run();
+		long millis = (System.nanoTime()-start)/1000000;
+		long peak = 0;
+		for(int i=0;i<heapPools.size();i++){
+			peak += heapPools.get(i).getPeakUsage().getUsed();
+		}
+		System.out.println(String.format("x%-4d %8d publications  %-18s %8d ms %8d MB", scale, publications, name, millis, peak>>20));
+		results.add(scale+","+publications+","+name+","+millis+","+peak);
+	}
+
+	/**
+	 * Writes the recorded figures as comma separated values.
+	 * @param file the report file.
+	 * @throws IOException when the file cannot be written.
+	 */
+	public void writeReport(String file) throws IOException{
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try{
+			out.write("scale,publications,stage,millis,peakHeapBytes\n");
+			for(int i=0;i<results.size();i++){
+				out.write(results.get(i)+"\n");
+			}
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Main method.
+	 * @param args options: --scales=1,10,100 multiples of the base dataset (--publications=n, default 373),
+	 * --output=dir for the html documents (default conf/scale), --report=file writes the figures as CSV,
+	 * --columnar builds the pages from a PublicationStore, and the options of {@link DatasetGenerator#main(String[])} that shape the dataset.
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException{
+		RunOptions options = RunOptions.parse(args);
+		//suppress log4j warnings
+		org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.OFF);
+		int basePublications = options.getInt("publications", 373);
+		String[] scales = options.get("scales", "1,10,100").split(",");
+		String outputDir = options.get("output", "conf/scale");
+		if(!new File(outputDir).isDirectory() && !new File(outputDir).mkdirs()){
+			throw new IOException("Cannot create directory "+outputDir);
+		}
+		ScaleTest test = new ScaleTest(options.isSet("columnar"));
+		for(int i=0;i<scales.length;i++){
+			int scale = Integer.parseInt(scales[i].trim());
+			DatasetGenerator generator = new DatasetGenerator();
+			generator.configure(options);
+			//the number of authors grows along with the publications.
+			generator.setPublications(basePublications*scale);
+			test.run(scale, generator, basePublications*scale, outputDir);
+		}
+		String report = options.get("report", null);
+		if(report != null){
+			test.writeReport(report);
+		}
+	}
+}
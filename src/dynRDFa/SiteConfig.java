@@ -0,0 +1,115 @@
+package dynRDFa;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The SiteConfig class holds what sets the web pages of a research group apart: the D2RQ mapping file
+ * (and so the database), the directory of the queries (construct.txt and the select queries), the
+ * template and the output directory. The sites of a batch (see {@link BatchRunner}) are read from a
+ * properties file:
+ * <pre>
+ * sites=lpis,isl
+ * lpis.mapping=conf/pubsmap.ttl
+ * lpis.queries=conf/sparqls
+ * lpis.template=conf/template.vm
+ * lpis.output=conf/webpages
+ * isl.mapping=conf/isl/pubsmap.ttl
+ * isl.output=conf/isl/webpages
+ * isl.jdbc=true
+ * </pre>
+ * A missing key takes the value of the single site setup (conf/pubsmap.ttl, conf/sparqls, conf/template.vm),
+ * and the output directory defaults to conf/webpages/name, where the batch copies the static files of
+ * conf/webpages. With jdbc=true the model of the site is read
+ * with a {@link JdbcModelLoader} instead of D2RQ.
+ * @author magda
+ */
+public class SiteConfig {
+	private String name;
+	private String mappingFile;
+	private String queryDir;
+	private String templateFile;
+	private String outputDir;
+	private boolean jdbc;
+
+	/**
+	 * Class constructor.
+	 * @param name the name of the site, used in the report.
+	 * @param mappingFile the D2RQ mapping file.
+	 * @param queryDir the directory of the queries.
+	 * @param templateFile the template.
+	 * @param outputDir the directory of the generated html documents.
+	 * @param jdbc if true the model is read with a JdbcModelLoader.
+	 */
+	public SiteConfig(String name,String mappingFile,String queryDir,String templateFile,String outputDir,boolean jdbc){
+		this.name = name;
+		this.mappingFile = mappingFile;
+		this.queryDir = queryDir;
+		this.templateFile = templateFile;
+		this.outputDir = outputDir;
+		this.jdbc = jdbc;
+	}
+
+	/**
+	 * Reads the sites of a batch.
+	 * @param file the properties file, see the class description.
+	 * @return the sites, in the order of the sites key.
+	 * @throws IOException when the file cannot be read or has no sites key.
+	 */
+	public static List<SiteConfig> read(String file) throws IOException{
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try{
+			properties.load(in);
+		}finally{
+			in.close();
+		}
+		String sites = properties.getProperty("sites");
+		if(sites == null || sites.trim().isEmpty()){
+			throw new IOException(file+" has no sites");
+		}
+		List<SiteConfig> configs = new ArrayList<SiteConfig>();
+		String[] names = sites.split(",");
+		for(int i=0;i<names.length;i++){
+			String name = names[i].trim();
+			if(name.isEmpty()){
+				continue;
+			}
+			configs.add(new SiteConfig(name,
+					properties.getProperty(name+".mapping", ModelMaker.MAPPING_FILE),
+					properties.getProperty(name+".queries", QueryRegistry.QUERY_DIR),
+					properties.getProperty(name+".template", VelociDataModel.TEMPLATE_FILE),
+					properties.getProperty(name+".output", VelociDataModel.OUTPUT_DIR+"/"+name),
+					Boolean.parseBoolean(properties.getProperty(name+".jdbc", "false"))));
+		}
+		return configs;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	public String getMappingFile(){
+		return mappingFile;
+	}
+
+	public String getQueryDir(){
+		return queryDir;
+	}
+
+	public String getTemplateFile(){
+		return templateFile;
+	}
+
+	public String getOutputDir(){
+		return outputDir;
+	}
+
+	public boolean isJdbc(){
+		return jdbc;
+	}
+}
@@ -0,0 +1,118 @@
+package dynRDFa;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.TDBFactory;
+
+/**
+ * The TdbModelStore class keeps the constructed model in a Jena TDB store in a local directory
+ * (e.g. conf/tdb), instead of an in-memory graph. TDB keeps the triples in memory-mapped index files,
+ * so the size of the model is not bound by the heap, and the model outlives the run: like a
+ * {@link ModelSnapshot}, the store is reused as long as the fingerprint of the mapping file, the
+ * CONSTRUCT query and the database stays the same. The model of the store is an ordinary Jena Model,
+ * the select queries and listStatements calls run on it unchanged.
+ * The fingerprint is removed before the store is rebuilt and written back after the triples are
+ * synced to disk, so a store left behind by an interrupted run is never reused.
+ * @author magda
+ */
+public class TdbModelStore {
+	//the directory of the store.
+	private File dir;
+	//the properties file that holds the fingerprint of the store.
+	private File infoFile;
+	private Dataset dataset;
+
+	/**
+	 * Class constructor.
+	 * @param dir the directory of the store, e.g. conf/tdb. It is created if it does not exist.
+	 */
+	public TdbModelStore(String dir){
+		this.dir = new File(dir);
+		this.infoFile = new File(dir, "fingerprint.properties");
+	}
+
+	/**
+	 * @return the model of the store, opened on first use.
+	 * @throws IOException when the directory of the store cannot be created.
+	 */
+	public synchronized Model getModel() throws IOException{
+		if(dataset == null){
+			if(!dir.isDirectory() && !dir.mkdirs()){
+				throw new IOException("Cannot create directory "+dir);
+			}
+			dataset = TDBFactory.createDataset(dir.getPath());
+		}
+		return dataset.getDefaultModel();
+	}
+
+	/**
+	 * Compares a fingerprint with the one the store was built with, see {@link ModelSnapshot#fingerprint(String, String)}.
+	 * @param fingerprint the fingerprint of the current sources.
+	 * @return true if the store holds a complete model of the same sources.
+	 */
+	public boolean matches(Properties fingerprint){
+		if(!infoFile.isFile()){
+			return false;
+		}
+		Properties info = new Properties();
+		try{
+			InputStream in = new FileInputStream(infoFile);
+			try{
+				info.load(in);
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			return false;
+		}
+		return ModelSnapshot.sameSources(fingerprint, info, "TDB store "+dir);
+	}
+
+	/**
+	 * Empties the store before it is rebuilt, and marks it as incomplete.
+	 * @return the empty model of the store, the constructed statements are added to it.
+	 * @throws IOException when the store cannot be opened or its fingerprint cannot be removed.
+	 */
+	public Model clear() throws IOException{
+		if(infoFile.exists() && !infoFile.delete()){
+			throw new IOException("Cannot delete "+infoFile);
+		}
+		Model model = getModel();
+		model.removeAll();
+		return model;
+	}
+
+	/**
+	 * Syncs the rebuilt model to disk and records the fingerprint of its sources.
+	 * @param fingerprint the fingerprint of the sources the model was built from.
+	 * @throws IOException when the fingerprint cannot be written.
+	 */
+	public void commit(Properties fingerprint) throws IOException{
+		TDB.sync(dataset);
+		OutputStream out = new FileOutputStream(infoFile);
+		try{
+			fingerprint.store(out, "dynRDFa TDB store");
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Closes the store. Its model cannot be used afterwards.
+	 */
+	public synchronized void close(){
+		if(dataset != null){
+			dataset.close();
+			dataset = null;
+		}
+	}
+}
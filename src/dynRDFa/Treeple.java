@@ -1,53 +1,67 @@
 package dynRDFa;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.hp.hpl.jena.rdf.model.Literal;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
-import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
-import com.hp.hpl.jena.shared.PrefixMapping;
 
 /**
- * The Treeple class groups together statements that share the same subject. A TreeMap
- * holds as keys the predicates, and as values, ArrayLists of statement objects. The objects might 
- * be literals or resources. This structure is chosen because in addition to the subject,
- * some object might share the same predicate too (e.g. authors). A treeple might look like:
+ * The Treeple class groups together statements that share the same subject. The predicates are kept
+ * in a flat array, sorted by the characters after their last /, and next to each predicate its statement
+ * objects. The objects might be literals or resources. A predicate usually has a single object, which is
+ * stored as is; only when some objects share the same predicate too (e.g. authors) an array of objects
+ * is kept. A treeple might look like:
  * S P1 O
  * 	 P2 O O..
  * 	 ....
  * 	 PN O
- * Aside from that, the class holds the following structures: Map that contains the namespace 
- * prefix mappings, and a HashMap with all the statement objects that are Resources, and as a result 
- * subjects in other statements. Information about the year and the hyperlink related with a
+ * Aside from that, the class holds the following structures: the namespaces used by the treeple,
+ * numbered by the run-wide {@link NamespaceRegistry}, and a Map with all the statement objects that
+ * are Resources, and as a result subjects in other statements. Information about the year and the hyperlink related with a
  * publication are provided through the classes' getters. Since the name Triple is reserved by Jena, 
- * and a TreeMap is used, Treeples seems like an appropriate name.
+ * and the predicates are kept sorted like in a TreeMap, Treeples seems like an appropriate name.
  * @author magda
  *
  */
-public class Treeple {
+public class Treeple implements Publication {
+	//marks the typed literals (xsd:int, xsd:integer) that may hold the publication year.
+	private static final String INT_TYPE = "http://www.w3.org/2001/XMLSchema#int";
+	//initial number of predicate slots.
+	private static final int INITIAL_SLOTS = 8;
+	/* the sort key of every property seen so far: the characters after the last /, in our case
+	 * the local name. It is computed once per property instead of twice on every comparison. Keyed by
+	 * the property URI, so that it keeps no node of a model (and through it the graph) reachable. */
+	private static final ConcurrentHashMap<String,String> SORT_KEYS = new ConcurrentHashMap<String,String>();
 	//the subject of a statement.
 	private Resource subject;
-	/* a TreeMap where: key= predicate, and value= an ArrayList of objects 
-	 * that have the same subject and predicate. The ArrayList is chosen because
-	 * there might be only one object (eg book title) ore many (authors). */
-	private TreeMap<Property,ArrayList<RDFNode>> predobs;
-	/* a Jena PrefixMapping interface, a factory class will be used to create an object.
-	 * Note that a Model *is* a PrefixMapping, so all the PrefixMapping operations apply to Models. */
-	private PrefixMapping pm;
-	//the prefix mappings that are retrieved from pm: the object that implements the PrefixMapping interface.
-	private Map<String,String> expoPrefixMappings;
+	//the predicates, sorted by sort key. Predicates with the same sort key share a slot.
+	private Property[] predicates;
+	//the sort keys of the predicates, in the same order.
+	private String[] keys;
+	/* the objects that have the same subject and predicate: an RDFNode when there is
+	 * only one (eg book title), an RDFNode[] when there are many (authors). */
+	private Object[] objects;
+	//number of predicates.
+	private int size;
+	//the run-wide namespace registry, the prefixes of the namespaces are resolved through it.
+	private NamespaceRegistry registry;
+	//the namespaces used by the treeple, numbered by the registry.
+	private BitSet namespaces;
 	/* a structure that stores statement objects that are resources, not literals (in our case the authors). 
 	 * The resources are used as keys, and the treeple objects that correspond to them, as values. */
-	private HashMap<Resource,Treeple> objectLookup; 
+	private Map<Resource,Treeple> objectLookup; 
 	/* the year of publication. By default it is set to 0, since a treeple might not refer to a publication.
 	 * If the treeple refers to a publication, the year is set using a class method. */
 	private int year;
@@ -59,18 +73,9 @@ public class Treeple {
 	 * Class constructor: initializes the private fields.
 	 */
 	public Treeple(){
-		predobs = new TreeMap<Property,ArrayList<RDFNode>>(new Comparator<Property>() {
-		    public int compare(Property a, Property b) {
-		    	/* when the properties are URIs sort them lexicographically, by extracting the characters after the last /
-		    	 * in our case, these characters represent publication IDs.	 */
-		    	String s1 = a.getURI().substring(a.getURI().lastIndexOf('/') + 1);
-		    	String s2 = b.getURI().substring(b.getURI().lastIndexOf('/') + 1);
-		    	return s1.compareTo(s2);
-		       
-		    }
-		});
-		//Factory class to create an unspecified kind of PrefixMapping.
-		pm = PrefixMapping.Factory.create();
+		predicates = new Property[INITIAL_SLOTS];
+		keys = new String[INITIAL_SLOTS];
+		objects = new Object[INITIAL_SLOTS];
 	}
 	
 	/**
@@ -82,175 +87,147 @@ public class Treeple {
 	}
 	
 	/**
-	 * Setter: puts a predicate in the TreeMap if it doesn't already exist.
-	 * Put the object that is related with the predicate in the TreeMap
-	 * @param predicate is the predicate to be inserted on the TreeMap
-	 * @param object is the object to be inserted on the TreeMap
+	 * Setter: puts a predicate in its sorted position if it doesn't already exist.
+	 * Adds the object that is related with the predicate to the objects of the predicate.
+	 * @param predicate is the predicate to be inserted
+	 * @param object is the object to be inserted
 	 */
 	public void insertPredicateObjects(Property predicate,RDFNode object){
-		ArrayList<RDFNode> tempObj = new ArrayList<RDFNode>();
+		String key = sortKey(predicate);
+		int pos = Arrays.binarySearch(keys, 0, size, key);
 		//the predicate already exists. S P o o o o (multiple creator case)
-		if(predobs.containsKey(predicate)){
-			//get the already existing object list for this key-predicate
-			tempObj = predobs.get(predicate);
-			//add the newly seen object (creator in this case)
-			tempObj.add(object);
-			//put it all back in
-			predobs.put(predicate, tempObj);
+		if(pos >= 0){
+			Object current = objects[pos];
+			if(current instanceof RDFNode){
+				objects[pos] = new RDFNode[]{(RDFNode)current, object};
+			}
+			else{
+				RDFNode[] values = (RDFNode[])current;
+				RDFNode[] more = Arrays.copyOf(values, values.length+1);
+				more[values.length] = object;
+				objects[pos] = more;
+			}
+			return;
 		}
 		//the predicate has not been seen before
-		else{
-			tempObj.add(object);
-			predobs.put(predicate, tempObj);
+		pos = -pos-1;
+		if(size == predicates.length){
+			predicates = Arrays.copyOf(predicates, size*2);
+			keys = Arrays.copyOf(keys, size*2);
+			objects = Arrays.copyOf(objects, size*2);
 		}
+		System.arraycopy(predicates, pos, predicates, pos+1, size-pos);
+		System.arraycopy(keys, pos, keys, pos+1, size-pos);
+		System.arraycopy(objects, pos, objects, pos+1, size-pos);
+		predicates[pos] = predicate;
+		keys[pos] = key;
+		objects[pos] = object;
+		size++;
+	}
+	
+	/**
+	 * When the properties are URIs they are sorted lexicographically, by the characters after the last /
+	 * in our case, these characters represent publication IDs.
+	 * @param property a predicate.
+	 * @return the sort key of the predicate, computed only the first time a property is seen.
+	 */
+	private static String sortKey(Property property){
+		String uri = property.getURI();
+		String key = SORT_KEYS.get(uri);
+		if(key == null){
+			key = uri.substring(uri.lastIndexOf('/') + 1);
+			SORT_KEYS.putIfAbsent(uri, key);
+		}
+		return key;
 	}
 	
 	/**
 	 * Setter
-	 * @param objectLookup is the HashMap that stores statement objects that are Resources.
-	 * All the treeple objects hold a copy of the same objectLookup.
+	 * @param objectLookup is the Map that stores statement objects that are Resources.
+	 * All the treeple objects hold a reference to the same, run-wide objectLookup.
 	 */
-	public void setObjectLookup(HashMap<Resource,Treeple> objectLookup){
+	public void setObjectLookup(Map<Resource,Treeple> objectLookup){
 		this.objectLookup = objectLookup;
 	}
 	
 	/**
-	 * Sets the HashMap that holds all the namespace prefix mappings, the year and hyperlink related 
-	 * with a publication, by iterating through the predicate/objects TreeMap. The method distinguishes 
+	 * Records the namespaces the treeple uses, and sets the year and hyperlink related 
+	 * with a publication, by iterating through the predicates and objects. The method distinguishes 
 	 * statement objects that are Resources from those that are Literals, so that the prefix mappings are
 	 * correct.
 	 * @param resultsModel is a Jena Model that holds various statements resulting from a CONSTRUCT query
 	 */
 	public void setTreepleStructures(Model resultsModel){
-		//for each predicate and objects in the TreeMap
-		for (Map.Entry<Property, ArrayList<RDFNode>> entry : predobs.entrySet()) {
+		//the registry of the model's prefixes, built once per model.
+		registry = NamespaceRegistry.of(resultsModel);
+		namespaces = new BitSet();
+		//for each predicate and objects
+		for(int i=0;i<size;i++){
 			//retrieve predicate
-			Property key = entry.getKey();
-			//retrieve objects
-			ArrayList<RDFNode> value = entry.getValue();
-			/*
-			 * set a namespace prefix in the prefixMapping object. (URIPrefix e.g. dc, Namespace e.g. http://purl.org/dc/elements/1.1/)
-			 * Note that a Model is a PrefixMapping, so all the PrefixMapping operations apply to Models.
-			 */
-			pm.setNsPrefix(resultsModel.getNsURIPrefix(key.getNameSpace()),key.getNameSpace());
-				
+			Property key = predicates[i];
+			registry.use(namespaces, key.getNameSpace());
 			//for each statement object
-			for(int i=0;i<value.size();i++){
-				StmtIterator iter;
+			int count = getObjectCount(i);
+			for(int j=0;j<count;j++){
+				RDFNode value = getObject(i, j);
 				//the statement object is a Resource (author case)
-				if(!(value.get(i).isLiteral())&&(resultsModel.contains(value.get(i).asResource(),(Property)null,(RDFNode)null))){
+				if(!(value.isLiteral())&&(resultsModel.contains(value.asResource(),(Property)null,(RDFNode)null))){
 					//retrieve all the statements that have the statement object as a subject.
-					iter = resultsModel.listStatements(value.get(i).asResource(),(Property)null,(RDFNode)null);
+					StmtIterator iter = resultsModel.listStatements(value.asResource(),(Property)null,(RDFNode)null);
 					while(iter.hasNext()){
-						Statement stmnt = iter.nextStatement();
-						//set a namespace prefix) 
-			    		pm.setNsPrefix(resultsModel.getNsURIPrefix(stmnt.getPredicate().getNameSpace()),stmnt.getPredicate().getNameSpace());
-			    		}
-			    	}
+						registry.use(namespaces, iter.nextStatement().getPredicate().getNameSpace());
+					}
+				}
 				//the statement object is a Literal
-			    else{
-			    	//set the hyperlink related with this publication
-			    	link = "http://lpis.csd.auth.gr/paper_details.asp?publicationID="+subject.toString().substring(subject.toString().lastIndexOf("/")+1,subject.toString().length());
-			    	//set the publication year
-			    	if(value.get(i).toString().contains("^^http://www.w3.org/2001/XMLSchema#int")&&(value.get(i).toString().substring(0,value.get(i).toString().lastIndexOf("^")-1).length()==4)){
-			    		year = Integer.parseInt(value.get(i).toString().substring(0,value.get(i).toString().lastIndexOf("^")-1));
-			    	}
-			    }
+				else{
+					//set the hyperlink related with this publication
+					if(link == null){
+						String s = subject.toString();
+						link = "http://lpis.csd.auth.gr/paper_details.asp?publicationID="+s.substring(s.lastIndexOf("/")+1,s.length());
+					}
+					//set the publication year
+					if(value.isLiteral() && isYear(value.asLiteral())){
+						year = Integer.parseInt(value.asLiteral().getLexicalForm());
+					}
+				}
 			}
 		}
-		//retrieve the namespace prefix map and put it in a private field
-		expoPrefixMappings = pm.getNsPrefixMap();
 	}
 	
 	/** 
 	 * toString() is overridden so that a velocity engine and template can access a treeple. Velocity cannot
 	 * utilize methods that accept arguments. Since RDFa is not  considered a matter of presentation,
 	 * but a matter of program-logic, the RDFa tags are declared here.
-	 * All the information that is related to a publication is wrapped around RDFa tags depending on its type,
-	 * and then concatenated to a string. In this sense, the method is not reusable, but doing otherwise would
-	 * increase the velocity template complexity which is now only responsible for the presentation level.
+	 * All the information that is related to a publication is wrapped around RDFa tags depending on its type.
+	 * The markup is produced by {@link RDFaWriter}; templates should prefer {@link #getRdfa()}, which streams
+	 * the same markup into the html document instead of building a String.
 	 * @see java.lang.Object#toString()
 	 */
 	@Override
 	public String toString(){
-		//the publication hyperlink is used as a subject for the RDF content chunks in the html document.
-		String str = "<div about=\"http://lpis.csd.auth.gr/paper_details.asp?publicationID="
-		+subject.toString().substring(subject.toString().lastIndexOf("/")+1,subject.toString().length()) +"\" typeof=\"bibo:Document\">"; //RDFa S
-		str += "\n"; //presentation
-        
-		//iterate through predicates and objects
-		for (Map.Entry<Property, ArrayList<RDFNode>> entry : predobs.entrySet()) {
-		    Property key = entry.getKey();
-		    ArrayList<RDFNode> value = entry.getValue();
-		    
-		    for(int i=0;i<value.size();i++){
-		    	
-		    	//the statement object is a Resource, it is consequently contained in objectLookup
-		    	if(objectLookup.containsKey(value.get(i))){
-		    		str += "<span rel=\"";  //RDFa P
-				    str += getKeyByValue(expoPrefixMappings,key.getNameSpace()); //RDFa P
-				    str += ":";	//RDFa P
-				    str += key.getLocalName(); //RDFa P
-				    str += "\">"; //RDFa P
-				    str += "\n"; //presentation
-		    		
-				    //predicates and objects of the statement object that is a Resource (authors in our case)
-		    	    for (Map.Entry<Property, ArrayList<RDFNode>> e:  objectLookup.get(value.get(i)).predobs.entrySet()) {
-		    		    Property k = e.getKey();
-		    		    ArrayList<RDFNode> v = e.getValue();
-    	    		   
- 		    		    str += "<span property=\""; //RDFa P
- 		    		    str += getKeyByValue( objectLookup.get(value.get(i)).expoPrefixMappings,k.getNameSpace()); //RDFa P
- 		    		    
- 		    		    str += ":"; //RDFa P
- 		    		    str += k.getLocalName(); //RDFa P
- 		    		    //str += "\">"; //RDFa P
-
- 		    		    //Author ID case. @content can be used to indicate a plain literal
- 		    		    if(v.toString().contains("^^http://www.w3.org/2001/XMLSchema#int")){
- 		    		    	str += "\" content=\"";
- 		    		    	str += Integer.parseInt(v.toString().substring(1,v.toString().lastIndexOf("^")-1))-80000;
- 		    		    	str += "\">";
- 		    		    }
- 		    		    else{
- 		    		    	str += "\">"; //RDFa P
- 		    		    	str += v.toString().substring(1, v.toString().length()-1);  //RDFa O
- 		    		    }
- 		    		    
- 		    		   str += " </span>"; //RDFa P
- 		    		   str += "\n"; //presentation
-		    	    }
-		    	    str += "</span>"; //RDFa P
-		    	    str += ", "; //presentation
-		    	    str += "\n"; //presentation
-		    	}
-		    	else{
-		    		//do not produce Predicates and Objects for objects marked as N/A
-		    		if(value.get(i).toString().contains("N/A")){
-		    			str += "";
-		    			continue;
-		    			}
-		    		str += "<span property=\""; //RDFa P
-				    str += getKeyByValue(expoPrefixMappings,key.getNameSpace()); //RDFa P
-				    str += ":"; //RDFa P
-				    str += key.getLocalName(); //RDFa P
-				    str += "\">"; //RDFa P
-				    
-		    		//id and year not as typed literals in NTriple syntax
- 		    		if(value.get(i).toString().contains("^^http://www.w3.org/2001/XMLSchema#int")){
- 		    			str += value.get(i).asLiteral().getValue(); //RDFa O
- 		    		}
-		    		else{	
-		    			str += value.get(i); //RDFa O
-		    		}
-		    		str += "</span>"; //RDFa P
-		    		str += ", "; //presentation
-		    		str += "\n"; //presentation
-		    	}
-		    } 
+		StringBuilder str = new StringBuilder(1024);
+		try {
+			RDFaWriter.write(this, str);
+		} catch (IOException e) {
+			//a StringBuilder does not throw IOExceptions.
+			throw new IllegalStateException(e);
 		}
-		str += "</div>"; //RDFa P
-		return str;
+		return str.toString();
+	}
+	
+	/**
+	 * Getter, used by the velocity template as $element.rdfa
+	 * @return a block that writes the RDFa markup of the treeple straight to the html document.
+	 */
+	public RDFaWriter.Block getRdfa(){
+		return new RDFaWriter.Block(this);
+	}
+	
+	/**
+	 * @see dynRDFa.Publication#describe(TripleSink)
+	 */
+	public void describe(TripleSink sink) throws IOException{
+		RDFaWriter.describe(this, sink);
 	}
 	
 	/**
@@ -263,9 +240,77 @@ public class Treeple {
 	
 	/**
 	 * Getter
-	 * @return the predicates and objects of a treeple.
+	 * @return the Map that stores statement objects that are Resources (authors).
+	 */
+	public Map<Resource,Treeple> getObjectLookup(){
+		return objectLookup;
+	}
+	
+	/**
+	 * Getter
+	 * @return the number of predicates of a treeple.
+	 */
+	public int getPredicateCount(){
+		return size;
+	}
+	
+	/**
+	 * Getter
+	 * @param i the position of a predicate, in sorted order (0 to getPredicateCount()-1).
+	 * @return the predicate.
+	 */
+	public Property getPredicate(int i){
+		return predicates[i];
+	}
+	
+	/**
+	 * Getter
+	 * @param i the position of a predicate.
+	 * @return the number of objects of the predicate.
+	 */
+	public int getObjectCount(int i){
+		Object value = objects[i];
+		return value instanceof RDFNode ? 1 : ((RDFNode[])value).length;
+	}
+	
+	/**
+	 * Getter
+	 * @param i the position of a predicate.
+	 * @param j the position of an object of the predicate, in the order they were inserted.
+	 * @return the statement object.
+	 */
+	public RDFNode getObject(int i,int j){
+		Object value = objects[i];
+		return value instanceof RDFNode ? (RDFNode)value : ((RDFNode[])value)[j];
+	}
+	
+	/**
+	 * @param predicate a predicate.
+	 * @return true if the treeple holds the predicate, or a predicate with the same sort key.
+	 */
+	public boolean hasPredicate(Property predicate){
+		return Arrays.binarySearch(keys, 0, size, sortKey(predicate)) >= 0;
+	}
+	
+	/**
+	 * Getter
+	 * @return a copy of the predicates and objects of a treeple, as a TreeMap where: key= predicate,
+	 * and value= an ArrayList of objects that have the same subject and predicate.
 	 */
 	public TreeMap<Property,ArrayList<RDFNode>> getPredobs(){
+		TreeMap<Property,ArrayList<RDFNode>> predobs = new TreeMap<Property,ArrayList<RDFNode>>(new Comparator<Property>() {
+		    public int compare(Property a, Property b) {
+		    	return sortKey(a).compareTo(sortKey(b));
+		    }
+		});
+		for(int i=0;i<size;i++){
+			int count = getObjectCount(i);
+			ArrayList<RDFNode> values = new ArrayList<RDFNode>(count);
+			for(int j=0;j<count;j++){
+				values.add(getObject(i, j));
+			}
+			predobs.put(predicates[i], values);
+		}
 		return predobs;
 	}
 	
@@ -273,7 +318,7 @@ public class Treeple {
 	 * Prints the namespace prefix mappings.
 	 */
 	public void printMappings(){
-		for (Map.Entry<String, String> entry : expoPrefixMappings.entrySet())
+		for (Map.Entry<String, String> entry : getMappings().entrySet())
 		{
 		    System.out.println(entry.getKey() + "--->" + entry.getValue());
 		}
@@ -284,7 +329,23 @@ public class Treeple {
 	 * @return the namespace prefix mappings.
 	 */
 	public Map<String,String> getMappings(){
-		return expoPrefixMappings;
+		return registry.mappingsOf(namespaces);
+	}
+	
+	/**
+	 * Getter
+	 * @return the run-wide namespace registry, or null before the treeple is structured.
+	 */
+	public NamespaceRegistry getRegistry(){
+		return registry;
+	}
+	
+	/**
+	 * Getter
+	 * @return the namespaces used by the treeple, numbered by the registry.
+	 */
+	public BitSet getNamespaces(){
+		return namespaces;
 	}
 	
 	/**
@@ -295,6 +356,16 @@ public class Treeple {
 		return year;
 	}
 	
+	/**
+	 * @param literal the object of a statement.
+	 * @return true if the literal may be the publication year: a 4 digit xsd:int (or xsd:integer).
+	 */
+	static boolean isYear(Literal literal){
+		String datatype = literal.getDatatypeURI();
+		String lexical = literal.getLexicalForm();
+		return datatype != null && datatype.startsWith(INT_TYPE) && lexical.length() == 4 && lexical.matches("[0-9]+");
+	}
+	
 	/**
 	 * Getter
 	 * @return the hyperlink of the publication related with the treeple.
@@ -323,11 +394,11 @@ public class Treeple {
 	/**
 	 * For one-to-one relationships, the method accepts a value, and finds the
 	 * corresponding key.
-	 * @param map a HashMap<Resource,Treeple> (objectLookup).
-	 * @param value a treeple in the HashMap.
+	 * @param map a Map<Resource,Treeple> (objectLookup).
+	 * @param value a treeple in the Map.
 	 * @return the key that corresponds to the value argument.
 	 */
-	public static Resource getKeyByValue(HashMap<Resource,Treeple> map,Treeple value) {
+	public static Resource getKeyByValue(Map<Resource,Treeple> map,Treeple value) {
 	    for (Entry<Resource,Treeple> entry : map.entrySet()) {
 	        if (value.equals(entry.getValue())) {
 	            return entry.getKey();
@@ -0,0 +1,118 @@
+package dynRDFa;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.Lock;
+
+/**
+ * The TreepleStream class hands the treeples of a web page to the velocity template one at a time.
+ * The select query of the page is executed when the stream is created, and the treeple of a row is
+ * built only when the template's #foreach asks for it; once the template moves on, nothing refers to
+ * it any more. Unlike the ArrayList of an exportableModel, the treeples of the page are never all in
+ * memory at the same time.
+ * The stream holds a read lock of the constructed model from its creation until it is closed (it is
+ * closed as soon as the last row has been read), so it is created and consumed by the same thread.
+ * @author magda
+ */
+public class TreepleStream implements Iterator<Treeple> {
+	//the constructed model.
+	private Model resultsModel;
+	//the index of the constructed model, see ModelIndex.
+	private ModelIndex index;
+	private QueryExecution qExec;
+	//the rows of the select query.
+	private ResultSet resultSet;
+	//the treeple to be returned next, null if it is not built yet.
+	private Treeple next;
+	private boolean closed;
+
+	/**
+	 * Class constructor: executes the select query.
+	 * @param resultsModel the constructed model.
+	 * @param index the index of the constructed model.
+	 * @param query the select query of the web page, its rows hold the publication IDs.
+	 */
+	public TreepleStream(Model resultsModel,ModelIndex index,Query query){
+		this.resultsModel = resultsModel;
+		this.index = index;
+		resultsModel.enterCriticalSection(Lock.READ);
+		try {
+			qExec = QueryExecutionFactory.create(query, resultsModel);
+			resultSet = qExec.execSelect();
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return true if the select query has another publication.
+	 */
+	public boolean hasNext(){
+		while(next == null && !closed){
+			if(!resultSet.hasNext()){
+				close();
+				break;
+			}
+			QuerySolution soln = resultSet.nextSolution();
+			for(Object var : resultSet.getResultVars()){
+				RDFNode node = soln.get(var.toString());
+				if(node == null){
+					continue;
+				}
+				//the subject that holds the current publicationID as an object.
+				Resource subject = index.subjectOf(node);
+				if(subject != null){
+					next = ModelMaker.treepleOf(subject, index);
+					next.setTreepleStructures(resultsModel);
+					break;
+				}
+			}
+		}
+		return next != null;
+	}
+
+	/**
+	 * @return the treeple of the next publication of the select query.
+	 */
+	public Treeple next(){
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		Treeple treeple = next;
+		next = null;
+		return treeple;
+	}
+
+	public void remove(){
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Closes the query execution and releases the read lock of the constructed model. The rows
+	 * that were not read are dropped.
+	 */
+	public void close(){
+		if(closed){
+			return;
+		}
+		closed = true;
+		next = null;
+		try {
+			if(qExec != null){
+				qExec.close();
+			}
+		} finally {
+			resultsModel.leaveCriticalSection();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package dynRDFa;
+
+import java.io.IOException;
+
+/**
+ * The TripleSink interface receives the statements a publication carries in its RDFa markup, one at a
+ * time, as {@link Publication#describe(TripleSink)} walks the publication. Subjects and objects are
+ * absolute IRIs, or blank node labels that start with "_:" (the authors, which the markup nests in a
+ * rel span without an about). Literal values are plain, the way the markup shows them.
+ * @author magda
+ */
+public interface TripleSink {
+
+	/**
+	 * Receives a statement whose object is a resource.
+	 * @param subject an IRI or a blank node label.
+	 * @param predicate the IRI of the predicate.
+	 * @param object an IRI or a blank node label.
+	 * @throws IOException when the statement cannot be written.
+	 */
+	void resource(String subject,String predicate,String object) throws IOException;
+
+	/**
+	 * Receives a statement whose object is a plain literal.
+	 * @param subject an IRI or a blank node label.
+	 * @param predicate the IRI of the predicate.
+	 * @param value the lexical form of the literal.
+	 * @throws IOException when the statement cannot be written.
+	 */
+	void literal(String subject,String predicate,String value) throws IOException;
+}
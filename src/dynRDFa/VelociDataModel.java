@@ -1,10 +1,15 @@
 package dynRDFa;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.TreeMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -22,64 +27,289 @@ import org.apache.velocity.exception.ResourceNotFoundException;
  *  template engine know that the following text potentially corresponds to a context key 
  *  that requires special processing. The html documents are produced by invoking the merge 
  *  method of the template object.
+ *  The engine is initialized and the template is parsed only once; the same object can then
+ *  render any number of pages, from any number of threads.
+ *  Other outputs of a page (see {@link PageSink}) are fed by the same merge: every publication is
+ *  handed to the documents of the sinks when the template's #foreach reaches it.
  * @author magda
  *
  */
 public class VelociDataModel {
+	//the default template.
+	public static final String TEMPLATE_FILE = "conf/template.vm";
+	//the default directory of the generated html documents.
+	public static final String OUTPUT_DIR = "conf/webpages";
+	//size of the buffer between the template merge and the html document.
+	private static final int BUFFER_SIZE = 1 << 16;
 	//template engine
 	private VelocityEngine ve;
-	
+	//the template file.
+	private String templateFile;
+	//the directory of the generated html documents.
+	private String outputDir;
+	//the parsed template, loaded once by vdmInitializer().
+	private Template template;
+	//the other outputs of the pages, e.g. JSON-LD; set before the pages are rendered.
+	private List<PageSink> sinks = new ArrayList<PageSink>();
+
 	/**
-	 * Constructor: creates an VelocityEngine object.
+	 * Constructor: creates an VelocityEngine object for the default template and output directory,
+	 * with velocity's logging switched off.
 	 */
 	public VelociDataModel(){
+		this(TEMPLATE_FILE, OUTPUT_DIR, false);
+	}
+
+	/**
+	 * Constructor: creates an VelocityEngine object.
+	 * @param templateFile the template file.
+	 * @param outputDir the directory of the generated html documents.
+	 * @param log if true velocity logs to velocity.log, otherwise its logging is switched off.
+	 */
+	public VelociDataModel(String templateFile,String outputDir,boolean log){
+		this.templateFile = templateFile;
+		this.outputDir = outputDir;
 		//get velocity engine
 		ve = new VelocityEngine();
+		ve.setProperty("input.encoding", "UTF-8");
 		ve.setProperty("output.encoding", "UTF-8");
+		//parsed templates are kept, and not checked for modifications.
+		ve.setProperty("file.resource.loader.cache", "true");
+		ve.setProperty("file.resource.loader.modificationCheckInterval", "0");
+		if(!log){
+			ve.setProperty("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogChute");
+		}
 	}
-	
+
+	/**
+	 * Constructor: shares the VelocityEngine of another VelociDataModel, e.g. to render the pages of
+	 * several sites in one process. The engine keeps the templates it parsed, so a template that is
+	 * shared by several sites is parsed once.
+	 * @param shared the VelociDataModel whose engine is used.
+	 * @param templateFile the template file.
+	 * @param outputDir the directory of the generated html documents.
+	 */
+	public VelociDataModel(VelociDataModel shared,String templateFile,String outputDir){
+		this.ve = shared.ve;
+		this.templateFile = templateFile;
+		this.outputDir = outputDir;
+	}
+
+	/**
+	 * Getter
+	 * @return the directory of the generated html documents.
+	 */
+	public String getOutputDir(){
+		return outputDir;
+	}
+
+	/**
+	 * Adds an output that is written along with every html document of the output directory.
+	 * The sinks are added before the pages are rendered.
+	 * @param sink e.g. a JsonLdSink.
+	 */
+	public void addSink(PageSink sink){
+		sinks.add(sink);
+	}
+
 	/**
 	 * The non-Singleton model is used. An instance of VelocityEngine has been
-	 * created, and now its init() method is invoked.
+	 * created, and now its init() method is invoked and the template is parsed.
+	 * Calling the method again has no effect.
 	 */
-	public void vdmInitializer(){
-		//intialize velocity engine
-		ve.init();
+	public synchronized void vdmInitializer(){
+		if(template != null){
+			return;
+		}
+		//intialize velocity engine, an engine that is already initialized is left as it is.
+		synchronized(ve){
+			ve.init();
+		}
+		//retrieve and parse the template, once.
+		template = ve.getTemplate(templateFile, "UTF-8");
 	}
 
 	/**
-	 * Retrieves the template, creates and populates the context, generates the right 
-	 * type of html document and merges template and context. As a result the template
-	 * is rendered in the document.
+	 * Creates and populates the context, generates the right type of html document and merges
+	 * template and context. As a result the template is rendered in the document.
 	 * @param exportableModel is the object that holds all the necessary information
 	 * that will populate the model.
+	 * @return true if the html document was written, false if it failed (the cause is printed).
 	 */
-	public void builder(ExportableModel exportableModel){
-        //retrieve template.
-        Template t = ve.getTemplate("conf/template.vm","UTF-8");
-        //create a context .
-        VelocityContext context = new VelocityContext();
-        //populate the context.
-        context.put("mappings", exportableModel.getMappings());
-        context.put("treeples", exportableModel.getTreeples());
-        context.put("years", exportableModel.getPublicationsPerYear());
-        context.put("pageid",exportableModel.getID());
-        //render the template into a fileWriter.
+	public boolean builder(ExportableModel exportableModel){
+		//retrieve type of file and create the corresponding html document
+		return builder(exportableModel, "type"+exportableModel.getID()+".html");
+	}
+	
+	/**
+	 * Renders the template for an exportableModel into a given html document of the output directory.
+	 * @param exportableModel is the object that holds all the necessary information
+	 * that will populate the model.
+	 * @param fileName the name of the html document, e.g. type2-2013.html
+	 * @return true if the html document was written. If it failed (the cause is printed), the partly
+	 * written document is removed, so that it is not mistaken for a complete page, and so are the
+	 * documents of the sinks.
+	 */
+	public boolean builder(ExportableModel exportableModel,String fileName){
+		String file = outputDir+"/"+fileName;
+		RunMetrics metrics = RunMetrics.getInstance();
+		boolean written = false;
+		List<PageSink.Document> documents = Collections.emptyList();
 		try {
-			//retrieve type of file and create the corresponding html document
-			String file = "conf/webpages/type"+exportableModel.getID()+".html";
-			FileWriter writer = new FileWriter(new File(file));
-			//merge causes the references in the template to be replaced with data obtained from the context.
-			t.merge( context, writer );
-			writer.flush();
-			writer.close();
+			//the merge writes through the buffer, "write" only covers opening and closing the document.
+			RunMetrics.Stage open = metrics.start("write");
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(file)), "UTF-8"), BUFFER_SIZE);
+			documents = open(exportableModel, fileName);
+			open.stop();
+			try {
+				render(exportableModel, writer, documents);
+			} finally {
+				RunMetrics.Stage close = metrics.start("write");
+				writer.close();
+				close.stop();
+			}
+			RunMetrics.Stage close = metrics.start("write");
+			close(documents);
+			close.stop();
+			if(metrics.isEnabled()){
+				metrics.page(fileName, new File(file).length());
+			}
+			written = true;
 		}catch(ResourceNotFoundException e2 ) {
 			System.out.println("cannot find template ");
 		} catch(ParseErrorException e ) {
 			System.out.println("Syntax error in template : " + e);
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			if(!written){
+				new File(file).delete();
+				//the documents of the sinks would miss the rest of the page.
+				for(int i=0;i<documents.size();i++){
+					documents.get(i).discard();
+				}
+			}
 		}
-      
+		return written;
+	}
+
+	/**
+	 * Completes the documents of the sinks of a page that was rendered. A document that cannot be
+	 * completed is discarded, the html document is kept.
+	 * @param documents the documents of the page, empty once they are all closed.
+	 */
+	private static void close(List<PageSink.Document> documents){
+		while(!documents.isEmpty()){
+			PageSink.Document document = documents.remove(documents.size()-1);
+			try {
+				document.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				document.discard();
+			}
+		}
+	}
+
+	/**
+	 * Renders the template for an exportableModel into a Writer. The Writer is flushed, not closed.
+	 * @param exportableModel is the object that holds all the necessary information
+	 * that will populate the model.
+	 * @param writer where the html document is written to.
+	 * @throws IOException when the Writer cannot be written.
+	 */
+	public void render(ExportableModel exportableModel,Writer writer) throws IOException{
+		render(exportableModel, writer, Collections.<PageSink.Document>emptyList());
+	}
+
+	/**
+	 * Opens the documents of the sinks for a web page. A sink whose document cannot be opened is
+	 * left out of the page, the html document is written all the same.
+	 * @param exportableModel the page.
+	 * @param fileName the name of the html document.
+	 * @return the documents of the page.
+	 */
+	private List<PageSink.Document> open(ExportableModel exportableModel,String fileName){
+		List<PageSink.Document> documents = new ArrayList<PageSink.Document>(sinks.size());
+		String pageName = fileName.endsWith(".html") ? fileName.substring(0, fileName.length()-5) : fileName;
+		for(int i=0;i<sinks.size();i++){
+			try {
+				documents.add(sinks.get(i).open(outputDir, pageName, exportableModel));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return documents;
+	}
+
+	/**
+	 * Renders the template, and hands every publication the template reaches to the documents.
+	 */
+	private void render(ExportableModel exportableModel,Writer writer,List<PageSink.Document> documents) throws IOException{
+		vdmInitializer();
+        //create a context .
+        VelocityContext context = new VelocityContext();
+        //populate the context.
+        context.put("mappings", exportableModel.getMappings());
+        if(!documents.isEmpty()){
+        	Iterator<? extends Publication> publications = exportableModel.getStream() != null
+        			? exportableModel.getStream() : exportableModel.getPublications().iterator();
+        	//the sinks are fed as the template's #foreach reaches the publications.
+        	context.put("treeples", new Feed(publications, documents));
+        }
+        else if(exportableModel.getStream() != null){
+        	//the treeples are built as the template's #foreach reaches them.
+        	context.put("treeples", exportableModel.getStream());
+        }
+        else{
+        	context.put("treeples", exportableModel.getPublications());
+        }
+        context.put("years", exportableModel.getPublicationsPerYear());
+        context.put("total", exportableModel.getTotal());
+        context.put("pageid",exportableModel.getID());
+        if(exportableModel.getAuthor() != null){
+        	context.put("author", new RDFaWriter.Person(exportableModel.getAuthor()));
+        }
+		//merge causes the references in the template to be replaced with data obtained from the context.
+		RunMetrics.Stage stage = RunMetrics.getInstance().start("render");
+		template.merge( context, writer );
+		writer.flush();
+		stage.stop();
     }
+
+	/**
+	 * A Feed hands the publications of a page to the velocity template, and each publication to the
+	 * documents of the sinks as the template takes it. A document that cannot be written is discarded
+	 * and dropped from the page, so a failing sink does not break the html document.
+	 */
+	private static class Feed implements Iterator<Publication> {
+		private Iterator<? extends Publication> publications;
+		private List<PageSink.Document> documents;
+
+		Feed(Iterator<? extends Publication> publications,List<PageSink.Document> documents){
+			this.publications = publications;
+			this.documents = documents;
+		}
+
+		public boolean hasNext(){
+			return publications.hasNext();
+		}
+
+		public Publication next(){
+			Publication publication = publications.next();
+			for(int i=0;i<documents.size();i++){
+				try {
+					documents.get(i).add(publication);
+				} catch (IOException e) {
+					e.printStackTrace();
+					//the document would miss this publication.
+					documents.remove(i--).discard();
+				}
+			}
+			return publication;
+		}
+
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
 }
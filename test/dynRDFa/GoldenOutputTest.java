@@ -0,0 +1,93 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * Renders the publications of golden.ttl, as treeples and as rows of a {@link PublicationStore}, and
+ * compares the markup with golden.html, the output of Treeple.toString before the markup was moved to
+ * {@link RDFaWriter}: the author IDs shifted back by 80000 into @content, the " </span>" of the author
+ * spans, the N/A objects left out.
+ * @author magda
+ */
+public class GoldenOutputTest {
+	private static final String MODEL_FILE = "test/dynRDFa/golden.ttl";
+	private static final String GOLDEN_FILE = "test/dynRDFa/golden.html";
+	//the publications of golden.ttl, in the order of golden.html
+	private static final String[] PUBLICATIONS = {"373", "51"};
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private Model model;
+	private ModelIndex index;
+	private String golden;
+
+	@Before
+	public void setUp() throws IOException{
+		model = ModelFactory.createDefaultModel();
+		InputStream in = new FileInputStream(MODEL_FILE);
+		try{
+			model.read(in, null, "TURTLE");
+		}finally{
+			in.close();
+		}
+		index = new ModelIndex(model);
+		golden = new String(Files.readAllBytes(Paths.get(GOLDEN_FILE)), UTF8);
+	}
+
+	/**
+	 * The treeple of a publication, written by RDFaWriter.write and streamed by its velocity block.
+	 */
+	@Test
+	public void treeplesMatchTheBaseline() throws IOException{
+		StringBuilder written = new StringBuilder();
+		StringWriter rendered = new StringWriter();
+		for(int i=0;i<PUBLICATIONS.length;i++){
+			Treeple treeple = ModelMaker.treepleOf(publication(PUBLICATIONS[i]), index);
+			treeple.setTreepleStructures(model);
+			RDFaWriter.write(treeple, written);
+			written.append('\n');
+			treeple.getRdfa().render(null, rendered);
+			rendered.write('\n');
+		}
+		assertEquals(golden, written.toString());
+		assertEquals(golden, rendered.toString());
+	}
+
+	/**
+	 * The row of a publication in the columnar store, as the template renders it.
+	 */
+	@Test
+	public void rowsMatchTheBaseline() throws IOException{
+		PublicationStore store = PublicationStore.build(index, model);
+		assertNotNull("the model fits in the columns", store);
+		StringBuilder written = new StringBuilder();
+		StringWriter rendered = new StringWriter();
+		for(int i=0;i<PUBLICATIONS.length;i++){
+			PublicationStore.Row row = store.rowOf(publication(PUBLICATIONS[i]));
+			written.append(row.toString()).append('\n');
+			row.getRdfa().render(null, rendered);
+			rendered.write('\n');
+		}
+		assertEquals(golden, written.toString());
+		assertEquals(golden, rendered.toString());
+	}
+
+	private Resource publication(String id){
+		return model.getResource("http://lpis.csd.auth.gr/publications/"+id);
+	}
+}
@@ -0,0 +1,190 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+import de.fuberlin.wiwiss.d2rq.jena.ModelD2RQ;
+
+/**
+ * Loads the sample rows of pubs.sql into an embedded H2 database, and checks that the model a
+ * {@link JdbcModelLoader} builds from it is the one the CONSTRUCT query produces on a ModelD2RQ over
+ * the same database, with the mapping of conf/pubsmap.ttl.
+ * @author magda
+ */
+public class JdbcModelLoaderTest {
+	//the embedded database, kept while the test class runs.
+	private static final String DSN = "jdbc:h2:mem:pubs;DB_CLOSE_DELAY=-1";
+	private static final String DC = "http://purl.org/dc/elements/1.1/";
+	private static final String BIBO = "http://purl.org/ontology/bibo/";
+	private static final String CITO = "http://purl.org/net/cito/";
+	private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+	//conf/pubsmap.ttl, pointed to the embedded database.
+	private static File mappingFile;
+	private static Connection connection;
+	//the model of the loader.
+	private static Model loaded;
+
+	@BeforeClass
+	public static void setUp() throws IOException, SQLException{
+		connection = database(DSN);
+		mappingFile = mapping(DSN, folder.newFolder("conf"));
+		loaded = new JdbcModelLoader(mappingFile.getPath()).load(connection);
+	}
+
+	/**
+	 * @param dsn the JDBC URL of an embedded database.
+	 * @return a connection to the database, filled with the rows of pubs.sql.
+	 */
+	static Connection database(String dsn) throws SQLException{
+		Connection connection = DriverManager.getConnection(dsn, "sa", "");
+		Statement stmt = connection.createStatement();
+		try{
+			stmt.execute("RUNSCRIPT FROM 'test/dynRDFa/pubs.sql' CHARSET 'UTF-8'");
+		}finally{
+			stmt.close();
+		}
+		return connection;
+	}
+
+	/**
+	 * @param dsn the JDBC URL of an embedded database.
+	 * @param dir the directory of the mapping file.
+	 * @return a copy of conf/pubsmap.ttl (dir/pubsmap.ttl) that maps the embedded database.
+	 */
+	static File mapping(String dsn,File dir) throws IOException{
+		Charset utf8 = Charset.forName("UTF-8");
+		String mapping = new String(Files.readAllBytes(new File(ModelMaker.MAPPING_FILE).toPath()), utf8);
+		mapping = mapping.replaceFirst("d2rq:jdbcDriver \"[^\"]*\"", "d2rq:jdbcDriver \"org.h2.Driver\"")
+				.replaceFirst("d2rq:jdbcDSN \"[^\"]*\"", "d2rq:jdbcDSN \""+dsn+"\"")
+				.replaceFirst("d2rq:username \"[^\"]*\"", "d2rq:username \"sa\"")
+				.replaceFirst("d2rq:password \"[^\"]*\"", "d2rq:password \"\"")
+				//the connection properties of mySQL
+				.replaceAll("\n\tjdbc:[^\n]*", "");
+		File file = new File(dir, "pubsmap.ttl");
+		Files.write(file.toPath(), mapping.getBytes(utf8));
+		return file;
+	}
+
+	@AfterClass
+	public static void tearDown() throws SQLException{
+		connection.close();
+	}
+
+	/**
+	 * The two models hold the same statements (there are no blank nodes, isomorphic is equal).
+	 */
+	@Test
+	public void loadMatchesConstructOnD2RQ() throws IOException{
+		Model d2rq;
+		try{
+			ModelD2RQ model = new ModelD2RQ(mappingFile.getPath());
+			QueryExecution qExec = QueryExecutionFactory.create(QueryRegistry.getInstance().getQuery(ModelMaker.CONSTRUCT_FILE, "main-construct"), model);
+			d2rq = qExec.execConstruct();
+			qExec.close();
+			model.close();
+		}catch(UnsupportedOperationException e){
+			//the D2RQ jar on the classpath cannot execute queries.
+			Assume.assumeNoException(e);
+			return;
+		}
+		assertEquals(d2rq.size(), loaded.size());
+		assertTrue(d2rq.isIsomorphicWith(loaded));
+	}
+
+	/**
+	 * The subjects are resolved against the mapping file like ModelD2RQ resolves them: file:///path#pattern
+	 */
+	@Test
+	public void subjectsAreResolvedAgainstTheMappingFile(){
+		String base = "file://"+mappingFile.getAbsoluteFile().toURI().getPath()+"#";
+		assertTrue(base.startsWith("file:///"));
+		assertTrue(loaded.containsResource(loaded.createResource(base+"publications/10")));
+		assertTrue(loaded.containsResource(loaded.createResource(base+"authors/3")));
+	}
+
+	/**
+	 * The COUNT subquery counts reference resources: a RefID that appears twice counts once, and a
+	 * reference without a RefID does not count.
+	 */
+	@Test
+	public void citationsCountDistinctReferences(){
+		RDFNode count = value(publication(10), CITO+"globalCountValue");
+		assertEquals(loaded.createTypedLiteral("2", XSDDatatype.XSDinteger), count);
+		assertEquals(loaded.createTypedLiteral("1", XSDDatatype.XSDinteger), value(publication(15), CITO+"globalCountValue"));
+	}
+
+	/**
+	 * The OPTIONAL block, with its COUNT subquery, matches only a cited publication that has all its columns.
+	 */
+	@Test
+	public void optionalBlockOnlyForCitedPublications(){
+		assertEquals("LNCS 7438", value(publication(10), BIBO+"volume").asLiteral().getString());
+		//not cited
+		assertFalse(publication(11).hasProperty(loaded.createProperty(BIBO+"editor")));
+		assertFalse(publication(11).hasProperty(loaded.createProperty(CITO+"globalCountValue")));
+		//cited, without a volume
+		assertFalse(publication(12).hasProperty(loaded.createProperty(BIBO+"editor")));
+		assertFalse(publication(12).hasProperty(loaded.createProperty(CITO+"globalCountValue")));
+	}
+
+	/**
+	 * A publication needs its required columns and an author with a name and a surname.
+	 */
+	@Test
+	public void incompletePublicationsAreLeftOut(){
+		assertTrue(publication(10).hasProperty(loaded.createProperty(DC+"title")));
+		assertFalse(loaded.containsResource(publication(13)));
+		assertFalse(loaded.containsResource(publication(14)));
+		assertFalse(loaded.containsResource(author(4)));
+		assertEquals("", value(author(5), FOAF+"givenName").asLiteral().getString());
+		assertEquals(loaded.createTypedLiteral("80003", XSDDatatype.XSDinteger), value(author(3), DC+"identifier"));
+		//author 99 of publication 15 does not exist
+		assertEquals(2, publication(15).listProperties(loaded.createProperty("http://purl.org/dc/terms/creator")).toList().size());
+	}
+
+	private static Resource publication(int pid){
+		return loaded.createResource(subject("publications/"+pid));
+	}
+
+	private static Resource author(int authid){
+		return loaded.createResource(subject("authors/"+authid));
+	}
+
+	private static String subject(String path){
+		return "file://"+mappingFile.getAbsoluteFile().toURI().getPath()+"#"+path;
+	}
+
+	private static RDFNode value(Resource subject,String property){
+		Property predicate = loaded.createProperty(property);
+		assertTrue(subject+" has no "+property, subject.hasProperty(predicate));
+		return subject.getProperty(predicate).getObject();
+	}
+}
@@ -0,0 +1,143 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * Builds the constructed model of the sample rows of pubs.sql with --jdbc, changes the references
+ * table and checks that {@link ModelMaker#refreshCitations()} brings the citation counts up to date.
+ * @author magda
+ */
+public class ModelMakerTest {
+	//a fresh embedded database for every test, the tests change its references.
+	private static int databases = 0;
+	private static final String CITO_COUNT = "http://purl.org/net/cito/globalCountValue";
+	private static final String BIBO_VOLUME = "http://purl.org/ontology/bibo/volume";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private Connection connection;
+	private File mappingFile;
+	private ModelMaker modelMaker;
+
+	@Before
+	public void setUp() throws IOException, SQLException{
+		String dsn = "jdbc:h2:mem:citations"+(databases++)+";DB_CLOSE_DELAY=-1";
+		connection = JdbcModelLoaderTest.database(dsn);
+		mappingFile = JdbcModelLoaderTest.mapping(dsn, folder.newFolder("conf"));
+		modelMaker = new ModelMaker(mappingFile.getPath(), QueryRegistry.QUERY_DIR);
+		modelMaker.loadJdbcModel();
+		modelMaker.trackCitations();
+	}
+
+	@After
+	public void tearDown() throws SQLException{
+		execute("DROP ALL OBJECTS");
+		connection.close();
+	}
+
+	/**
+	 * The counts are not tracked unless trackCitations is called, there is nothing to compare with.
+	 */
+	@Test
+	public void untrackedCountsAreNotRefreshed(){
+		ModelMaker untracked = new ModelMaker(mappingFile.getPath(), QueryRegistry.QUERY_DIR);
+		untracked.loadJdbcModel();
+		assertEquals(-1, untracked.refreshCitations());
+	}
+
+	/**
+	 * Nothing changed, nothing to update.
+	 */
+	@Test
+	public void unchangedReferences(){
+		assertEquals(0, modelMaker.refreshCitations());
+		assertEquals(2, count(10));
+	}
+
+	/**
+	 * A reference that arrived, one that was deleted and one that points to another publication.
+	 */
+	@Test
+	public void changedReferencesUpdateTheCounts() throws SQLException{
+		execute("INSERT INTO \"references\" (\"RefID\", \"RefPaperID\") VALUES (105, 15)");
+		assertEquals(1, modelMaker.refreshCitations());
+		assertEquals(2, count(15));
+		//re-pointed: 10 loses a reference, 15 gains one.
+		execute("UPDATE \"references\" SET \"RefPaperID\" = 15 WHERE \"RefID\" = 100");
+		assertEquals(2, modelMaker.refreshCitations());
+		assertEquals(1, count(10));
+		assertEquals(3, count(15));
+		//deleted: 10 is no longer cited, the OPTIONAL statements go with the count.
+		execute("DELETE FROM \"references\" WHERE \"RefPaperID\" = 10");
+		assertEquals(1, modelMaker.refreshCitations());
+		assertEquals(0, count(10));
+		assertFalse(publication(10).hasProperty(property(BIBO_VOLUME)));
+		//cited again: the OPTIONAL statements that were kept aside come back.
+		execute("INSERT INTO \"references\" (\"RefID\", \"RefPaperID\") VALUES (106, 10)");
+		assertEquals(1, modelMaker.refreshCitations());
+		assertEquals(1, count(10));
+		assertTrue(publication(10).hasProperty(property(BIBO_VOLUME)));
+	}
+
+	/**
+	 * The model of the main-construct query holds no OPTIONAL statements for a publication that was
+	 * not cited, so a first citation needs the model to be built again.
+	 */
+	@Test
+	public void firstCitationNeedsARebuild() throws SQLException{
+		execute("INSERT INTO \"references\" (\"RefID\", \"RefPaperID\") VALUES (105, 11)");
+		assertEquals(-1, modelMaker.refreshCitations());
+		modelMaker.loadJdbcModel();
+		assertEquals(1, count(11));
+	}
+
+	private void execute(String sql) throws SQLException{
+		Statement stmt = connection.createStatement();
+		try{
+			stmt.execute(sql);
+		}finally{
+			stmt.close();
+		}
+	}
+
+	private Resource publication(int pid){
+		return modelMaker.getResultsModel().createResource("file://"+mappingFile.getAbsoluteFile().toURI().getPath()+"#publications/"+pid);
+	}
+
+	private Property property(String uri){
+		return modelMaker.getResultsModel().createProperty(uri);
+	}
+
+	/**
+	 * @return the cito:globalCountValue of a publication, 0 if it has none.
+	 */
+	private int count(int pid){
+		Model model = modelMaker.getResultsModel();
+		Resource publication = publication(pid);
+		assertTrue(model.containsResource(publication));
+		if(!publication.hasProperty(property(CITO_COUNT))){
+			return 0;
+		}
+		assertEquals(XSDDatatype.XSDinteger, publication.getProperty(property(CITO_COUNT)).getLiteral().getDatatype());
+		return publication.getProperty(property(CITO_COUNT)).getInt();
+	}
+}
@@ -0,0 +1,154 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Stages documents, publishes them and checks what {@link PagePublisher} leaves in the output
+ * directory: the changed documents with their gzipped copies, the unchanged ones untouched, the
+ * manifest of the run, and the order the documents are moved in.
+ * @author magda
+ */
+public class PagePublisherTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	//a time long before the test runs, to tell an untouched document from a published one.
+	private static final long OLD = 1000000000000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File outputDir;
+	private File stagingDir;
+	private PagePublisher publisher;
+
+	@Before
+	public void setUp() throws IOException{
+		outputDir = new File(folder.getRoot(), "webpages");
+		publisher = new PagePublisher(outputDir.getPath());
+		stagingDir = new File(publisher.getStagingDir());
+		publisher.prepare();
+	}
+
+	/**
+	 * Every staged document is moved with its gzipped copy, and listed in the manifest.
+	 */
+	@Test
+	public void publishesTheStagedDocuments() throws IOException{
+		stage("type1.html", "<html>journals</html>");
+		stage("type2.html", "<html>conferences</html>");
+		assertEquals(2, publisher.publish());
+		assertEquals("<html>journals</html>", read(new File(outputDir, "type1.html")));
+		assertTrue(new File(outputDir, "type1.html.gz").isFile());
+		assertTrue(new File(outputDir, "type2.html.gz").isFile());
+		assertEquals(0, stagingDir.listFiles().length);
+		assertEquals(Arrays.asList(entry("type1.html"), entry("type2.html")), manifest());
+	}
+
+	/**
+	 * A document with the hash of the published one is dropped, the published file is not touched.
+	 */
+	@Test
+	public void skipsUnchangedDocuments() throws IOException{
+		stage("type1.html", "<html>journals</html>");
+		stage("type2.html", "<html>conferences</html>");
+		publisher.publish();
+		File type1 = new File(outputDir, "type1.html");
+		File type2 = new File(outputDir, "type2.html");
+		assertTrue(type1.setLastModified(OLD));
+		assertTrue(type2.setLastModified(OLD));
+
+		publisher.prepare();
+		stage("type1.html", "<html>journals</html>");
+		stage("type2.html", "<html>conferences and workshops</html>");
+		assertEquals(1, publisher.publish());
+		assertEquals(OLD, type1.lastModified());
+		assertFalse(type2.lastModified() == OLD);
+		assertEquals("<html>conferences and workshops</html>", read(type2));
+		assertEquals(0, stagingDir.listFiles().length);
+	}
+
+	/**
+	 * The manifest is rewritten with the new hash of a changed document and keeps the documents that
+	 * were not rendered in the run. A published document whose size no longer matches its entry is
+	 * hashed again instead of being trusted.
+	 */
+	@Test
+	public void rewritesTheManifest() throws IOException{
+		stage("type1.html", "<html>journals</html>");
+		stage("type2.html", "<html>conferences</html>");
+		publisher.publish();
+		String type2Entry = entry("type2.html");
+
+		publisher.prepare();
+		stage("type1.html", "<html>journals and magazines</html>");
+		assertEquals(1, publisher.publish());
+		assertEquals(Arrays.asList(entry("type1.html"), type2Entry), manifest());
+
+		//a document edited in the output directory, its manifest entry is stale.
+		Files.write(new File(outputDir, "type2.html").toPath(), "<html>edited</html>".getBytes(UTF8));
+		publisher.prepare();
+		stage("type2.html", "<html>conferences</html>");
+		assertEquals(1, publisher.publish());
+		assertEquals("<html>conferences</html>", read(new File(outputDir, "type2.html")));
+		assertEquals(type2Entry, entry("type2.html"));
+	}
+
+	/**
+	 * The documents are published before the ones that link to them: when the page of a type cannot be
+	 * moved, its shards and data documents are already published and the author pages are not.
+	 */
+	@Test
+	public void publishesLinkedDocumentsFirst() throws IOException{
+		stage("author-12.html", "<html>author</html>");
+		stage("type1.html", "<html>journals</html>");
+		stage("type1-2011.html", "<html>journals of 2011</html>");
+		stage("type1.jsonld", "{}");
+		//a non empty directory in the way of type1.html
+		File blocker = new File(outputDir, "type1.html");
+		assertTrue(blocker.mkdir());
+		assertTrue(new File(blocker, "keep").createNewFile());
+		try{
+			publisher.publish();
+			fail("type1.html cannot replace a directory");
+		}catch(IOException e){
+			//expected
+		}
+		assertTrue(new File(outputDir, "type1-2011.html").isFile());
+		assertTrue(new File(outputDir, "type1.jsonld").isFile());
+		assertFalse(new File(outputDir, "author-12.html").exists());
+		assertTrue(new File(stagingDir, "author-12.html").isFile());
+	}
+
+	private void stage(String name,String content) throws IOException{
+		Files.write(new File(stagingDir, name).toPath(), content.getBytes(UTF8));
+	}
+
+	private static String read(File file) throws IOException{
+		return new String(Files.readAllBytes(file.toPath()), UTF8);
+	}
+
+	/**
+	 * @return the manifest line the published document should have: hash size name
+	 */
+	private String entry(String name) throws IOException{
+		File file = new File(outputDir, name);
+		return ModelSnapshot.digest(file)+" "+file.length()+" "+name;
+	}
+
+	private List<String> manifest() throws IOException{
+		return Files.readAllLines(new File(outputDir, PagePublisher.MANIFEST).toPath(), UTF8);
+	}
+}
@@ -0,0 +1,197 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Serves a page and a static file on a free port and checks the answers of {@link PageServer}:
+ * conditional GETs, gzip negotiation, the ETag of a page that is published again unchanged, and the
+ * requests that are refused.
+ * @author magda
+ */
+public class PageServerTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private PageServer server;
+	private byte[] page;
+
+	@Before
+	public void setUp() throws IOException{
+		File assets = folder.newFolder("webpages");
+		Files.write(new File(assets, "lpis.css").toPath(), "body { margin: 0; }".getBytes(UTF8));
+		server = new PageServer(0, assets.getPath(), 2);
+		server.start();
+		page = page("Dynamic RDFa Publishing");
+		publish("/type1.html", page);
+	}
+
+	@After
+	public void tearDown(){
+		server.stop(0);
+	}
+
+	/**
+	 * The ETag and the Last-Modified date of a response make the next request conditional.
+	 */
+	@Test
+	public void conditionalGetsAreNotModified() throws IOException{
+		HttpURLConnection first = request("GET", "/type1.html");
+		assertEquals(200, first.getResponseCode());
+		assertArrayEquals(page, body(first));
+		String etag = first.getHeaderField("ETag");
+		String lastModified = first.getHeaderField("Last-Modified");
+		assertNotNull(etag);
+		assertNotNull(lastModified);
+
+		assertEquals(304, request("GET", "/type1.html", "If-None-Match", etag).getResponseCode());
+		assertEquals(304, request("GET", "/type1.html", "If-None-Match", "\"other\", W/"+etag).getResponseCode());
+		assertEquals(200, request("GET", "/type1.html", "If-None-Match", "\"other\"").getResponseCode());
+		assertEquals(304, request("GET", "/type1.html", "If-Modified-Since", lastModified).getResponseCode());
+		assertEquals(200, request("GET", "/type1.html", "If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT").getResponseCode());
+		//If-None-Match wins over If-Modified-Since
+		assertEquals(200, request("GET", "/type1.html", "If-None-Match", "\"other\"", "If-Modified-Since", lastModified).getResponseCode());
+	}
+
+	/**
+	 * The gzipped copy is sent only when the client accepts gzip, and it has an ETag of its own.
+	 */
+	@Test
+	public void gzipIsNegotiated() throws IOException{
+		HttpURLConnection plain = request("GET", "/type1.html");
+		assertEquals(200, plain.getResponseCode());
+		assertNull(plain.getHeaderField("Content-Encoding"));
+		assertEquals("Accept-Encoding", plain.getHeaderField("Vary"));
+
+		HttpURLConnection gzipped = request("GET", "/type1.html", "Accept-Encoding", "deflate, gzip");
+		assertEquals(200, gzipped.getResponseCode());
+		assertEquals("gzip", gzipped.getHeaderField("Content-Encoding"));
+		assertFalse(plain.getHeaderField("ETag").equals(gzipped.getHeaderField("ETag")));
+		assertArrayEquals(page, gunzip(body(gzipped)));
+
+		HttpURLConnection refused = request("GET", "/type1.html", "Accept-Encoding", "gzip;q=0, identity");
+		assertEquals(200, refused.getResponseCode());
+		assertNull(refused.getHeaderField("Content-Encoding"));
+		assertArrayEquals(page, body(refused));
+		assertEquals("gzip", request("GET", "/type1.html", "Accept-Encoding", "gzip;q=0.5").getHeaderField("Content-Encoding"));
+		assertNull(request("GET", "/type1.html", "Accept-Encoding", "*;q=0.0").getHeaderField("Content-Encoding"));
+	}
+
+	/**
+	 * A page published again with the same content keeps its ETag and Last-Modified, a changed one does not.
+	 */
+	@Test
+	public void unchangedPageKeepsItsETag() throws IOException{
+		HttpURLConnection before = request("GET", "/type1.html");
+		String etag = before.getHeaderField("ETag");
+		String lastModified = before.getHeaderField("Last-Modified");
+
+		publish("/type1.html", page("Dynamic RDFa Publishing"));
+		HttpURLConnection same = request("GET", "/type1.html");
+		assertEquals(etag, same.getHeaderField("ETag"));
+		assertEquals(lastModified, same.getHeaderField("Last-Modified"));
+		assertEquals(304, request("GET", "/type1.html", "If-None-Match", etag).getResponseCode());
+
+		byte[] changed = page("Semantic Web Services for Scholarly Data");
+		publish("/type1.html", changed);
+		HttpURLConnection after = request("GET", "/type1.html", "If-None-Match", etag);
+		assertEquals(200, after.getResponseCode());
+		assertFalse(etag.equals(after.getHeaderField("ETag")));
+		assertArrayEquals(changed, body(after));
+	}
+
+	/**
+	 * Only GET and HEAD are answered, and only for the published pages and the static files.
+	 */
+	@Test
+	public void refusedRequests() throws IOException{
+		HttpURLConnection post = request("POST", "/type1.html");
+		assertEquals(405, post.getResponseCode());
+		assertEquals("GET, HEAD", post.getHeaderField("Allow"));
+		assertEquals(405, request("DELETE", "/type1.html").getResponseCode());
+		assertEquals(404, request("GET", "/type2.html").getResponseCode());
+		assertEquals(404, request("GET", "/").getResponseCode());
+
+		HttpURLConnection head = request("HEAD", "/type1.html");
+		assertEquals(200, head.getResponseCode());
+		assertEquals(Integer.toString(page.length), head.getHeaderField("Content-Length"));
+		HttpURLConnection css = request("GET", "/lpis.css");
+		assertEquals(200, css.getResponseCode());
+		assertEquals("text/css; charset=UTF-8", css.getHeaderField("Content-Type"));
+	}
+
+	private void publish(String path,byte[] content){
+		HashMap<String,byte[]> pages = new HashMap<String,byte[]>();
+		pages.put(path, content);
+		server.publish(pages);
+	}
+
+	/**
+	 * @return an html page long enough for its gzipped copy to be smaller.
+	 */
+	private static byte[] page(String title){
+		StringBuilder html = new StringBuilder("<html><head><title>").append(title).append("</title></head><body>\n");
+		for(int i=0;i<50;i++){
+			html.append("<div about=\"http://lpis.csd.auth.gr/paper_details.asp?publicationID=").append(i)
+				.append("\" typeof=\"bibo:Document\"><span property=\"dc:title\">").append(title).append("</span></div>\n");
+		}
+		return html.append("</body></html>").toString().getBytes(UTF8);
+	}
+
+	/**
+	 * @param headers request header names and values, in pairs.
+	 */
+	private HttpURLConnection request(String method,String path,String... headers) throws IOException{
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"+server.getPort()+path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setUseCaches(false);
+		for(int i=0;i<headers.length;i+=2){
+			connection.setRequestProperty(headers[i], headers[i+1]);
+		}
+		return connection;
+	}
+
+	private static byte[] body(HttpURLConnection connection) throws IOException{
+		return read(connection.getInputStream());
+	}
+
+	private static byte[] gunzip(byte[] gzipped) throws IOException{
+		return read(new GZIPInputStream(new ByteArrayInputStream(gzipped)));
+	}
+
+	private static byte[] read(InputStream in) throws IOException{
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer))>0){
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}finally{
+			in.close();
+		}
+	}
+}
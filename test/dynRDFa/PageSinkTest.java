@@ -0,0 +1,184 @@
+package dynRDFa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.velocity.runtime.Renderable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Renders a page with sinks, one of which fails partway through the page, and checks that only the
+ * complete documents are left in the output directory.
+ * @author magda
+ */
+public class PageSinkTest {
+	//lists the links of the publications, one per line.
+	private static final String TEMPLATE_FILE = "test/dynRDFa/sinks.vm";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File outputDir;
+	private VelociDataModel vdm;
+
+	@Before
+	public void setUp() throws IOException{
+		outputDir = folder.newFolder("webpages");
+		vdm = new VelociDataModel(TEMPLATE_FILE, outputDir.getPath(), false);
+		vdm.addSink(new JsonLdSink());
+		vdm.addSink(new NTriplesSink());
+	}
+
+	/**
+	 * The document of the failing sink is removed, the html document and the other documents are complete.
+	 */
+	@Test
+	public void failingSinkIsDiscarded() throws IOException{
+		vdm.addSink(new FailingSink(2));
+		assertTrue(vdm.builder(page(3, -1)));
+		assertFalse(new File(outputDir, "type1.failing").exists());
+		assertEquals("p0\np1\np2\n", read("type1.html"));
+		String jsonld = read("type1.jsonld");
+		assertTrue(jsonld.contains("\"@id\": \"p2\""));
+		assertTrue(jsonld.endsWith("]\n}\n"));
+		assertEquals(3, read("type1.nt").split("\n").length);
+	}
+
+	/**
+	 * A sink that fails on the first publication of a page leaves nothing behind either.
+	 */
+	@Test
+	public void sinkFailingOnTheFirstPublication() throws IOException{
+		vdm.addSink(new FailingSink(0));
+		assertTrue(vdm.builder(page(1, -1)));
+		assertFalse(new File(outputDir, "type1.failing").exists());
+		assertTrue(new File(outputDir, "type1.jsonld").exists());
+	}
+
+	/**
+	 * When the html document fails, the documents of all the sinks go with it.
+	 */
+	@Test
+	public void failedPageDiscardsAllTheDocuments(){
+		try{
+			vdm.builder(page(3, 1));
+			fail("the template reached a publication that fails");
+		}catch(RuntimeException e){
+			//velocity wraps the exception of the publication.
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, outputDir.list().length);
+	}
+
+	/**
+	 * @param publications the number of publications of the page.
+	 * @param failing the publication whose link cannot be rendered, -1 for none.
+	 * @return page 1 with the publications p0, p1...
+	 */
+	private static ExportableModel page(int publications,int failing){
+		List<Publication> list = new ArrayList<Publication>();
+		for(int i=0;i<publications;i++){
+			list.add(new Stub("p"+i, i == failing));
+		}
+		ExportableModel page = new ExportableModel();
+		page.setID(1);
+		page.setPublications(list);
+		page.setMappings(new ArrayList<String>());
+		TreeMap<Integer,Integer> years = new TreeMap<Integer,Integer>();
+		years.put(2013, publications);
+		page.setPublicationsPerYear(years);
+		return page;
+	}
+
+	private String read(String name) throws IOException{
+		return new String(Files.readAllBytes(new File(outputDir, name).toPath()), UTF8);
+	}
+
+	/**
+	 * A publication with a link and a title.
+	 */
+	public static class Stub implements Publication {
+		private String link;
+		private boolean failing;
+
+		Stub(String link,boolean failing){
+			this.link = link;
+			this.failing = failing;
+		}
+
+		public Renderable getRdfa(){
+			return null;
+		}
+
+		public void describe(TripleSink sink) throws IOException{
+			sink.literal(link, "http://purl.org/dc/elements/1.1/title", "title of "+link);
+		}
+
+		public String getLink(){
+			if(failing){
+				throw new IllegalStateException(link+" cannot be rendered");
+			}
+			return link;
+		}
+
+		public int getYear(){
+			return 2013;
+		}
+
+		public NamespaceRegistry getRegistry(){
+			return null;
+		}
+
+		public BitSet getNamespaces(){
+			return new BitSet();
+		}
+	}
+
+	/**
+	 * Writes a line per publication to a .failing file, and fails on the given publication of the page.
+	 */
+	private static class FailingSink implements PageSink {
+		private int failAt;
+
+		FailingSink(int failAt){
+			this.failAt = failAt;
+		}
+
+		public Document open(String outputDir,String pageName,ExportableModel exportableModel) throws IOException{
+			final File file = new File(outputDir, pageName+".failing");
+			Files.write(file.toPath(), "header\n".getBytes(UTF8));
+			return new Document() {
+				private int added = 0;
+
+				public void add(Publication publication) throws IOException{
+					if(added++ == failAt){
+						throw new IOException("the sink fails on publication "+failAt);
+					}
+					Files.write(file.toPath(), (publication.getLink()+"\n").getBytes(UTF8), java.nio.file.StandardOpenOption.APPEND);
+				}
+
+				public void close() throws IOException{
+					Files.write(file.toPath(), "footer\n".getBytes(UTF8), java.nio.file.StandardOpenOption.APPEND);
+				}
+
+				public void discard(){
+					file.delete();
+				}
+			};
+		}
+	}
+}
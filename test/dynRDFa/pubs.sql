@@ -0,0 +1,114 @@
+-- Sample rows of the tables of conf/pubsmap.ttl, for JdbcModelLoaderTest. The identifiers are quoted,
+-- so that they keep their case, as D2RQ and JdbcModelLoader quote them.
+
+CREATE TABLE "authors" (
+	"AuthorID" INT NOT NULL,
+	"AuthorName" VARCHAR(100),
+	"AuthorMidleName" VARCHAR(100),
+	"AuthorSurname" VARCHAR(100),
+	"AuthorURL" VARCHAR(255),
+	"AuthorEmail" VARCHAR(255),
+	"CSD-DEP" BOOLEAN
+);
+
+CREATE TABLE "keywords" (
+	"PublicationID" INT,
+	"Keyword" VARCHAR(100),
+	"KeywordOrder" TINYINT
+);
+
+CREATE TABLE "publications" (
+	"PublicationID" INT NOT NULL,
+	"PublicationTitle" VARCHAR(255),
+	"MediaType" VARCHAR(100),
+	"PublicationType" TINYINT,
+	"MediaTitle" VARCHAR(255),
+	"MediaPublisher" VARCHAR(255),
+	"MediaEditors" VARCHAR(255),
+	"MediaVolInfo" VARCHAR(100),
+	"PublicationYear" INT,
+	"PublicationNoOfPages" INT,
+	"PublicationPagesInMedium" VARCHAR(50),
+	"PublicationAbstract" VARCHAR(1000),
+	"PublicationFileName" VARCHAR(255),
+	"PublicationComments" VARCHAR(255),
+	"PublicationRelatedURL" VARCHAR(255),
+	"PublicationRelatedURLText" VARCHAR(255),
+	"PublicationLocation" VARCHAR(255),
+	"PublicationPubURL" VARCHAR(255),
+	"DisplayOnMLKD" BOOLEAN,
+	"DisplayOnISKP" BOOLEAN,
+	"PublishOnWeb" BOOLEAN
+);
+
+-- no primary key: the same RefID may appear twice and is counted once
+CREATE TABLE "references" (
+	"RefID" INT,
+	"RefPaperID" INT,
+	"RefDetails" VARCHAR(255),
+	"RefYear" INT
+);
+
+CREATE TABLE "rights" (
+	"PublicationID" INT,
+	"AuthorID" INT,
+	"AuthorOrder" TINYINT
+);
+
+INSERT INTO "authors" ("AuthorID", "AuthorName", "AuthorSurname", "CSD-DEP") VALUES
+	(1, 'Nick', 'Bassiliades', TRUE),
+	(2, 'Ioannis', 'Vlahavas', TRUE),
+	(3, 'Γιώργος', 'Μεδίτσκος', FALSE),
+	-- no name: left out, and so are the publications that only it wrote
+	(4, NULL, 'Nameless', FALSE),
+	-- an empty name is still a name
+	(5, '', 'Molohides', FALSE);
+
+INSERT INTO "publications" ("PublicationID", "PublicationTitle", "MediaType", "MediaTitle", "MediaPublisher",
+		"MediaEditors", "MediaVolInfo", "PublicationYear", "PublicationPagesInMedium", "PublicationLocation") VALUES
+	-- cited, with all the OPTIONAL columns
+	(10, 'SWRL2COOL: Object-Oriented Transformation of SWRL', 'Conference Proceedings', 'RuleML 2012', 'Springer',
+		'A. Bikakis, A. Giurca', 'LNCS 7438', 2012, '150-157', 'Montpellier, France'),
+	-- all the OPTIONAL columns, but not cited
+	(11, 'Uncited Paper', 'Journal', 'Expert Systems with Applications', 'Elsevier',
+		'E. Editor', '38(3)', 2011, '1-10', 'Amsterdam'),
+	-- cited, but without a volume
+	(12, 'Paper Without Volume', 'Journal', 'Knowledge-Based Systems', 'Elsevier',
+		'E. Editor', NULL, 2010, '11-20', 'Amsterdam'),
+	-- no media title: not in the model
+	(13, 'Paper Without Media Title', 'Technical Report', NULL, NULL,
+		NULL, NULL, 2009, NULL, NULL),
+	-- only written by author 4: not in the model
+	(14, 'Paper Of A Nameless Author', 'Book', 'Some Book', NULL,
+		NULL, NULL, 2008, NULL, NULL),
+	-- cited once, non-ASCII title and location
+	(15, 'Σημασιολογικός Ιστός & "RDFa"', 'Book Chapter', 'Τεχνητή Νοημοσύνη', 'Gartaganis',
+		'Β. Βλάχος', 'Vol. 2', 2013, '33-47', 'Θεσσαλονίκη');
+
+INSERT INTO "rights" ("PublicationID", "AuthorID", "AuthorOrder") VALUES
+	(10, 1, 1),
+	(10, 2, 2),
+	(10, 2, 2),
+	(11, 1, 1),
+	(12, 2, 1),
+	(13, 1, 1),
+	(14, 4, 1),
+	(15, 3, 1),
+	(15, 5, 2),
+	-- an author that does not exist
+	(15, 99, 3),
+	(NULL, 1, 1);
+
+INSERT INTO "references" ("RefID", "RefPaperID", "RefDetails", "RefYear") VALUES
+	(100, 10, 'cited by a journal paper', 2013),
+	(101, 10, 'cited by a thesis', 2014),
+	(101, 10, 'cited by a thesis, entered twice', 2014),
+	-- no RefID: there is no reference resource to count
+	(NULL, 10, 'incomplete reference', 2014),
+	(102, 12, 'cited once', 2013),
+	(103, 15, 'cited once', 2014),
+	(104, 13, 'a publication that is not in the model', 2012);
+
+INSERT INTO "keywords" ("PublicationID", "Keyword", "KeywordOrder") VALUES
+	(10, 'rule engines', 1),
+	(15, 'semantic web', 1);